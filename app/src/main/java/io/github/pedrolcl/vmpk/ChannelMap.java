@@ -0,0 +1,85 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package io.github.pedrolcl.vmpk;
+
+// Mapa de canales del teclado para los modos split y layer: cada zona cubre
+// un rango de teclas y las toca en su propio canal, con su transposición, y
+// una tecla suena en todas las zonas que la contienen. Es inmutable, así que
+// los motores lo comparten sin copiarlo; MIDISynth recibe las zonas con
+// toArray() y reparte cada tecla en el código nativo.
+public class ChannelMap {
+
+	public static final int MAX_ZONES = 4;
+
+	// fields of each zone in toArray(), the layout of the native map
+	static final int ZONE_CHANNEL = 0;
+	static final int ZONE_TRANSPOSE = 1;
+	static final int ZONE_LOW = 2;
+	static final int ZONE_HIGH = 3;
+	static final int ZONE_FIELDS = 4;
+
+	private final int[] mZones;
+
+	/**
+	 * @param zones ZONE_FIELDS values for each zone: channel 0-15,
+	 *              transposition in semitones, and the lowest and highest keys
+	 *              (MIDI notes) it plays.
+	 */
+	public ChannelMap(int[] zones) {
+		if (zones.length % ZONE_FIELDS != 0 || zones.length > MAX_ZONES * ZONE_FIELDS) {
+			throw new IllegalArgumentException("Invalid zones.");
+		}
+		for (int i = 0; i < zones.length; i += ZONE_FIELDS) {
+			if (zones[i + ZONE_CHANNEL] < 0 || zones[i + ZONE_CHANNEL] > 15
+					|| zones[i + ZONE_LOW] > zones[i + ZONE_HIGH]) {
+				throw new IllegalArgumentException("Invalid zone.");
+			}
+		}
+		mZones = zones.clone();
+	}
+
+	/**
+	 * The keys from splitKey up play on the upper channel, the ones below on
+	 * the lower channel, transposed.
+	 */
+	public static ChannelMap split(int upperChannel, int lowerChannel, int splitKey, int lowerTranspose) {
+		return new ChannelMap(new int[] {
+				upperChannel, 0, splitKey, 127,
+				lowerChannel, lowerTranspose, 0, splitKey - 1 });
+	}
+
+	/**
+	 * Every key plays on both channels, transposed on the second one.
+	 */
+	public static ChannelMap layer(int channel, int layerChannel, int layerTranspose) {
+		return new ChannelMap(new int[] {
+				channel, 0, 0, 127,
+				layerChannel, layerTranspose, 0, 127 });
+	}
+
+	public int size() {
+		return mZones.length / ZONE_FIELDS;
+	}
+
+	public int channel(int zone) {
+		return mZones[zone * ZONE_FIELDS + ZONE_CHANNEL];
+	}
+
+	/**
+	 * @return the note the zone plays for a key, or -1 if the key is outside
+	 *         the zone or the transposed note outside the MIDI range.
+	 */
+	public int noteFor(int zone, int key) {
+		int i = zone * ZONE_FIELDS;
+		int note = key + mZones[i + ZONE_TRANSPOSE];
+		if (key < mZones[i + ZONE_LOW] || key > mZones[i + ZONE_HIGH] || note < 0 || note > 127) {
+			return -1;
+		}
+		return note;
+	}
+
+	public int[] toArray() {
+		return mZones.clone();
+	}
+}
@@ -20,6 +20,8 @@
 
 package io.github.pedrolcl.vmpk;
 
+import android.os.ParcelFileDescriptor;
+
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
@@ -30,20 +32,93 @@ public class MIDISynth {
   public static final int REVERB_CHAMBER = 2;
   public static final int REVERB_ROOM = 3;
 
+  public static final int OUTPUT_OPENSL = 0;
+  public static final int OUTPUT_AAUDIO = 1;
+
+  public static final int DEFAULT_BUFFERS = 2;
+  public static final int DEFAULT_BLOCKS = 1;
+
+  // indexes of the getStats() snapshot
+  public static final int STAT_CALLBACKS = 0;
+  public static final int STAT_UNDERRUNS = 1;
+  public static final int STAT_LATE_CALLBACKS = 2;
+  public static final int STAT_MAX_CALLBACK_NANOS = 3;
+  public static final int STAT_PERIOD_NANOS = 4;
+  public static final int STAT_RENDER_P50_NANOS = 5;
+  public static final int STAT_RENDER_P95_NANOS = 6;
+  public static final int STAT_RENDER_P99_NANOS = 7;
+  public static final int STAT_RENDER_MAX_NANOS = 8;
+  public static final int STAT_VOICES = 9;
+  public static final int STAT_STOLEN_VOICES = 10;
+  public static final int STAT_POLYPHONY = 11;
+  public static final int STAT_IDLE_CALLBACKS = 12;
+  public static final int STAT_DROPPED_EVENTS = 13;
+  public static final int STATS_SIZE = 14;
+
+  // values of getSongState()
+  public static final int SONG_STOPPED = 0;
+  public static final int SONG_PLAYING = 1;
+  public static final int SONG_PAUSED = 2;
+
+  public static final int MAX_SONG_VOLUME = 100;
+
   static {
     System.loadLibrary("midisynth");
   }
 
-  private ByteBuffer context;
+  // native LibraryContext pointer, zero once closed
+  private long context;
 
   /**
-   * Constructor
+   * Constructor, using the AAudio output when available.
    * 
    * @throws IOException if not supported.
    */
   public MIDISynth() throws IOException {
-    context = open();
-    if (context == null) {
+    this(OUTPUT_AAUDIO);
+  }
+
+  /**
+   * Constructor
+   * 
+   * @param output preferred audio output: OUTPUT_AAUDIO falls back to
+   *               OUTPUT_OPENSL when the device cannot open an AAudio stream.
+   * @throws IOException if not supported.
+   */
+  public MIDISynth(int output) throws IOException {
+    this(output, DEFAULT_BUFFERS, DEFAULT_BLOCKS);
+  }
+
+  /**
+   * Constructor
+   * 
+   * @param output  preferred audio output: OUTPUT_AAUDIO falls back to
+   *                OUTPUT_OPENSL when the device cannot open an AAudio stream.
+   * @param buffers number of output buffers queued to the device, at least 2.
+   *                More buffers mean fewer underruns and a higher latency.
+   * @param blocks  frames per burst, as a multiple of the EAS render block.
+   * @throws IOException if not supported.
+   */
+  public MIDISynth(int output, int buffers, int blocks) throws IOException {
+    this(output, buffers, blocks, 0);
+  }
+
+  /**
+   * Constructor
+   * 
+   * @param output  preferred audio output: OUTPUT_AAUDIO falls back to
+   *                OUTPUT_OPENSL when the device cannot open an AAudio stream.
+   * @param buffers number of output buffers queued to the device, at least 2.
+   *                More buffers mean fewer underruns and a higher latency.
+   * @param blocks  frames per burst, as a multiple of the EAS render block.
+   * @param rate    output sample rate, usually the device native rate. The
+   *                synthesizer output is converted when it is different from
+   *                the EAS rate; zero means no conversion.
+   * @throws IOException if not supported.
+   */
+  public MIDISynth(int output, int buffers, int blocks, int rate) throws IOException {
+    context = open(output, buffers, blocks, rate);
+    if (context == 0) {
       throw new IOException("Unsupported");
     }
   }
@@ -53,35 +128,35 @@ public class MIDISynth {
    * than once.
    */
   public void close() {
-    if (context != null) {
+    if (context != 0) {
       close(context);
-      context = null;
+      context = 0;
     }
   }
 
   /**
-   * Starts the OpenSL audio stream; will have no effect if the object has already
+   * Starts the audio stream; will have no effect if the object has already
    * been started. May
    * not be called after close() has been called.
    * 
    * @throws IOException if the stream cannot be started.
    */
   public void start() throws IOException {
-    if (context == null) {
+    if (context == 0) {
       throw new IllegalStateException("Stream closed.");
     }
     if (start(context) != 0) {
-      throw new IOException("Unable to start OpenSL stream.");
+      throw new IOException("Unable to start audio stream.");
     }
   }
 
   /**
-   * Stops the OpenSL audio stream; will have no effect if the object has already
+   * Stops the audio stream; will have no effect if the object has already
    * been started. May
    * not be called after close() has been called.
    */
   public void stop() {
-    if (context == null) {
+    if (context == 0) {
       throw new IllegalStateException("Stream closed.");
     }
     stop(context);
@@ -90,68 +165,335 @@ public class MIDISynth {
   /**
    * May not be called after close() has been called.
    * 
-   * @return true if the OpenSL audio stream filter is running.
+   * @return true if the audio stream is running.
    */
   public boolean isRunning() {
-    if (context == null) {
+    if (context == 0) {
       throw new IllegalStateException("Stream closed.");
     }
     return isRunning(context);
   }
 
+  /**
+   * Replaces the General MIDI sounds with the instruments of a DLS collection.
+   * The file is memory mapped while it is parsed, and may be closed when this
+   * method returns.
+   * 
+   * @param file DLS level 1 or 2 file.
+   * @throws IOException if the file cannot be mapped or is not a valid DLS
+   *                     collection.
+   * @see SoundBank#load(ParcelFileDescriptor, java.io.File)
+   */
+  public void loadSoundBank(ParcelFileDescriptor file) throws IOException {
+    try (SoundBank bank = SoundBank.load(file, null)) {
+      setSoundBank(bank);
+    }
+  }
+
+  /**
+   * Replaces the General MIDI sounds with the instruments of a parsed DLS
+   * collection. The synthesizer keeps its own reference, so the bank may be
+   * closed afterwards.
+   * <p>
+   * While the stream runs, the bank is changed without interrupting it: the
+   * sounding notes fade out quickly, and the notes played during the few
+   * milliseconds of the fade are ignored. Programs and controllers are kept.
+   * A bank set during the fade of a previous change replaces it, and this
+   * method never waits for the audio thread.
+   * 
+   * @param bank DLS collection, or null for the built-in sounds.
+   * @throws IOException if the synthesizer rejects the collection.
+   */
+  public void setSoundBank(SoundBank bank) throws IOException {
+    if (context == 0) {
+      throw new IllegalStateException("Stream closed.");
+    }
+    if (!setSoundBank(context, bank != null ? bank.handle() : 0)) {
+      throw new IOException("Unable to change the sound bank");
+    }
+  }
+
+  /**
+   * Plays a Standard MIDI File along with the live input, replacing the
+   * current song. The file is read into memory, and may be closed when this
+   * method returns. The song uses the current sound bank, and its notes
+   * share the voices of the synthesizer with the keyboard.
+   * <p>
+   * The file is parsed here, on the calling thread: a running stream is
+   * paused meanwhile, so the audio callback never allocates or parses, and
+   * the previous song, even one still fading out, stops at once. Playback
+   * starts when the stream resumes.
+   * 
+   * @param file MIDI file (SMF format 0 or 1).
+   * @throws IOException if the file cannot be read, or the parser rejects it.
+   */
+  public void playSong(ParcelFileDescriptor file) throws IOException {
+    if (context == 0) {
+      throw new IllegalStateException("Stream closed.");
+    }
+    if (!playSong(context, file.getFd(), 0, -1)) {
+      throw new IOException("Unable to play the song");
+    }
+  }
+
+  /**
+   * Stops the current song, if any; its notes fade out quickly.
+   */
+  public void stopSong() {
+    if (context == 0) {
+      throw new IllegalStateException("Stream closed.");
+    }
+    stopSong(context);
+  }
+
+  public void pauseSong() {
+    if (context == 0) {
+      throw new IllegalStateException("Stream closed.");
+    }
+    pauseSong(context);
+  }
+
+  public void resumeSong() {
+    if (context == 0) {
+      throw new IllegalStateException("Stream closed.");
+    }
+    resumeSong(context);
+  }
+
+  /**
+   * @param volume song volume, from 0 to MAX_SONG_VOLUME; the live input is
+   *               not affected.
+   */
+  public void setSongVolume(int volume) {
+    if (context == 0) {
+      throw new IllegalStateException("Stream closed.");
+    }
+    if (!setSongVolume(context, volume)) {
+      throw new IllegalArgumentException("Invalid volume.");
+    }
+  }
+
+  /**
+   * @return one of the SONG_* constants; a song that reached its end is
+   *         SONG_STOPPED.
+   */
+  public int getSongState() {
+    if (context == 0) {
+      throw new IllegalStateException("Stream closed.");
+    }
+    return getSongState(context);
+  }
+
+  /**
+   * @return playback position of the current song, in milliseconds.
+   */
+  public int getSongPosition() {
+    if (context == 0) {
+      throw new IllegalStateException("Stream closed.");
+    }
+    return getSongPosition(context);
+  }
+
+  /**
+   * Copies the audio callback counters, indexed by the STAT_* constants, into
+   * the given array. Underruns are estimated when the output is OpenSL ES.
+   * The counters accumulate from the construction of this object.
+   * <p>
+   * The STAT_RENDER_* values measure the synthesis time of each callback, to
+   * be compared with its real-time budget, STAT_PERIOD_NANOS. Percentiles
+   * are upper bounds with a resolution of about 19%.
+   * <p>
+   * STAT_VOICES is the number of voices sounding after the last callback and
+   * STAT_STOLEN_VOICES the total of voices taken from older notes. When the
+   * synthesis gets close to the period, the polyphony is reduced below the
+   * maximum to keep the callbacks on time, muting the quietest voices first;
+   * STAT_POLYPHONY is the current limit.
+   * <p>
+   * STAT_IDLE_CALLBACKS counts the callbacks that played silence without
+   * running the synthesizer, because nothing had sounded for a while and
+   * no message was pending; they are not part of the render percentiles.
+   * <p>
+   * STAT_DROPPED_EVENTS counts the messages and parameter changes lost
+   * because the audio thread was too far behind to take them.
+   * 
+   * @param stats destination, usually of STATS_SIZE elements.
+   */
+  public void getStats(long[] stats) {
+    if (context == 0) {
+      throw new IllegalStateException("Stream closed.");
+    }
+    getStats(context, stats);
+  }
+
+  /**
+   * @return a new snapshot of the audio callback counters.
+   * @see #getStats(long[])
+   */
+  public long[] getStats() {
+    long[] stats = new long[STATS_SIZE];
+    getStats(stats);
+    return stats;
+  }
+
   public void write(byte[] data) {
-    if (context == null) {
+    if (context == 0) {
       throw new IllegalStateException("Stream closed.");
     }
     write(context, data);
   }
 
+  /**
+   * Sends a three byte MIDI message (note on/off, polyphonic aftertouch,
+   * controller or pitch bend) without allocating any Java objects.
+   */
+  public void write(int status, int data1, int data2) {
+    write(status, data1, data2, 0);
+  }
+
+  /**
+   * Sends a three byte MIDI message scheduled at the given time.
+   * 
+   * @param timestamp {@link System#nanoTime()} when the event was produced, or
+   *                  zero to play it as soon as possible.
+   */
+  public void write(int status, int data1, int data2, long timestamp) {
+    if (context == 0) {
+      throw new IllegalStateException("Stream closed.");
+    }
+    writeMessage(context, 3, status, data1, data2, timestamp);
+  }
+
+  /**
+   * Sends a two byte MIDI message (program change or channel pressure) without
+   * allocating any Java objects.
+   */
+  public void write(int status, int data1) {
+    if (context == 0) {
+      throw new IllegalStateException("Stream closed.");
+    }
+    writeMessage(context, 2, status, data1, 0, 0);
+  }
+
+  /**
+   * Sends several MIDI messages in a single native call.
+   * 
+   * @param data   direct buffer holding complete MIDI messages.
+   * @param length number of bytes to send, starting at the buffer's first byte.
+   */
+  public void writeBatch(ByteBuffer data, int length) {
+    if (context == 0) {
+      throw new IllegalStateException("Stream closed.");
+    }
+    if (!data.isDirect()) {
+      throw new IllegalArgumentException("Direct buffer required.");
+    }
+    writeBatch(context, data, length);
+  }
+
+  /**
+   * Sets the zones that {@link #writeKey} plays a key on.
+   * 
+   * @param zones four values per zone, at most four zones: channel,
+   *              transposition in semitones, lowest and highest key; null
+   *              removes the zones.
+   */
+  public void setChannelMap(int[] zones) {
+    if (context == 0) {
+      throw new IllegalStateException("Stream closed.");
+    }
+    setChannelMap(context, zones);
+  }
+
+  /**
+   * Plays a key of the keyboard on every zone of the channel map that
+   * contains it, transposed. The messages of all the zones are queued
+   * together by a single native call, and reach the synthesizer in the same
+   * block.
+   * 
+   * @param status    STATUS_NOTEON or STATUS_NOTEOFF, without the channel.
+   * @param timestamp {@link System#nanoTime()} when the event was produced, or
+   *                  zero to play it as soon as possible.
+   */
+  public void writeKey(int status, int key, int velocity, long timestamp) {
+    if (context == 0) {
+      throw new IllegalStateException("Stream closed.");
+    }
+    writeKey(context, status, key, velocity, timestamp);
+  }
+
   public void initReverb(int reverb_type) {
-    if (context == null) {
+    if (context == 0) {
       throw new IllegalStateException("Stream closed.");
     }
     initReverb(context, reverb_type);
   }
 
   public void initChorus(int chorus_type) {
-    if (context == null) {
+    if (context == 0) {
       throw new IllegalStateException("Stream closed.");
     }
     initChorus(context, chorus_type);
   }
 
   public void reverbWet(int amount) {
-    if (context == null) {
+    if (context == 0) {
       throw new IllegalStateException("Stream closed.");
     }
     setReverbWet(context, amount);
   }
 
   public void chorusLevel(int level) {
-    if (context == null) {
+    if (context == 0) {
       throw new IllegalStateException("Stream closed.");
     }
     setChorusLevel(context, level);
   }
 
-  private static native ByteBuffer open();
+  private static native long open(int output, int buffers, int blocks, int rate);
+
+  private static native void close(long ctx);
+
+  private static native int start(long ctx);
+
+  private static native void stop(long ctx);
+
+  private static native boolean isRunning(long ctx);
+
+  private static native void getStats(long ctx, long[] stats);
+
+  private static native boolean setSoundBank(long ctx, long bank);
+
+  private static native boolean playSong(long ctx, int fd, long offset, long length);
+
+  private static native boolean stopSong(long ctx);
+
+  private static native boolean pauseSong(long ctx);
+
+  private static native boolean resumeSong(long ctx);
+
+  private static native boolean setSongVolume(long ctx, int volume);
+
+  private static native int getSongState(long ctx);
+
+  private static native int getSongPosition(long ctx);
 
-  private static native void close(ByteBuffer ctx);
+  private static native void write(long ctx, byte[] data);
 
-  private static native int start(ByteBuffer ctx);
+  private static native boolean writeMessage(long ctx, int length, int status, int data1, int data2,
+      long timestamp);
 
-  private static native void stop(ByteBuffer ctx);
+  private static native boolean writeBatch(long ctx, ByteBuffer data, int length);
 
-  private static native boolean isRunning(ByteBuffer ctx);
+  private static native void setChannelMap(long ctx, int[] zones);
 
-  private static native void write(ByteBuffer ctx, byte[] data);
+  private static native boolean writeKey(long ctx, int status, int key, int velocity, long timestamp);
 
-  private static native void initReverb(ByteBuffer ctx, int reverb_type);
+  private static native void initReverb(long ctx, int reverb_type);
 
-  private static native void initChorus(ByteBuffer ctx, int chorus_type);
+  private static native void initChorus(long ctx, int chorus_type);
 
-  private static native void setReverbWet(ByteBuffer ctx, int amount);
+  private static native void setReverbWet(long ctx, int amount);
 
-  private static native void setChorusLevel(ByteBuffer ctx, int level);
+  private static native void setChorusLevel(long ctx, int level);
 
 }
@@ -15,7 +15,9 @@ import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.Environment;
 import android.os.StrictMode;
 import android.preference.PreferenceManager;
 import android.view.Display;
@@ -41,10 +43,17 @@ import android.widget.Switch;
 import android.widget.TabHost;
 import android.widget.TabWidget;
 import android.widget.TextView;
+import android.widget.Toast;
 import android.widget.ToggleButton;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
 
 public class MainActivity extends Activity implements SensorEventListener {
 
@@ -52,6 +61,7 @@ public class MainActivity extends Activity implements SensorEventListener {
 
 	private static final String PREFS_NAME = "vmpk_state";
 	private static final int RESULT_SETTINGS = 1;
+	private static final int RESULT_SONG = 2;
 	private static final int DEFAULT_TAB = 2;
 	private static final int DEFAULT_VELOCITY = 100;
 	private static final int DEFAULT_GROUP = 0;
@@ -59,6 +69,10 @@ public class MainActivity extends Activity implements SensorEventListener {
 	private static final int DEFAULT_CONTROLLER = 0;
 	private static final int SWIPE_MIN_DISTANCE = 200;
 	private static final int SWIPE_THRESHOLD_VELOCITY = 200;
+	// values of the keyboard_mode setting
+	private static final int KEYBOARD_SINGLE = 0;
+	private static final int KEYBOARD_SPLIT = 1;
+	private static final int KEYBOARD_LAYER = 2;
 
 	private static final String STATE_TAB = "stateTab";
 	private static final String STATE_CHANNEL = "stateChannel";
@@ -81,6 +95,10 @@ public class MainActivity extends Activity implements SensorEventListener {
 	private Spinner mSpinInst;
 	private Spinner mSpinCtls;
 	private MidiEngine mEngine;
+	private MidiRecorder mRecorder;
+	private File mRecordingFile = null;
+	// chosen while the activity was paused, played once the synth is running again
+	private Uri mPendingSong = null;
 	private TabHost mTabs = null;
 	private TabWidget mTabWidget;
 	private int[] mCtlState;
@@ -144,7 +162,8 @@ public class MainActivity extends Activity implements SensorEventListener {
 		mDisplay = mWindowManager.getDefaultDisplay();
 
 		boolean sendToSynth = SettingChangeHelper.getCurrentOutput(this);
-		mEngine = sendToSynth ? new SynthEngine(this) : new NetworkMidi(this);
+		mRecorder = new MidiRecorder(sendToSynth ? new SynthEngine(this) : new NetworkMidi(this));
+		mEngine = mRecorder;
 
 		mPiano1 = (PianoView) findViewById(R.id.pianoView1);
 		if (mPiano1 != null) {
@@ -167,11 +186,14 @@ public class MainActivity extends Activity implements SensorEventListener {
 					mPiano1.setChannel(pos);
 					mPiano2.setChannel(pos);
 					mChannel = pos;
+					mEngine.beginBatch();
 					resetCtlDefaults();
 					applyCtlStates();
 					mGrp = -1;
 					mInst = -1;
 					midiPanic();
+					applyChannelMap();
+					mEngine.endBatch();
 				}
 
 				@Override
@@ -200,9 +222,11 @@ public class MainActivity extends Activity implements SensorEventListener {
 		if (btnReset != null) {
 			btnReset.setOnClickListener(new View.OnClickListener() {
 				public void onClick(View v) {
+					mEngine.beginBatch();
 					midiReset();
 					resetCtlDefaults();
 					applyCtlStates();
+					mEngine.endBatch();
 				}
 			});
 		}
@@ -488,6 +512,7 @@ public class MainActivity extends Activity implements SensorEventListener {
 		int inst = prefs.getInt(STATE_INSTRUMENT, DEFAULT_INSTRUMENT);
 		Log.d("MainActivity", "Restore instrument:" + inst);
 		mSpinInst.setSelection(inst, false);
+		mEngine.beginBatch();
 		for (int i = 0; i < mCtlState.length; ++i) {
 			String key = String.format("%s#%d", STATE_CONTROL, i);
 			mCtlState[i] = prefs.getInt(key, mCtlDefs[i]);
@@ -497,6 +522,7 @@ public class MainActivity extends Activity implements SensorEventListener {
 		mGrp = -1;
 		mInst = -1;
 		changeEngineInstrument();
+		mEngine.endBatch();
 	}
 
 	private void replaceInstrumentsForGroup(int grp) {
@@ -534,10 +560,17 @@ public class MainActivity extends Activity implements SensorEventListener {
 		super.onResume();
 		Log.d("MainActivity", "onResume");
 		mEngine.start(this);
+		if (mPendingSong != null) {
+			if (mRecorder.getEngine() instanceof SynthEngine) {
+				((SynthEngine) mRecorder.getEngine()).playSong(this, mPendingSong);
+			}
+			mPendingSong = null;
+		}
 		if (mSensor != null) {
 			mSensorManager.registerListener(this, mSensor, SensorManager.SENSOR_DELAY_UI);
 		}
 		restoreState();
+		applyChannelMap();
 	}
 
 	@Override
@@ -548,14 +581,20 @@ public class MainActivity extends Activity implements SensorEventListener {
 			mSensorManager.unregisterListener(this);
 		}
 		mEngine.stop();
+		// the recorder stops with the engine
+		if (mRecordingFile != null) {
+			recordingStopped();
+		}
 		saveState();
 	}
 
 	private void midiPanic() {
+		mEngine.beginBatch();
 		mEngine.panic();
 		mSpinGroups.setSelection(0, false);
 		mSpinInst.setSelection(0, false);
 		changeEngineInstrument();
+		mEngine.endBatch();
 		// mPiano.demo();
 	}
 
@@ -569,9 +608,24 @@ public class MainActivity extends Activity implements SensorEventListener {
 		// Inflate the menu; this adds items to the action bar if it is present.
 		getMenuInflater().inflate(R.menu.main, menu);
 		mMenu = menu;
+		// only the internal synthesizer plays MIDI files
+		MenuItem song = menu.findItem(R.id.action_play_song);
+		if (song != null) {
+			song.setVisible(mRecorder.getEngine() instanceof SynthEngine);
+		}
 		return true;
 	}
 
+	@Override
+	public boolean onPrepareOptionsMenu(Menu menu) {
+		// the song may have ended since the menu was shown
+		MenuItem song = menu.findItem(R.id.action_play_song);
+		if (song != null && mRecorder.getEngine() instanceof SynthEngine) {
+			song.setChecked(((SynthEngine) mRecorder.getEngine()).isSongPlaying());
+		}
+		return super.onPrepareOptionsMenu(menu);
+	}
+
 	@Override
 	public boolean onOptionsItemSelected(MenuItem item) {
 		if (item.getItemId() == R.id.action_about) {
@@ -589,6 +643,12 @@ public class MainActivity extends Activity implements SensorEventListener {
 		} else if (item.getItemId() == R.id.action_fullscreen) {
 			toggleFullScreen(item);
 			return true;
+		} else if (item.getItemId() == R.id.action_record) {
+			toggleRecording(item);
+			return true;
+		} else if (item.getItemId() == R.id.action_play_song) {
+			toggleSong(item);
+			return true;
 		} else {
 			return super.onOptionsItemSelected(item);
 		}
@@ -627,9 +687,11 @@ public class MainActivity extends Activity implements SensorEventListener {
 	}
 
 	private void applyCtlStates() {
+		mEngine.beginBatch();
 		for (int i = 0; i < mCtlState.length; ++i) {
 			mEngine.controller(mChannel, mCtlNum[i], mCtlState[i]);
 		}
+		mEngine.endBatch();
 		mSpinCtls.setSelection(0, false);
 		mControlBar.setProgress(mCtlState[0]);
 	}
@@ -647,6 +709,33 @@ public class MainActivity extends Activity implements SensorEventListener {
 		}
 	}
 
+	// las zonas split/layer del teclado: el canal elegido toca las teclas
+	// desde el punto de división (o todas), y el segundo canal las demás (o
+	// todas, en capas), con su propio instrumento y transposición
+	private void applyChannelMap() {
+		SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
+		int mode = Integer.parseInt(sharedPrefs.getString("keyboard_mode",
+				getString(R.string.default_keyboard_mode)));
+		int channel = Integer.parseInt(sharedPrefs.getString("second_channel",
+				getString(R.string.default_second_channel)));
+		int program = Integer.parseInt(sharedPrefs.getString("second_program",
+				getString(R.string.default_second_program)));
+		int transpose = Integer.parseInt(sharedPrefs.getString("second_transpose",
+				getString(R.string.default_second_transpose)));
+		int splitKey = Integer.parseInt(sharedPrefs.getString("split_key",
+				getString(R.string.default_split_key)));
+		ChannelMap map = null;
+		if (mode == KEYBOARD_SPLIT) {
+			map = ChannelMap.split(mChannel, channel, splitKey, transpose);
+		} else if (mode == KEYBOARD_LAYER) {
+			map = ChannelMap.layer(mChannel, channel, transpose);
+		}
+		mEngine.setChannelMap(map);
+		if (map != null && channel != mChannel) {
+			mEngine.programChange(channel, program);
+		}
+	}
+
 	private void changeTabbedControlsVisibility(boolean showing) {
 		int visibility = showing ? View.VISIBLE : View.GONE;
 		if (mTabs != null)
@@ -691,6 +780,56 @@ public class MainActivity extends Activity implements SensorEventListener {
 		item.setChecked(state);
 	}
 
+	private void toggleRecording(MenuItem item) {
+		if (mRecordingFile != null) {
+			mRecorder.stopRecording();
+			recordingStopped();
+			return;
+		}
+		File dir = getExternalFilesDir(Environment.DIRECTORY_MUSIC);
+		if (dir == null) {
+			dir = getFilesDir();
+		}
+		String name = new SimpleDateFormat("'vmpk-'yyyyMMdd-HHmmss'.mid'", Locale.US).format(new Date());
+		File file = new File(dir, name);
+		try {
+			mRecorder.startRecording(new FileOutputStream(file).getChannel());
+			mRecordingFile = file;
+			item.setChecked(true);
+		} catch (IOException e) {
+			Log.e("MainActivity", "Unable to record", e);
+		}
+	}
+
+	private void recordingStopped() {
+		Toast.makeText(this, getString(R.string.recording_saved, mRecordingFile.getPath()),
+				Toast.LENGTH_LONG).show();
+		mRecordingFile = null;
+		if (mMenu != null) {
+			MenuItem item = mMenu.findItem(R.id.action_record);
+			if (item != null) {
+				item.setChecked(false);
+			}
+		}
+	}
+
+	private void toggleSong(MenuItem item) {
+		if (!(mRecorder.getEngine() instanceof SynthEngine)) {
+			return;
+		}
+		SynthEngine synth = (SynthEngine) mRecorder.getEngine();
+		if (synth.isSongPlaying()) {
+			synth.stopSong();
+			item.setChecked(false);
+			return;
+		}
+		Intent i = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+		i.addCategory(Intent.CATEGORY_OPENABLE);
+		i.setType("audio/*");
+		i.putExtra(Intent.EXTRA_MIME_TYPES, new String[] { "audio/midi", "audio/x-midi", "audio/sp-midi" });
+		startActivityForResult(i, RESULT_SONG);
+	}
+
 	private void showSettings() {
 		Log.d(getLocalClassName(), "showSettings()");
 		Intent i = new Intent(this, SettingsActivity.class);
@@ -706,6 +845,11 @@ public class MainActivity extends Activity implements SensorEventListener {
 				applyPianoSettings();
 				SettingChangeHelper.changeSettingsCheck(this);
 				break;
+			case RESULT_SONG:
+				if (resultCode == RESULT_OK && data != null) {
+					mPendingSong = data.getData();
+				}
+				break;
 		}
 	}
 
@@ -47,7 +47,28 @@ public interface MidiEngine {
 
 	public void noteOff(int channel, int note, int vel);
 
+	// timestamp: System.nanoTime() of the originating input event
+	public void noteOn(int channel, int note, int vel, long timestamp);
+
+	public void noteOff(int channel, int note, int vel, long timestamp);
+
+	// keys of the on-screen keyboard: played on every zone of the channel
+	// map that contains them, or as a note on the given channel without one
+	public void keyOn(int channel, int key, int vel, long timestamp);
+
+	public void keyOff(int channel, int key, int vel, long timestamp);
+
+	// null plays the keys on a single channel; the notes still sounding
+	// when the map changes should be silenced with panic()
+	public void setChannelMap(ChannelMap map);
+
 	public void panic();
 
+	// messages sent between beginBatch() and endBatch() may be delivered
+	// together; batches can be nested
+	public void beginBatch();
+
+	public void endBatch();
+
 	public void reset();
 }
@@ -0,0 +1,348 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package io.github.pedrolcl.vmpk;
+
+import android.app.Activity;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Decorador de cualquier MidiEngine que además graba los mensajes en un
+// Standard MIDI File. Cada mensaje sale primero hacia el motor; la captura
+// solo copia dos primitivas en un anillo preasignado, y un thread de fondo
+// convierte los mensajes y escribe el fichero, así que grabar no añade
+// latencia a la pulsación de las teclas.
+public class MidiRecorder implements MidiEngine {
+
+	// SMF format 0, one track: 960 ticks per quarter note at 120 bpm,
+	// about half a millisecond per tick
+	private static final int DIVISION = 960;
+	private static final int TEMPO = 500000; // microseconds per quarter note
+	private static final int HEADER_SIZE = 22; // MThd chunk and MTrk header
+
+	// single producer (the UI thread) single consumer (the writer) ring,
+	// one per recording
+	private static final int RING_SIZE = 8192;
+	private static final int RING_MASK = RING_SIZE - 1;
+
+	// the writer drains the ring this often
+	private static final long DRAIN_MILLIS = 50;
+
+	private final MidiEngine mEngine;
+	// the notes of the zones are recorded, as they were played
+	private ChannelMap mChannelMap = null;
+	// the current recording, null if none
+	private volatile SmfWriter mWriter = null;
+
+	public MidiRecorder(MidiEngine engine) {
+		mEngine = engine;
+	}
+
+	public MidiEngine getEngine() {
+		return mEngine;
+	}
+
+	public boolean isRecording() {
+		return mWriter != null;
+	}
+
+	/**
+	 * Starts capturing the messages sent from now on. The file is written on
+	 * a background thread, and completed after stopRecording(). A previous
+	 * file still being completed keeps its own thread, so this never waits.
+	 *
+	 * @param channel seekable destination, closed when the recording ends.
+	 */
+	public void startRecording(FileChannel channel) {
+		stopRecording();
+		SmfWriter writer = new SmfWriter(channel, System.nanoTime());
+		mWriter = writer;
+		new Thread(writer, "MidiRecorder").start();
+	}
+
+	/**
+	 * Stops capturing; the writer completes the file in the background.
+	 */
+	public void stopRecording() {
+		SmfWriter writer = mWriter;
+		if (writer != null) {
+			mWriter = null;
+			// not interrupted: that would close the channel in the middle of a write
+			writer.mRecording = false;
+			if (writer.mDropped > 0) {
+				Log.d("MidiRecorder", "dropped " + writer.mDropped + " events");
+			}
+		}
+	}
+
+	private void record(int length, int m, int n, int v, long timestamp) {
+		SmfWriter writer = mWriter;
+		if (writer != null) {
+			writer.record(length, m, n, v, timestamp);
+		}
+	}
+
+	private void record(int m, int n, int v) {
+		if (mWriter != null) {
+			record(3, m, n, v, System.nanoTime());
+		}
+	}
+
+	private void record(int m, int n) {
+		if (mWriter != null) {
+			record(2, m, n, 0, System.nanoTime());
+		}
+	}
+
+	private static class SmfWriter implements Runnable {
+		private final long[] mTimes = new long[RING_SIZE];
+		private final int[] mMessages = new int[RING_SIZE]; // status | data1 << 8 | data2 << 16 | length << 24
+		private volatile int mHead = 0; // written only by the producer
+		private volatile int mTail = 0; // written only by the writer
+		private volatile boolean mRecording = true;
+		private int mDropped = 0;
+
+		private final FileChannel mChannel;
+		private final long mStart;
+		private final ByteBuffer mBuffer = ByteBuffer.allocate(16 * 1024);
+		private long mFileStart;
+		private long mLastTick = 0;
+
+		SmfWriter(FileChannel channel, long start) {
+			mChannel = channel;
+			mStart = start;
+		}
+
+		void record(int length, int m, int n, int v, long timestamp) {
+			int head = mHead;
+			if (head - mTail == RING_SIZE) {
+				// never block the caller: the writer is far behind
+				mDropped++;
+				return;
+			}
+			mTimes[head & RING_MASK] = timestamp;
+			mMessages[head & RING_MASK] = (m & 0xff) | (n & 0x7f) << 8 | (v & 0x7f) << 16 | length << 24;
+			mHead = head + 1;
+		}
+
+		@Override
+		public void run() {
+			try {
+				writeHeader();
+				while (mRecording) {
+					drain();
+					try {
+						Thread.sleep(DRAIN_MILLIS);
+					} catch (InterruptedException e) {
+						break;
+					}
+				}
+				// the last drain after stopRecording() gets everything
+				drain();
+				// end of track
+				putVarLength(0);
+				mBuffer.put((byte) 0xff).put((byte) 0x2f).put((byte) 0);
+				flush();
+				ByteBuffer length = ByteBuffer.allocate(4);
+				length.putInt(0, (int) (mChannel.position() - mFileStart - HEADER_SIZE));
+				mChannel.write(length, mFileStart + HEADER_SIZE - 4);
+			} catch (IOException e) {
+				Log.e("MidiRecorder", "SMF write error", e);
+			} finally {
+				try {
+					mChannel.close();
+				} catch (IOException e) {
+					Log.e("MidiRecorder", "SMF close error", e);
+				}
+			}
+		}
+
+		private void writeHeader() throws IOException {
+			mBuffer.put(new byte[] { 'M', 'T', 'h', 'd' }).putInt(6);
+			mBuffer.putShort((short) 0).putShort((short) 1).putShort((short) DIVISION);
+			// the track length is completed at the end
+			mBuffer.put(new byte[] { 'M', 'T', 'r', 'k' }).putInt(0);
+			mFileStart = mChannel.position();
+			putVarLength(0);
+			mBuffer.put((byte) 0xff).put((byte) 0x51).put((byte) 3);
+			mBuffer.put((byte) (TEMPO >> 16)).put((byte) (TEMPO >> 8)).put((byte) TEMPO);
+		}
+
+		private void drain() throws IOException {
+			int head = mHead;
+			int tail = mTail;
+			while (tail != head) {
+				long tick = (mTimes[tail & RING_MASK] - mStart) * DIVISION / (TEMPO * 1000L);
+				int message = mMessages[tail & RING_MASK];
+				mTail = ++tail;
+				// timestamps of the input events may be slightly out of order
+				if (tick < mLastTick) {
+					tick = mLastTick;
+				}
+				if (mBuffer.remaining() < 8) {
+					flush();
+				}
+				putVarLength(tick - mLastTick);
+				mLastTick = tick;
+				int length = message >>> 24;
+				for (int i = 0; i < length; i++) {
+					mBuffer.put((byte) (message >> (8 * i)));
+				}
+			}
+			flush();
+		}
+
+		// variable length quantity, at most four bytes in a SMF
+		private void putVarLength(long value) {
+			if (value > 0x0fffffff) {
+				value = 0x0fffffff;
+			}
+			int shift = 21;
+			while (shift > 0 && (value >> shift) == 0) {
+				shift -= 7;
+			}
+			for (; shift > 0; shift -= 7) {
+				mBuffer.put((byte) (0x80 | (value >> shift) & 0x7f));
+			}
+			mBuffer.put((byte) (value & 0x7f));
+		}
+
+		private void flush() throws IOException {
+			mBuffer.flip();
+			while (mBuffer.hasRemaining()) {
+				mChannel.write(mBuffer);
+			}
+			mBuffer.clear();
+		}
+	}
+
+	@Override
+	public void start(Activity activity) {
+		mEngine.start(activity);
+	}
+
+	// the file is completed as soon as the output stops, in case the
+	// activity is not resumed again
+	@Override
+	public void stop() {
+		stopRecording();
+		mEngine.stop();
+	}
+
+	@Override
+	public void pitchWheel(int channel, int num) {
+		mEngine.pitchWheel(channel, num);
+		record(STATUS_BENDER | channel, num % 0x80, num / 0x80);
+	}
+
+	@Override
+	public void channelPressure(int channel, int num) {
+		mEngine.channelPressure(channel, num);
+		record(STATUS_CHANAFT | channel, num);
+	}
+
+	@Override
+	public void programChange(int channel, int num) {
+		mEngine.programChange(channel, num);
+		record(STATUS_PROGRAM | channel, num);
+	}
+
+	@Override
+	public void controller(int channel, int ctl, int num) {
+		mEngine.controller(channel, ctl, num);
+		record(STATUS_CTLCHG | channel, ctl, num);
+	}
+
+	@Override
+	public void aftertouch(int channel, int note, int num) {
+		mEngine.aftertouch(channel, note, num);
+		record(STATUS_POLYAFT | channel, note, num);
+	}
+
+	@Override
+	public void noteOn(int channel, int note, int vel) {
+		mEngine.noteOn(channel, note, vel);
+		record(STATUS_NOTEON | channel, note, vel);
+	}
+
+	@Override
+	public void noteOff(int channel, int note, int vel) {
+		mEngine.noteOff(channel, note, vel);
+		record(STATUS_NOTEOFF | channel, note, vel);
+	}
+
+	@Override
+	public void noteOn(int channel, int note, int vel, long timestamp) {
+		mEngine.noteOn(channel, note, vel, timestamp);
+		record(3, STATUS_NOTEON | channel, note, vel, timestamp);
+	}
+
+	@Override
+	public void noteOff(int channel, int note, int vel, long timestamp) {
+		mEngine.noteOff(channel, note, vel, timestamp);
+		record(3, STATUS_NOTEOFF | channel, note, vel, timestamp);
+	}
+
+	private void recordKey(int status, int channel, int key, int vel, long timestamp) {
+		ChannelMap map = mChannelMap;
+		if (mWriter == null) {
+			return;
+		}
+		if (map == null) {
+			record(3, status | channel, key, vel, timestamp);
+			return;
+		}
+		for (int zone = 0; zone < map.size(); zone++) {
+			int note = map.noteFor(zone, key);
+			if (note >= 0) {
+				record(3, status | map.channel(zone), note, vel, timestamp);
+			}
+		}
+	}
+
+	@Override
+	public void keyOn(int channel, int key, int vel, long timestamp) {
+		mEngine.keyOn(channel, key, vel, timestamp);
+		recordKey(STATUS_NOTEON, channel, key, vel, timestamp);
+	}
+
+	@Override
+	public void keyOff(int channel, int key, int vel, long timestamp) {
+		mEngine.keyOff(channel, key, vel, timestamp);
+		recordKey(STATUS_NOTEOFF, channel, key, vel, timestamp);
+	}
+
+	@Override
+	public void setChannelMap(ChannelMap map) {
+		mChannelMap = map;
+		mEngine.setChannelMap(map);
+	}
+
+	@Override
+	public void panic() {
+		mEngine.panic();
+		for (int ch = 0; ch < 16; ++ch) {
+			record(STATUS_CTLCHG | ch, CTL_ALL_NOTES_OFF, 0);
+		}
+	}
+
+	@Override
+	public void beginBatch() {
+		mEngine.beginBatch();
+	}
+
+	@Override
+	public void endBatch() {
+		mEngine.endBatch();
+	}
+
+	@Override
+	public void reset() {
+		mEngine.reset();
+		for (int ch = 0; ch < 16; ++ch) {
+			record(STATUS_CTLCHG | ch, CTL_RESET_ALL_CTL, 0);
+		}
+	}
+}
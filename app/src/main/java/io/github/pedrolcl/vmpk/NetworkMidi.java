@@ -11,7 +11,9 @@ import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.net.wifi.WifiInfo;
 import android.net.wifi.WifiManager;
-import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
 import android.preference.PreferenceManager;
 
 import java.net.DatagramPacket;
@@ -20,7 +22,7 @@ import java.net.MulticastSocket;
 import java.net.NetworkInterface;
 
 // thread independiente para gestionar el envío en segundo plano,
-// AsyncTask: http://developer.android.com/reference/android/os/AsyncTask.html
+// HandlerThread: http://developer.android.com/reference/android/os/HandlerThread.html
 public class NetworkMidi implements MidiEngine {
 
 	private MulticastSocket mSocket = null;
@@ -35,19 +37,56 @@ public class NetworkMidi implements MidiEngine {
 	private int mPort;
 	private InetAddress mGroupAddr;
 
-	private class SocketSenderTask extends AsyncTask<byte[], Void, Void> {
+	private HandlerThread mSenderThread = null;
+	private Handler mSender = null;
+
+	// los mensajes MIDI viajan empaquetados en arg1 (status | data1 << 8 | data2 << 16)
+	// y su longitud en arg2, usando el pool de Message: sin asignar memoria por evento
+	private static final int MSG_MIDI = 1;
+	// un lote de mensajes se envía en un solo paquete: obj es el byte[] y arg2 su longitud
+	private static final int MSG_BATCH = 2;
+	private static final int BATCH_SIZE = 1024;
+	private byte[] mBatch = new byte[BATCH_SIZE];
+	private int mBatchLength = 0;
+	// los lotes enviados vuelven a este pool, como los Message, así que
+	// sólo se crea uno nuevo cuando el thread de envío va retrasado
+	private static final int BATCH_POOL_SIZE = 4;
+	private final byte[][] mBatchPool = new byte[BATCH_POOL_SIZE][];
+	private int mBatchPoolSize = 0;
+	private int mBatchDepth = 0;
+	// zonas split/layer del teclado: las notas de una tecla viajan juntas
+	private ChannelMap mChannelMap = null;
+
+	private class SocketSender implements Handler.Callback {
+		private final byte[] mBuffer = new byte[3];
+		private final DatagramPacket mPacket = new DatagramPacket(mBuffer, mBuffer.length);
+
 		@Override
-		protected Void doInBackground(byte[]... args) {
+		public boolean handleMessage(Message msg) {
+			if (msg.what != MSG_MIDI && msg.what != MSG_BATCH) {
+				return false;
+			}
 			try {
-				for (byte[] data : args) {
-					DatagramPacket pack = new DatagramPacket(data, data.length, mGroupAddr, mPort);
-					// mSocket.setTimeToLive(TIME_TO_LIVE);
-					mSocket.send(pack);
+				if (msg.what == MSG_BATCH) {
+					mPacket.setData((byte[]) msg.obj, 0, msg.arg2);
+				} else {
+					int packed = msg.arg1;
+					mBuffer[0] = (byte) packed;
+					mBuffer[1] = (byte) (packed >> 8);
+					mBuffer[2] = (byte) (packed >> 16);
+					mPacket.setData(mBuffer, 0, msg.arg2);
 				}
+				mPacket.setAddress(mGroupAddr);
+				mPacket.setPort(mPort);
+				// mSocket.setTimeToLive(TIME_TO_LIVE);
+				mSocket.send(mPacket);
 			} catch (Exception e) {
 				Log.e("NetworkMidi", "Packet Sending Error", e);
 			}
-			return null;
+			if (msg.what == MSG_BATCH) {
+				recycleBatch((byte[]) msg.obj);
+			}
+			return true;
 		}
 	}
 
@@ -125,6 +164,11 @@ public class NetworkMidi implements MidiEngine {
 				mLock = mWifi.createMulticastLock("Log_Tag");
 				mLock.acquire();
 			}
+			if (mSenderThread == null) {
+				mSenderThread = new HandlerThread("NetworkMidi");
+				mSenderThread.start();
+				mSender = new Handler(mSenderThread.getLooper(), new SocketSender());
+			}
 		} catch (Exception ex) {
 			alertDialog(activity);
 			Log.e("NetworkMidi", "Socket Error", ex);
@@ -137,32 +181,80 @@ public class NetworkMidi implements MidiEngine {
 			mLock.release();
 			mLock = null;
 		}
+		if (mSenderThread != null) {
+			mSenderThread.quitSafely();
+			mSenderThread = null;
+			mSender = null;
+		}
 	}
 
-	private void sendMidi(byte[] data) {
-		SocketSenderTask task = new SocketSenderTask();
-		task.execute(data);
+	private void sendMidi(int length, int m, int n, int v) {
+		if (mSocket != null && mLock != null && mSender != null) {
+			if (mBatchDepth > 0) {
+				if (mBatchLength + length > BATCH_SIZE) {
+					flushBatch();
+				}
+				mBatch[mBatchLength++] = (byte) m;
+				mBatch[mBatchLength++] = (byte) n;
+				if (length > 2) {
+					mBatch[mBatchLength++] = (byte) v;
+				}
+			} else {
+				int packed = (m & 0xff) | (n & 0xff) << 8 | (v & 0xff) << 16;
+				mSender.obtainMessage(MSG_MIDI, packed, length).sendToTarget();
+			}
+		}
 	}
 
-	protected void sendMidi(int m, int n, int v) {
-		if (mSocket != null && mLock != null) {
-			byte msg[] = new byte[3];
-			msg[0] = (byte) m;
-			msg[1] = (byte) n;
-			msg[2] = (byte) v;
-			sendMidi(msg);
+	private byte[] obtainBatch() {
+		synchronized (mBatchPool) {
+			if (mBatchPoolSize > 0) {
+				byte[] batch = mBatchPool[--mBatchPoolSize];
+				mBatchPool[mBatchPoolSize] = null;
+				return batch;
+			}
 		}
+		return new byte[BATCH_SIZE];
 	}
 
-	protected void sendMidi(int m, int n) {
-		if (mSocket != null && mLock != null) {
-			byte msg[] = new byte[2];
-			msg[0] = (byte) m;
-			msg[1] = (byte) n;
-			sendMidi(msg);
+	// called by the sender thread once the batch has been sent
+	void recycleBatch(byte[] batch) {
+		synchronized (mBatchPool) {
+			if (mBatchPoolSize < BATCH_POOL_SIZE) {
+				mBatchPool[mBatchPoolSize++] = batch;
+			}
 		}
 	}
 
+	private void flushBatch() {
+		if (mSender != null && mBatchLength > 0) {
+			// the sender owns the batch until it returns it to the pool
+			mSender.obtainMessage(MSG_BATCH, 0, mBatchLength, mBatch).sendToTarget();
+			mBatch = obtainBatch();
+		}
+		mBatchLength = 0;
+	}
+
+	@Override
+	public void beginBatch() {
+		mBatchDepth++;
+	}
+
+	@Override
+	public void endBatch() {
+		if (mBatchDepth > 0 && --mBatchDepth == 0) {
+			flushBatch();
+		}
+	}
+
+	protected void sendMidi(int m, int n, int v) {
+		sendMidi(3, m, n, v);
+	}
+
+	protected void sendMidi(int m, int n) {
+		sendMidi(2, m, n, 0);
+	}
+
 	@Override
 	public void pitchWheel(int channel, int num) {
 		// num >= 0, num <= 16384
@@ -201,18 +293,64 @@ public class NetworkMidi implements MidiEngine {
 		sendMidi(STATUS_NOTEOFF | channel, note, vel);
 	}
 
+	// ipMIDI packets have no timestamps: they are sent as soon as possible
+	@Override
+	public void noteOn(int channel, int note, int vel, long timestamp) {
+		noteOn(channel, note, vel);
+	}
+
+	@Override
+	public void noteOff(int channel, int note, int vel, long timestamp) {
+		noteOff(channel, note, vel);
+	}
+
+	private void sendKey(int status, int channel, int key, int vel) {
+		ChannelMap map = mChannelMap;
+		if (map == null) {
+			sendMidi(status | channel, key, vel);
+			return;
+		}
+		beginBatch();
+		for (int zone = 0; zone < map.size(); zone++) {
+			int note = map.noteFor(zone, key);
+			if (note >= 0) {
+				sendMidi(status | map.channel(zone), note, vel);
+			}
+		}
+		endBatch();
+	}
+
+	@Override
+	public void keyOn(int channel, int key, int vel, long timestamp) {
+		sendKey(STATUS_NOTEON, channel, key, vel);
+	}
+
+	@Override
+	public void keyOff(int channel, int key, int vel, long timestamp) {
+		sendKey(STATUS_NOTEOFF, channel, key, vel);
+	}
+
+	@Override
+	public void setChannelMap(ChannelMap map) {
+		mChannelMap = map;
+	}
+
 	@Override
 	public void panic() {
+		beginBatch();
 		for (int ch = 0; ch < 16; ++ch) {
 			controller(ch, CTL_ALL_NOTES_OFF, 0);
 		}
+		endBatch();
 	}
 
 	@Override
 	public void reset() {
+		beginBatch();
 		for (int ch = 0; ch < 16; ++ch) {
 			controller(ch, CTL_RESET_ALL_CTL, 0);
 		}
+		endBatch();
 	}
 
 }
@@ -0,0 +1,282 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+/*
+ * Offline rendering for Sonivox EAS synthesizer
+ * Copyright (C) 2013-2025 Pedro López-Cabanillas <plcl@users.sf.net>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.pedrolcl.vmpk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Renders MIDI messages to a 16 bit PCM WAV file, as fast as the CPU allows
+ * and without any audio device. The synthesizer is the same as MIDISynth's,
+ * but time only advances when {@link #renderTo(long)} is called, so the
+ * output depends only on the messages and the frames where they were
+ * written.
+ * <p>
+ * Messages take effect at the start of the next EAS block (see
+ * {@link #getBlockFrames()}). Not thread safe; rendering a long performance
+ * should not be done on the UI thread.
+ */
+public class OfflineRenderer implements Closeable {
+
+  static {
+    System.loadLibrary("midisynth");
+  }
+
+  private static final int HEADER_SIZE = 44;
+  private static final int BLOCKS_PER_WRITE = 32;
+  private static final long MAX_DATA_SIZE = 0xffffffffL - HEADER_SIZE;
+
+  // native OfflineContext pointer, zero once closed
+  private long context;
+
+  private final FileChannel channel;
+  private final long headerPosition;
+  private final ByteBuffer buffer;
+  private final int sampleRate;
+  private final int channels;
+  private final int blockFrames;
+
+  // frames written to the file so far
+  private long position;
+
+  /**
+   * Constructor. Writes a WAV header at the current position of the channel,
+   * to be completed by {@link #close()}.
+   *
+   * @param channel seekable destination, usually from a FileOutputStream. It
+   *                is closed with the renderer.
+   * @throws IOException if the synthesizer cannot be created or the channel
+   *                     cannot be written.
+   */
+  public OfflineRenderer(FileChannel channel) throws IOException {
+    int[] config = new int[3];
+    getConfig(config);
+    sampleRate = config[0];
+    channels = config[1];
+    blockFrames = config[2];
+    // EAS renders in native order, little endian on every Android ABI
+    buffer = ByteBuffer.allocateDirect(BLOCKS_PER_WRITE * blockFrames * channels * 2)
+        .order(ByteOrder.nativeOrder());
+    this.channel = channel;
+    headerPosition = channel.position();
+    context = open();
+    if (context == 0) {
+      throw new IOException("Unsupported");
+    }
+    try {
+      writeHeader();
+    } catch (IOException e) {
+      close(context);
+      context = 0;
+      throw e;
+    }
+  }
+
+  /**
+   * @return output sample rate of the synthesizer, in Hz.
+   */
+  public int getSampleRate() {
+    return sampleRate;
+  }
+
+  /**
+   * @return number of output channels.
+   */
+  public int getChannels() {
+    return channels;
+  }
+
+  /**
+   * @return frames rendered by each EAS block, the time resolution of the
+   *         messages.
+   */
+  public int getBlockFrames() {
+    return blockFrames;
+  }
+
+  /**
+   * @return frames written to the file so far, always a multiple of
+   *         {@link #getBlockFrames()}.
+   */
+  public long getPosition() {
+    return position;
+  }
+
+  /**
+   * Replaces the General MIDI sounds with the instruments of a parsed DLS
+   * collection. The renderer keeps its own reference, so the bank may be
+   * closed afterwards.
+   *
+   * @param bank DLS collection, or null for the built-in sounds.
+   * @throws IOException if the synthesizer rejects the collection.
+   */
+  public void setSoundBank(SoundBank bank) throws IOException {
+    checkOpen();
+    if (!setSoundBank(context, bank == null ? 0 : bank.handle())) {
+      throw new IOException("Unable to change the sound bank");
+    }
+  }
+
+  /**
+   * Sends complete MIDI messages, played from the current position.
+   *
+   * @throws IOException if the synthesizer rejects the messages.
+   */
+  public void write(byte[] data) throws IOException {
+    checkOpen();
+    if (!write(context, data)) {
+      throw new IOException("Invalid MIDI message");
+    }
+  }
+
+  public void initReverb(int reverb_type) {
+    checkOpen();
+    initReverb(context, reverb_type);
+  }
+
+  public void initChorus(int chorus_type) {
+    checkOpen();
+    initChorus(context, chorus_type);
+  }
+
+  public void reverbWet(int amount) {
+    checkOpen();
+    setReverbWet(context, amount);
+  }
+
+  public void chorusLevel(int level) {
+    checkOpen();
+    setChorusLevel(context, level);
+  }
+
+  /**
+   * Renders whole blocks until the position reaches the given frame; the
+   * messages written next will play at that position.
+   *
+   * @param frame target position, in frames from the start of the file.
+   * @throws IOException if the file cannot be written or would grow beyond
+   *                     the 4 GB limit of the WAV format.
+   */
+  public void renderTo(long frame) throws IOException {
+    checkOpen();
+    while (position < frame) {
+      int blocks = (int) Math.min(BLOCKS_PER_WRITE, (frame - position + blockFrames - 1) / blockFrames);
+      int frames = blocks * blockFrames;
+      if ((position + frames) * channels * 2 > MAX_DATA_SIZE) {
+        throw new IOException("WAV file too large");
+      }
+      if (!render(context, buffer, blocks)) {
+        throw new IOException("Render failed");
+      }
+      buffer.clear();
+      buffer.limit(frames * channels * 2);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      position += frames;
+    }
+  }
+
+  /**
+   * Renders the given number of seconds from the current position, e.g. to
+   * let the last notes ring out.
+   *
+   * @see #renderTo(long)
+   */
+  public void renderSeconds(double seconds) throws IOException {
+    renderTo(position + (long) Math.ceil(seconds * sampleRate));
+  }
+
+  /**
+   * Completes the WAV header with the length of the audio, then releases the
+   * synthesizer and closes the channel. Safe to call more than once.
+   */
+  @Override
+  public void close() throws IOException {
+    if (context == 0) {
+      return;
+    }
+    close(context);
+    context = 0;
+    try {
+      writeHeader();
+    } finally {
+      channel.close();
+    }
+  }
+
+  private void checkOpen() {
+    if (context == 0) {
+      throw new IllegalStateException("Renderer closed.");
+    }
+  }
+
+  // canonical 44 byte header of a PCM WAV file with 'position' frames
+  private void writeHeader() throws IOException {
+    int frameSize = channels * 2;
+    int dataSize = (int) (position * frameSize);
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    header.put(new byte[] { 'R', 'I', 'F', 'F' });
+    header.putInt(HEADER_SIZE - 8 + dataSize);
+    header.put(new byte[] { 'W', 'A', 'V', 'E', 'f', 'm', 't', ' ' });
+    header.putInt(16);
+    header.putShort((short) 1); // PCM
+    header.putShort((short) channels);
+    header.putInt(sampleRate);
+    header.putInt(sampleRate * frameSize);
+    header.putShort((short) frameSize);
+    header.putShort((short) 16);
+    header.put(new byte[] { 'd', 'a', 't', 'a' });
+    header.putInt(dataSize);
+    header.flip();
+    long offset = headerPosition;
+    while (header.hasRemaining()) {
+      offset += channel.write(header, offset);
+    }
+    if (channel.position() < headerPosition + HEADER_SIZE) {
+      channel.position(headerPosition + HEADER_SIZE);
+    }
+  }
+
+  private static native void getConfig(int[] config);
+
+  private static native long open();
+
+  private static native void close(long ctx);
+
+  private static native boolean render(long ctx, ByteBuffer buffer, int blocks);
+
+  private static native boolean write(long ctx, byte[] data);
+
+  private static native boolean setSoundBank(long ctx, long bank);
+
+  private static native void initReverb(long ctx, int reverb_type);
+
+  private static native void initChorus(long ctx, int chorus_type);
+
+  private static native void setReverbWet(long ctx, int amount);
+
+  private static native void setChorusLevel(long ctx, int level);
+
+}
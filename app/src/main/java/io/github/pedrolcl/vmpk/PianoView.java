@@ -29,6 +29,12 @@ public class PianoView extends View {
 	private Bitmap mBlackKeyBmp = null;
 	private Rect mRect = null;
 	private ArrayList<PianoKey> mKeys, mReversed;
+	// índice espacial para getKeyForPos: el teclado se divide en franjas de
+	// media tecla blanca, y cada franja guarda las teclas que la tocan en el
+	// orden de mReversed (las negras primero, que están encima)
+	private PianoKey[][] mBuckets = null;
+	private float mBucketsLeft;
+	private float mBucketWidth;
 	private SparseArray<PianoKey> mLast;
 	private boolean mShowingNames = false;
 	private MidiEngine mEngine;
@@ -217,11 +223,56 @@ public class PianoView extends View {
 		}
 		mReversed = new ArrayList<PianoKey>(mKeys);
 		Collections.reverse(mReversed);
+		initBuckets();
 		invalidate();
 	}
 
-	PianoKey getKeyForPos(float x, float y) {
+	private void initBuckets() {
+		mBuckets = null;
+		if (mReversed.isEmpty() || mKeyWidth <= 0) {
+			return;
+		}
+		float left = Float.MAX_VALUE;
+		float right = -Float.MAX_VALUE;
 		for (PianoKey k : mReversed) {
+			left = Math.min(left, k.mBounds.left);
+			right = Math.max(right, k.mBounds.right);
+		}
+		mBucketsLeft = left;
+		mBucketWidth = mKeyWidth / 2;
+		int numBuckets = bucketFor(right) + 1;
+		int[] sizes = new int[numBuckets];
+		for (PianoKey k : mReversed) {
+			for (int b = bucketFor(k.mBounds.left); b <= bucketFor(k.mBounds.right); b++) {
+				sizes[b]++;
+			}
+		}
+		mBuckets = new PianoKey[numBuckets][];
+		for (int b = 0; b < numBuckets; b++) {
+			mBuckets[b] = new PianoKey[sizes[b]];
+			sizes[b] = 0;
+		}
+		for (PianoKey k : mReversed) {
+			for (int b = bucketFor(k.mBounds.left); b <= bucketFor(k.mBounds.right); b++) {
+				mBuckets[b][sizes[b]++] = k;
+			}
+		}
+	}
+
+	// the rounding is monotonic, so a key containing x is always in its bucket
+	private int bucketFor(float x) {
+		return (int) Math.floor((x - mBucketsLeft) / mBucketWidth);
+	}
+
+	PianoKey getKeyForPos(float x, float y) {
+		if (mBuckets == null) {
+			return null;
+		}
+		int b = bucketFor(x);
+		if (b < 0 || b >= mBuckets.length) {
+			return null;
+		}
+		for (PianoKey k : mBuckets[b]) {
 			if (k.checkTouched(x, y)) {
 				return k;
 			}
@@ -404,7 +455,7 @@ public class PianoView extends View {
 		if (key != null && !key.mIsPressed && accept) {
 			// Log.d(VIEW_LOG_TAG, "keyOn:" + key.mNote);
 			if (mEngine != null) {
-				mEngine.noteOn(mChannel, key.mNote + mBaseOctave * 12, mVelocity);
+				mEngine.keyOn(mChannel, key.mNote + mBaseOctave * 12, mVelocity, System.nanoTime());
 			}
 			key.mIsPressed = true;
 			invalidate();
@@ -417,7 +468,7 @@ public class PianoView extends View {
 		if (key != null && key.mIsPressed) {
 			// Log.d(VIEW_LOG_TAG, "keyOff:" + key.mNote);
 			if (mEngine != null) {
-				mEngine.noteOff(mChannel, key.mNote + mBaseOctave * 12, mVelocity);
+				mEngine.keyOff(mChannel, key.mNote + mBaseOctave * 12, mVelocity, System.nanoTime());
 			}
 			key.mIsPressed = false;
 			invalidate();
@@ -7,8 +7,10 @@ import android.app.Activity;
 import android.app.AlertDialog;
 import android.content.DialogInterface;
 import android.content.DialogInterface.OnClickListener;
+import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
+import android.net.Uri;
 import android.os.Bundle;
 import android.preference.EditTextPreference;
 import android.preference.ListPreference;
@@ -19,6 +21,8 @@ import android.preference.PreferenceManager;
 
 public class SettingsFragment extends PreferenceFragment
 		implements OnSharedPreferenceChangeListener {
+	private static final int REQUEST_SOUND_BANK = 1;
+
 	@Override
 	public void onCreate(Bundle savedInstanceState) {
 		super.onCreate(savedInstanceState);
@@ -54,6 +58,52 @@ public class SettingsFragment extends PreferenceFragment
 				}
 			});
 		}
+
+		Preference soundBank = findPreference("sound_bank");
+		if (soundBank != null) {
+			soundBank.setOnPreferenceClickListener(new Preference.OnPreferenceClickListener() {
+				@Override
+				public boolean onPreferenceClick(Preference preference) {
+					String[] items = { getString(R.string.sound_bank_builtin),
+							getString(R.string.sound_bank_choose) };
+					new AlertDialog.Builder(getActivity())
+							.setTitle(R.string.sound_bank)
+							.setItems(items, new OnClickListener() {
+								@Override
+								public void onClick(DialogInterface dialog, int which) {
+									if (which == 0) {
+										setSoundBank("");
+									} else {
+										Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+										intent.addCategory(Intent.CATEGORY_OPENABLE);
+										intent.setType("*/*");
+										startActivityForResult(intent, REQUEST_SOUND_BANK);
+									}
+								}
+							}).show();
+					return true;
+				}
+			});
+		}
+	}
+
+	@Override
+	public void onActivityResult(int requestCode, int resultCode, Intent data) {
+		if (requestCode == REQUEST_SOUND_BANK && resultCode == Activity.RESULT_OK
+				&& data != null && data.getData() != null) {
+			Uri uri = data.getData();
+			// el sintetizador vuelve a abrir el archivo en cada arranque
+			getActivity().getContentResolver().takePersistableUriPermission(uri,
+					Intent.FLAG_GRANT_READ_URI_PERMISSION);
+			setSoundBank(uri.toString());
+		}
+	}
+
+	private void setSoundBank(String uri) {
+		getPreferenceScreen().getSharedPreferences()
+				.edit()
+				.putString("sound_bank", uri)
+				.apply();
 	}
 
 	public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
@@ -82,6 +132,10 @@ public class SettingsFragment extends PreferenceFragment
 		} else if (pref instanceof NumberPickerDialogPreference) {
 			NumberPickerDialogPreference numPick = (NumberPickerDialogPreference) pref;
 			pref.setSummary(String.valueOf(numPick.getValue()));
+		} else if (pref != null && "sound_bank".equals(pref.getKey())) {
+			String uri = pref.getSharedPreferences().getString("sound_bank", "");
+			pref.setSummary(uri.isEmpty() ? getString(R.string.sound_bank_builtin)
+					: Uri.parse(uri).getLastPathSegment());
 		}
 	}
 }
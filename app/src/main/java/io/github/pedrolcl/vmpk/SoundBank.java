@@ -0,0 +1,137 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+/*
+ * DLS sound banks for Sonivox EAS synthesizer in real time
+ * Copyright (C) 2013-2025 Pedro López-Cabanillas <plcl@users.sf.net>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.pedrolcl.vmpk;
+
+import android.os.ParcelFileDescriptor;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A parsed DLS collection, independent of any synthesizer. Loading may take
+ * a long time and should not be done on the UI thread.
+ */
+public class SoundBank implements Closeable {
+
+  static {
+    System.loadLibrary("midisynth");
+  }
+
+  // the cache keeps the most recently used images within this size
+  private static final long CACHE_LIMIT = 64L * 1024 * 1024;
+  private static final String CACHE_SUFFIX = ".dlsc";
+
+  // native EAS collection pointer, zero once closed
+  private long handle;
+
+  private SoundBank(long handle) {
+    this.handle = handle;
+  }
+
+  /**
+   * Parses a DLS collection. The file is memory mapped while it is read, and
+   * may be closed when this method returns.
+   *
+   * @param file     DLS level 1 or 2 file.
+   * @param cacheDir directory keeping the parsed tables of the banks already
+   *                 seen, so that the next load of the same bank is much
+   *                 faster; may be null. The least recently used images
+   *                 are deleted once the directory grows over 64 MiB.
+   * @throws IOException if the file cannot be mapped or is not a valid DLS
+   *                     collection.
+   */
+  public static SoundBank load(ParcelFileDescriptor file, File cacheDir) throws IOException {
+    String dir = null;
+    if (cacheDir != null && (cacheDir.isDirectory() || cacheDir.mkdirs())) {
+      dir = cacheDir.getPath();
+    }
+    long handle = open(file.getFd(), 0, -1, dir);
+    if (dir != null) {
+      pruneCache(cacheDir);
+    }
+    if (handle == 0) {
+      throw new IOException("Invalid sound bank");
+    }
+    return new SoundBank(handle);
+  }
+
+  // Deletes the images beyond the size limit, oldest use first; the newest
+  // one is always kept
+  static void pruneCache(File cacheDir) {
+    File[] images = cacheDir.listFiles();
+    if (images == null) {
+      return;
+    }
+    final long[] used = new long[images.length];
+    Integer[] order = new Integer[images.length];
+    for (int i = 0; i < images.length; i++) {
+      used[i] = images[i].lastModified();
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        return Long.compare(used[b], used[a]);
+      }
+    });
+    long total = 0;
+    boolean newest = true;
+    for (Integer i : order) {
+      File image = images[i];
+      if (!image.getName().endsWith(CACHE_SUFFIX)) {
+        continue;
+      }
+      total += image.length();
+      if (total > CACHE_LIMIT && !newest) {
+        // a failure only leaves the image for the next time
+        image.delete();
+      }
+      newest = false;
+    }
+  }
+
+  /**
+   * Releases this reference to the collection; synthesizers using it keep
+   * their own. Safe to call more than once.
+   */
+  @Override
+  public void close() {
+    if (handle != 0) {
+      close(handle);
+      handle = 0;
+    }
+  }
+
+  long handle() {
+    if (handle == 0) {
+      throw new IllegalStateException("Sound bank closed.");
+    }
+    return handle;
+  }
+
+  private static native long open(int fd, long offset, long length, String cacheDir);
+
+  private static native void close(long bank);
+
+}
@@ -4,14 +4,40 @@
 package io.github.pedrolcl.vmpk;
 
 import android.app.Activity;
+import android.content.ContentResolver;
+import android.content.Context;
 import android.content.SharedPreferences;
+import android.media.AudioManager;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
 import android.preference.PreferenceManager;
 
+import java.io.File;
+import java.nio.ByteBuffer;
+
 public class SynthEngine implements MidiEngine {
 
 	private MIDISynth synth = null;
 	private int mReverb = MIDISynth.REVERB_HALL;
 	private int mChorus = -1;
+	private int mOutput = MIDISynth.OUTPUT_AAUDIO;
+	private int mBuffers = MIDISynth.DEFAULT_BUFFERS;
+	private int mBlocks = MIDISynth.DEFAULT_BLOCKS;
+	private int mRate = 0;
+	private String mSoundBank = "";
+	// banco cargado, se conserva entre stop() y start()
+	private SoundBank mBank = null;
+	private String mBankUri = "";
+	private int mBankSerial = 0;
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+	private static final int BATCH_SIZE = 1024;
+	private final ByteBuffer mBatch = ByteBuffer.allocateDirect(BATCH_SIZE);
+	private int mBatchDepth = 0;
+	// zonas split/layer del teclado; el reparto de cada tecla entre los
+	// canales se hace en el código nativo, con una sola llamada JNI
+	private ChannelMap mChannelMap = null;
 
 	public SynthEngine(Activity activity) {
 		readSettings(activity);
@@ -22,8 +48,28 @@ public class SynthEngine implements MidiEngine {
 			SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(activity);
 			String defaultReverb = activity.getResources().getString(R.string.default_reverb);
 			String defaultChorus = activity.getResources().getString(R.string.default_chorus);
+			String defaultOutput = activity.getResources().getString(R.string.default_output);
 			mReverb = Integer.parseInt(sharedPrefs.getString("reverb", defaultReverb));
 			mChorus = Integer.parseInt(sharedPrefs.getString("chorus", defaultChorus));
+			mOutput = Integer.parseInt(sharedPrefs.getString("audio_output", defaultOutput));
+			String defaultLatency = activity.getResources().getString(R.string.default_latency);
+			int latency = Integer.parseInt(sharedPrefs.getString("audio_latency", defaultLatency));
+			int[] buffers = activity.getResources().getIntArray(R.array.latency_buffers);
+			int[] blocks = activity.getResources().getIntArray(R.array.latency_blocks);
+			if (latency >= 0 && latency < buffers.length && latency < blocks.length) {
+				mBuffers = buffers[latency];
+				mBlocks = blocks[latency];
+			}
+			mSoundBank = sharedPrefs.getString("sound_bank", "");
+			mRate = 0;
+			if (sharedPrefs.getBoolean("native_rate", true)) {
+				// la frecuencia de muestreo nativa evita el resampler del sistema
+				AudioManager am = (AudioManager) activity.getSystemService(Context.AUDIO_SERVICE);
+				String rate = am.getProperty(AudioManager.PROPERTY_OUTPUT_SAMPLE_RATE);
+				if (rate != null) {
+					mRate = Integer.parseInt(rate);
+				}
+			}
 		} catch (Exception ex) {
 			Log.d("SynthEngine", "Initialization", ex);
 		}
@@ -32,10 +78,13 @@ public class SynthEngine implements MidiEngine {
 	public void start(Activity activity) {
 		readSettings(activity);
 		try {
-			if (synth == null) {
+			boolean created = synth == null;
+			if (created) {
 				Log.d("SynthEngine", "start");
-				synth = new MIDISynth();
+				synth = new MIDISynth(mOutput, mBuffers, mBlocks, mRate);
+				synth.setChannelMap(mChannelMap == null ? null : mChannelMap.toArray());
 			}
+			loadSoundBank(activity, created);
 			synth.start();
 			// aplicar settings: tipo de reverb y tipo de chorus
 			synth.initReverb(mReverb);
@@ -51,10 +100,121 @@ public class SynthEngine implements MidiEngine {
 		}
 	}
 
+	private void loadSoundBank(Activity activity, boolean created) {
+		if (mSoundBank.equals(mBankUri)) {
+			if (created) {
+				applySoundBank();
+			}
+			return;
+		}
+		if (mBank != null) {
+			mBank.close();
+			mBank = null;
+		}
+		mBankUri = "";
+		final int serial = ++mBankSerial;
+		if (mSoundBank.isEmpty()) {
+			applySoundBank();
+			return;
+		}
+		// el análisis de un banco DLS es lento: se hace en otro hilo, y
+		// mientras tanto suenan los sonidos General MIDI integrados
+		final String uri = mSoundBank;
+		final ContentResolver resolver = activity.getContentResolver();
+		final File cacheDir = new File(activity.getCacheDir(), "soundbanks");
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				SoundBank bank = null;
+				try (ParcelFileDescriptor file = resolver.openFileDescriptor(Uri.parse(uri), "r")) {
+					bank = SoundBank.load(file, cacheDir);
+				} catch (Exception ex) {
+					Log.e("SynthEngine", "Sound bank:", ex);
+				}
+				final SoundBank result = bank;
+				mHandler.post(new Runnable() {
+					@Override
+					public void run() {
+						soundBankLoaded(serial, uri, result);
+					}
+				});
+			}
+		}, "SoundBank").start();
+	}
+
+	private void soundBankLoaded(int serial, String uri, SoundBank bank) {
+		if (serial != mBankSerial) {
+			// otro banco fue elegido mientras tanto
+			if (bank != null) {
+				bank.close();
+			}
+			return;
+		}
+		mBank = bank;
+		mBankUri = uri;
+		applySoundBank();
+	}
+
+	private void applySoundBank() {
+		if (synth == null) {
+			return;
+		}
+		// el cambio de banco no interrumpe el audio; sin banco se usan
+		// los sonidos General MIDI integrados
+		try {
+			synth.setSoundBank(mBank);
+		} catch (Exception ex) {
+			Log.e("SynthEngine", "Sound bank:", ex);
+		}
+	}
+
+	// un fichero MIDI que suena junto con el teclado, con el mismo banco
+	public boolean playSong(Activity activity, Uri uri) {
+		if (synth == null) {
+			return false;
+		}
+		try (ParcelFileDescriptor file = activity.getContentResolver().openFileDescriptor(uri, "r")) {
+			synth.playSong(file);
+			return true;
+		} catch (Exception ex) {
+			Log.e("SynthEngine", "Song:", ex);
+			return false;
+		}
+	}
+
+	public void stopSong() {
+		if (synth != null) {
+			synth.stopSong();
+		}
+	}
+
+	public boolean isSongPlaying() {
+		return synth != null && synth.getSongState() != MIDISynth.SONG_STOPPED;
+	}
+
 	public void stop() {
+		mBatchDepth = 0;
+		mBatch.clear();
 		if (synth != null) {
 			Log.d("SynthEngine", "stop");
 			synth.stop();
+			if (Log.LOG) {
+				long[] stats = synth.getStats();
+				Log.d("SynthEngine", "callbacks=" + stats[MIDISynth.STAT_CALLBACKS]
+						+ " underruns=" + stats[MIDISynth.STAT_UNDERRUNS]
+						+ " late=" + stats[MIDISynth.STAT_LATE_CALLBACKS]
+						+ " max=" + stats[MIDISynth.STAT_MAX_CALLBACK_NANOS] + "ns"
+						+ " render p50/p95/p99/max=" + stats[MIDISynth.STAT_RENDER_P50_NANOS]
+						+ "/" + stats[MIDISynth.STAT_RENDER_P95_NANOS]
+						+ "/" + stats[MIDISynth.STAT_RENDER_P99_NANOS]
+						+ "/" + stats[MIDISynth.STAT_RENDER_MAX_NANOS]
+						+ "ns of " + stats[MIDISynth.STAT_PERIOD_NANOS] + "ns"
+						+ " voices=" + stats[MIDISynth.STAT_VOICES]
+						+ " stolen=" + stats[MIDISynth.STAT_STOLEN_VOICES]
+						+ " polyphony=" + stats[MIDISynth.STAT_POLYPHONY]
+						+ " idle=" + stats[MIDISynth.STAT_IDLE_CALLBACKS]
+						+ " dropped=" + stats[MIDISynth.STAT_DROPPED_EVENTS]);
+			}
 			synth.close();
 			synth = null;
 		}
@@ -62,20 +222,52 @@ public class SynthEngine implements MidiEngine {
 
 	protected void sendMidi(int m, int n, int v) {
 		if (synth != null) {
-			byte msg[] = new byte[3];
-			msg[0] = (byte) m;
-			msg[1] = (byte) n;
-			msg[2] = (byte) v;
-			synth.write(msg);
+			if (mBatchDepth > 0) {
+				if (mBatch.remaining() < 3) {
+					flushBatch();
+				}
+				mBatch.put((byte) m).put((byte) n).put((byte) v);
+			} else {
+				synth.write(m, n, v);
+			}
+		}
+	}
+
+	protected void sendMidi(int m, int n, int v, long timestamp) {
+		if (synth != null) {
+			synth.write(m, n, v, timestamp);
 		}
 	}
 
 	protected void sendMidi(int m, int n) {
 		if (synth != null) {
-			byte msg[] = new byte[2];
-			msg[0] = (byte) m;
-			msg[1] = (byte) n;
-			synth.write(msg);
+			if (mBatchDepth > 0) {
+				if (mBatch.remaining() < 2) {
+					flushBatch();
+				}
+				mBatch.put((byte) m).put((byte) n);
+			} else {
+				synth.write(m, n);
+			}
+		}
+	}
+
+	private void flushBatch() {
+		if (synth != null && mBatch.position() > 0) {
+			synth.writeBatch(mBatch, mBatch.position());
+		}
+		mBatch.clear();
+	}
+
+	@Override
+	public void beginBatch() {
+		mBatchDepth++;
+	}
+
+	@Override
+	public void endBatch() {
+		if (mBatchDepth > 0 && --mBatchDepth == 0) {
+			flushBatch();
 		}
 	}
 
@@ -129,18 +321,58 @@ public class SynthEngine implements MidiEngine {
 		sendMidi(STATUS_NOTEOFF | channel, note, vel);
 	}
 
+	@Override
+	public void noteOn(int channel, int note, int vel, long timestamp) {
+		sendMidi(STATUS_NOTEON | channel, note, vel, timestamp);
+	}
+
+	@Override
+	public void noteOff(int channel, int note, int vel, long timestamp) {
+		sendMidi(STATUS_NOTEOFF | channel, note, vel, timestamp);
+	}
+
+	private void sendKey(int status, int channel, int key, int vel, long timestamp) {
+		if (mChannelMap == null) {
+			sendMidi(status | channel, key, vel, timestamp);
+		} else if (synth != null) {
+			synth.writeKey(status, key, vel, timestamp);
+		}
+	}
+
+	@Override
+	public void keyOn(int channel, int key, int vel, long timestamp) {
+		sendKey(STATUS_NOTEON, channel, key, vel, timestamp);
+	}
+
+	@Override
+	public void keyOff(int channel, int key, int vel, long timestamp) {
+		sendKey(STATUS_NOTEOFF, channel, key, vel, timestamp);
+	}
+
+	@Override
+	public void setChannelMap(ChannelMap map) {
+		mChannelMap = map;
+		if (synth != null) {
+			synth.setChannelMap(map == null ? null : map.toArray());
+		}
+	}
+
 	@Override
 	public void panic() {
+		beginBatch();
 		for (int ch = 0; ch < 16; ++ch) {
 			controller(ch, CTL_ALL_NOTES_OFF, 0);
 		}
+		endBatch();
 	}
 
 	@Override
 	public void reset() {
+		beginBatch();
 		for (int ch = 0; ch < 16; ++ch) {
 			controller(ch, CTL_RESET_ALL_CTL, 0);
 		}
+		endBatch();
 	}
 
 }
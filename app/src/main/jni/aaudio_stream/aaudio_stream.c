@@ -0,0 +1,288 @@
+/*
+ * AAudio output for Sonivox EAS synthesizer in real time
+ * Copyright (C) 2013-2025 Pedro López-Cabanillas <plcl@users.sf.net>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "aaudio_stream.h"
+
+#include <android/log.h>
+#include <pthread.h>
+#include <stdlib.h>
+#include <string.h>
+
+#include <aaudio/AAudio.h>
+
+#define LOGI(...) \
+  __android_log_print(ANDROID_LOG_INFO, "aaudio_stream", __VA_ARGS__)
+#define LOGW(...) \
+  __android_log_print(ANDROID_LOG_WARN, "aaudio_stream", __VA_ARGS__)
+
+#define MIN_OUTPUT_BUFFERS 2
+#define STATE_TIMEOUT_NANOS 100000000LL
+
+struct _aaudio_stream {
+  AAudioStream *stream;
+  pthread_mutex_t lock;
+
+  void *context;
+  aaudio_process_t callback;
+
+  int sampleRate;
+  int outputChannels;
+  int callbackBufferFrames;
+  int outputBuffers;
+
+  // frames rendered by the callback but not yet handed to AAudio
+  short *outputBuffer;
+  int outputIndex;
+
+  int isRunning;
+
+  // underruns of the streams closed by restartThread
+  long long xruns;
+
+  pthread_t restarter;
+  int hasRestarter;
+  int restarting;
+  int isClosing;
+};
+
+static aaudio_result_t openStream(AAUDIO_STREAM *p);
+
+// AAudio asks for as many frames as its burst size; the synth callback
+// produces fixed blocks, so both sizes are adapted through outputBuffer.
+static aaudio_data_callback_result_t dataCallback(
+    AAudioStream *stream, void *userData, void *audioData, int32_t numFrames) {
+  AAUDIO_STREAM *p = (AAUDIO_STREAM *) userData;
+  short *out = (short *) audioData;
+  while (numFrames > 0) {
+    if (p->outputIndex >= p->callbackBufferFrames) {
+      memset(p->outputBuffer, 0,
+          p->callbackBufferFrames * p->outputChannels * sizeof(short));
+      p->callback(p->context, p->sampleRate, p->callbackBufferFrames,
+          0, NULL, p->outputChannels, p->outputBuffer);
+      p->outputIndex = 0;
+    }
+    int frames = p->callbackBufferFrames - p->outputIndex;
+    if (frames > numFrames) {
+      frames = numFrames;
+    }
+    memcpy(out, p->outputBuffer + p->outputIndex * p->outputChannels,
+        frames * p->outputChannels * sizeof(short));
+    out += frames * p->outputChannels;
+    p->outputIndex += frames;
+    numFrames -= frames;
+  }
+  return AAUDIO_CALLBACK_RESULT_CONTINUE;
+}
+
+// The stream must not be closed from the error callback itself, so a
+// disconnected stream (e.g. headphones unplugged) is reopened on a thread.
+static void *restartThread(void *arg) {
+  AAUDIO_STREAM *p = (AAUDIO_STREAM *) arg;
+  pthread_mutex_lock(&p->lock);
+  if (!p->isClosing) {
+    if (p->stream) {
+      int32_t count = AAudioStream_getXRunCount(p->stream);
+      if (count > 0) {
+        p->xruns += count;
+      }
+      AAudioStream_close(p->stream);
+      p->stream = NULL;
+    }
+    if (openStream(p) == AAUDIO_OK && p->isRunning) {
+      p->outputIndex = p->callbackBufferFrames;
+      if (AAudioStream_requestStart(p->stream) != AAUDIO_OK) {
+        p->isRunning = 0;
+      }
+    }
+  }
+  pthread_mutex_unlock(&p->lock);
+  __sync_lock_release(&p->restarting);
+  return NULL;
+}
+
+static void errorCallback(
+    AAudioStream *stream, void *userData, aaudio_result_t error) {
+  AAUDIO_STREAM *p = (AAUDIO_STREAM *) userData;
+  LOGW("AAudio stream error: %s", AAudio_convertResultToText(error));
+  if (error == AAUDIO_ERROR_DISCONNECTED &&
+      __sync_bool_compare_and_swap(&p->restarting, 0, 1)) {
+    if (p->hasRestarter) {
+      pthread_join(p->restarter, NULL);  // already finished
+    }
+    p->hasRestarter =
+        pthread_create(&p->restarter, NULL, restartThread, p) == 0;
+    if (!p->hasRestarter) {
+      __sync_lock_release(&p->restarting);
+    }
+  }
+}
+
+static aaudio_result_t openStream(AAUDIO_STREAM *p) {
+  AAudioStreamBuilder *builder;
+  aaudio_result_t result = AAudio_createStreamBuilder(&builder);
+  if (result != AAUDIO_OK) return result;
+
+  AAudioStreamBuilder_setDirection(builder, AAUDIO_DIRECTION_OUTPUT);
+  AAudioStreamBuilder_setSharingMode(builder, AAUDIO_SHARING_MODE_EXCLUSIVE);
+  AAudioStreamBuilder_setPerformanceMode(builder,
+      AAUDIO_PERFORMANCE_MODE_LOW_LATENCY);
+  AAudioStreamBuilder_setFormat(builder, AAUDIO_FORMAT_PCM_I16);
+  AAudioStreamBuilder_setChannelCount(builder, p->outputChannels);
+  AAudioStreamBuilder_setSampleRate(builder, p->sampleRate);
+  AAudioStreamBuilder_setDataCallback(builder, dataCallback, p);
+  AAudioStreamBuilder_setErrorCallback(builder, errorCallback, p);
+
+  result = AAudioStreamBuilder_openStream(builder, &p->stream);
+  AAudioStreamBuilder_delete(builder);
+  if (result != AAUDIO_OK) {
+    p->stream = NULL;
+    return result;
+  }
+
+  // AAudio may grant a different configuration than requested
+  if (AAudioStream_getFormat(p->stream) != AAUDIO_FORMAT_PCM_I16 ||
+      AAudioStream_getChannelCount(p->stream) != p->outputChannels ||
+      AAudioStream_getSampleRate(p->stream) != p->sampleRate) {
+    AAudioStream_close(p->stream);
+    p->stream = NULL;
+    return AAUDIO_ERROR_INVALID_FORMAT;
+  }
+
+  AAudioStream_setBufferSizeInFrames(p->stream,
+      AAudioStream_getFramesPerBurst(p->stream) * p->outputBuffers);
+
+  LOGI("Opened AAudio stream: burst=%d, buffer=%d, exclusive=%d",
+      AAudioStream_getFramesPerBurst(p->stream),
+      AAudioStream_getBufferSizeInFrames(p->stream),
+      AAudioStream_getSharingMode(p->stream) == AAUDIO_SHARING_MODE_EXCLUSIVE);
+  return AAUDIO_OK;
+}
+
+AAUDIO_STREAM *aaudio_open(
+    int sampleRate, int outChans, int callbackBufferFrames,
+    int outputBuffers, aaudio_process_t proc, void *context) {
+  if (!proc || outChans <= 0 || callbackBufferFrames <= 0) {
+    return NULL;
+  }
+
+  AAUDIO_STREAM *p = (AAUDIO_STREAM *) calloc(1, sizeof(AAUDIO_STREAM));
+  if (!p) {
+    return NULL;
+  }
+
+  p->callback = proc;
+  p->context = context;
+  p->isRunning = 0;
+
+  p->sampleRate = sampleRate;
+  p->outputChannels = outChans;
+  p->callbackBufferFrames = callbackBufferFrames;
+  p->outputBuffers = outputBuffers < MIN_OUTPUT_BUFFERS ?
+      MIN_OUTPUT_BUFFERS : outputBuffers;
+  p->outputIndex = callbackBufferFrames;
+  pthread_mutex_init(&p->lock, NULL);
+
+  p->outputBuffer =
+      (short *) calloc(callbackBufferFrames * outChans, sizeof(short));
+  if (!p->outputBuffer) {
+    aaudio_close(p);
+    return NULL;
+  }
+
+  aaudio_result_t result = openStream(p);
+  if (result != AAUDIO_OK) {
+    LOGW("Unable to open AAudio stream: %s",
+        AAudio_convertResultToText(result));
+    aaudio_close(p);
+    return NULL;
+  }
+
+  LOGI("Created AAUDIO_STREAM(%d, %d, %d, %d)",
+       sampleRate, outChans, callbackBufferFrames, p->outputBuffers);
+  return p;
+}
+
+void aaudio_close(AAUDIO_STREAM *p) {
+  aaudio_pause(p);
+  pthread_mutex_lock(&p->lock);
+  p->isClosing = 1;
+  if (p->stream) {
+    AAudioStream_close(p->stream);
+    p->stream = NULL;
+  }
+  pthread_mutex_unlock(&p->lock);
+  if (p->hasRestarter) {
+    pthread_join(p->restarter, NULL);
+  }
+  pthread_mutex_destroy(&p->lock);
+  free(p->outputBuffer);
+  free(p);
+}
+
+int aaudio_is_running(AAUDIO_STREAM *p) {
+  return p->isRunning;
+}
+
+int aaudio_start(AAUDIO_STREAM *p) {
+  int result = 0;
+  if (p->isRunning) {
+    return 0;  // Already running.
+  }
+  pthread_mutex_lock(&p->lock);
+  p->outputIndex = p->callbackBufferFrames;
+  if (!p->stream || AAudioStream_requestStart(p->stream) != AAUDIO_OK) {
+    result = -1;
+  } else {
+    p->isRunning = 1;
+  }
+  pthread_mutex_unlock(&p->lock);
+  return result;
+}
+
+void aaudio_pause(AAUDIO_STREAM *p) {
+  if (!p->isRunning) {
+    return;
+  }
+  pthread_mutex_lock(&p->lock);
+  if (p->stream && AAudioStream_requestStop(p->stream) == AAUDIO_OK) {
+    // unlike OpenSL, AAudio tells us when the callbacks are over
+    aaudio_stream_state_t state = AAudioStream_getState(p->stream);
+    while (state != AAUDIO_STREAM_STATE_STOPPED &&
+           state != AAUDIO_STREAM_STATE_DISCONNECTED) {
+      if (AAudioStream_waitForStateChange(p->stream, state, &state,
+              STATE_TIMEOUT_NANOS) != AAUDIO_OK) {
+        break;
+      }
+    }
+  }
+  p->isRunning = 0;
+  pthread_mutex_unlock(&p->lock);
+}
+
+long long aaudio_get_xrun_count(AAUDIO_STREAM *p) {
+  long long result;
+  pthread_mutex_lock(&p->lock);
+  result = p->xruns;
+  if (p->stream) {
+    int32_t count = AAudioStream_getXRunCount(p->stream);
+    if (count > 0) {
+      result += count;
+    }
+  }
+  pthread_mutex_unlock(&p->lock);
+  return result;
+}
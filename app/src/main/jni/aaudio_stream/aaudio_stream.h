@@ -0,0 +1,93 @@
+/*
+ * AAudio output for Sonivox EAS synthesizer in real time
+ * Copyright (C) 2013-2025 Pedro López-Cabanillas <plcl@users.sf.net>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#ifndef __AAUDIO_STREAM_H__
+#define __AAUDIO_STREAM_H__
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/*
+ * Processing callback, with the same signature as opensl_process_t so that a
+ * single function can feed both back ends. There is no audio input, so the
+ * input channels are always 0 and the input buffer is NULL.
+ *
+ * The callback is always invoked with buffer_frames equal to the callback
+ * buffer size given to aaudio_open(), regardless of the burst size chosen
+ * by AAudio; the stream adapts both sizes internally.
+ */
+typedef void (*aaudio_process_t)
+    (void *context, int sample_rate, int buffer_frames,
+     int input_channels, const short *input_buffer,
+     int output_channels, short *output_buffer);
+
+/*
+ * Abstract data type for streaming audio with AAudio.
+ */
+typedef struct _aaudio_stream AAUDIO_STREAM;
+
+/*
+ * Opens a low latency, exclusive (when available) AAudio output stream with
+ * 16 bit samples at the given sample rate and channel count; registers an
+ * audio processing callback that will receive a context pointer (which may
+ * be NULL if no context is needed).  The context is owned by the caller.
+ *
+ * The number of output buffers sets the AAudio buffer size as a multiple of
+ * the burst size chosen by the device; two is the usual double buffering.
+ *
+ * Returns NULL on failure, for instance if the device cannot provide the
+ * requested format; callers may then fall back to OpenSL ES.
+ */
+AAUDIO_STREAM *aaudio_open(
+    int sample_rate, int output_channels, int callback_buffer_size,
+    int output_buffers, aaudio_process_t proc, void *context);
+
+/*
+ * Stops playback and frees all resources associated with the given stream,
+ * except for the context pointer, which is owned by the caller.
+ */
+void aaudio_close(AAUDIO_STREAM *p);
+
+/*
+ * Returns nonzero value if the given stream is currently running.
+ */
+int aaudio_is_running(AAUDIO_STREAM *p);
+
+/*
+ * Starts the audio stream.
+ *
+ * Returns 0 on success.
+ */
+int aaudio_start(AAUDIO_STREAM *p);
+
+/*
+ * Stops the audio stream.
+ */
+void aaudio_pause(AAUDIO_STREAM *p);
+
+/*
+ * Returns the number of underruns reported by AAudio since the stream was
+ * opened, including those of streams replaced after a disconnection.
+ */
+long long aaudio_get_xrun_count(AAUDIO_STREAM *p);
+
+#ifdef __cplusplus
+};
+#endif
+
+#endif // #ifndef __AAUDIO_STREAM_H__
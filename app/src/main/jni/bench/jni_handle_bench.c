@@ -0,0 +1,93 @@
+/*
+ * JNI library of the JniHandleBenchmark JMH benchmark
+ * Copyright (C) 2013-2025 Pedro López-Cabanillas <plcl@users.sf.net>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/*
+ * The two ways MIDISynth has passed its native context to the JNI entry
+ * points: a direct ByteBuffer wrapping it, resolved by GetDirectBufferAddress
+ * on every call as the original code did, and the long handle used now. Both
+ * entry points then queue the message like postMidi() in midisynth.c, into
+ * a ring that nothing consumes: only the cost of the call is of interest.
+ */
+
+#include <jni.h>
+#include <stdint.h>
+#include <stdlib.h>
+#include <string.h>
+
+#define EVENT_QUEUE_SIZE 1024 /* must be a power of two */
+#define EVENT_QUEUE_MASK (EVENT_QUEUE_SIZE - 1)
+
+struct BenchEvent {
+  int64_t timestamp;
+  int length;
+  uint8_t data[3];
+};
+
+struct BenchContext {
+  struct BenchEvent events[EVENT_QUEUE_SIZE];
+  unsigned int head;
+};
+
+static jboolean post(struct BenchContext *ctx, jint length, jint status, jint data1, jint data2,
+                     jlong timestamp)
+{
+  struct BenchEvent *ev = &ctx->events[ctx->head & EVENT_QUEUE_MASK];
+  ev->timestamp = timestamp;
+  ev->length = length;
+  ev->data[0] = (uint8_t) status;
+  ev->data[1] = (uint8_t) data1;
+  ev->data[2] = (uint8_t) data2;
+  __atomic_store_n(&ctx->head, ctx->head + 1, __ATOMIC_RELEASE);
+  return JNI_TRUE;
+}
+
+JNIEXPORT jobject JNICALL Java_io_github_pedrolcl_vmpk_JniHandleBenchmark_open(JNIEnv *env, jclass clazz)
+{
+  struct BenchContext *ctx = calloc(1, sizeof(struct BenchContext));
+  if (ctx == NULL) {
+    return NULL;
+  }
+  return (*env)->NewDirectByteBuffer(env, ctx, sizeof(struct BenchContext));
+}
+
+JNIEXPORT jlong JNICALL Java_io_github_pedrolcl_vmpk_JniHandleBenchmark_handle(JNIEnv *env, jclass clazz, jobject ctx)
+{
+  return (jlong) (intptr_t) (*env)->GetDirectBufferAddress(env, ctx);
+}
+
+JNIEXPORT void JNICALL Java_io_github_pedrolcl_vmpk_JniHandleBenchmark_close(JNIEnv *env, jclass clazz, jlong ctx)
+{
+  free((struct BenchContext *) (intptr_t) ctx);
+}
+
+JNIEXPORT jboolean JNICALL Java_io_github_pedrolcl_vmpk_JniHandleBenchmark_writeBuffer(JNIEnv *env, jclass clazz, jobject ctx, jint length, jint status, jint data1, jint data2, jlong timestamp)
+{
+  struct BenchContext *lc = (struct BenchContext *) (*env)->GetDirectBufferAddress(env, ctx);
+  if (lc == NULL) {
+    return JNI_FALSE;
+  }
+  return post(lc, length, status, data1, data2, timestamp);
+}
+
+JNIEXPORT jboolean JNICALL Java_io_github_pedrolcl_vmpk_JniHandleBenchmark_writeHandle(JNIEnv *env, jclass clazz, jlong ctx, jint length, jint status, jint data1, jint data2, jlong timestamp)
+{
+  struct BenchContext *lc = (struct BenchContext *) (intptr_t) ctx;
+  if (lc == NULL) {
+    return JNI_FALSE;
+  }
+  return post(lc, length, status, data1, data2, timestamp);
+}
@@ -0,0 +1,267 @@
+/*
+ * Benchmark driver for Sonivox EAS synthesizer
+ * Copyright (C) 2013-2025 Pedro López-Cabanillas <plcl@users.sf.net>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/*
+ * Renders scripted MIDI streams with EAS_WriteMIDIStream and EAS_Render, as
+ * the audio callback of the app does, and reports the time spent per block.
+ * Each run holds a number of notes with one effects setup, so the cost of
+ * a voice, the reverb and the chorus can be told apart by comparing the
+ * rows; the "0 notes" row of each setup is the fixed cost of the mix.
+ */
+
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <time.h>
+#include <unistd.h>
+#include <fcntl.h>
+#include <sys/stat.h>
+#include <eas.h>
+#include <eas_reverb.h>
+#include <eas_chorus.h>
+
+#define DEFAULT_BLOCKS 2000
+#define WARMUP_BLOCKS 50
+#define DEFAULT_PROGRAM 16 /* Drawbar Organ: sustained, one voice per note */
+#define FIRST_NOTE 36
+#define MAX_NOTES 64
+
+enum { FX_DRY, FX_REVERB, FX_CHORUS, FX_BOTH, FX_COUNT };
+static const char *fxNames[FX_COUNT] = { "dry", "reverb", "chorus", "both" };
+
+static const int defaultNotes[] = { 0, 1, 8, 16, 32, 64 };
+
+struct Result {
+  double meanNanos, minNanos, maxNanos;
+  EAS_I32 voices;
+};
+
+static int64_t monotonicNanos(void)
+{
+  struct timespec t;
+  clock_gettime(CLOCK_MONOTONIC, &t);
+  return (int64_t) t.tv_sec * 1000000000LL + t.tv_nsec;
+}
+
+static int fileReadAt(void *handle, void *buf, int offset, int size)
+{
+  ssize_t n = pread(*(int *) handle, buf, size, offset);
+  return n > 0 ? (int) n : 0;
+}
+
+static int fileSize(void *handle)
+{
+  struct stat st;
+  return fstat(*(int *) handle, &st) == 0 ? (int) st.st_size : 0;
+}
+
+static EAS_DLSLIB_HANDLE loadBank(const char *path)
+{
+  EAS_FILE locator;
+  EAS_DLSLIB_HANDLE pDLS = NULL;
+  int fd = open(path, O_RDONLY);
+  if (fd < 0) {
+    return NULL;
+  }
+  locator.handle = &fd;
+  locator.readAt = fileReadAt;
+  locator.size = fileSize;
+  if (EAS_ParseDLSCollection(&locator, &pDLS) != EAS_SUCCESS) {
+    pDLS = NULL;
+  }
+  close(fd);
+  return pDLS;
+}
+
+static void setEffects(EAS_DATA_HANDLE easData, int fx)
+{
+  EAS_BOOL reverb = fx == FX_REVERB || fx == FX_BOTH;
+  EAS_BOOL chorus = fx == FX_CHORUS || fx == FX_BOTH;
+  // the defaults of SynthEngine
+  EAS_SetParameter(easData, EAS_MODULE_REVERB, EAS_PARAM_REVERB_PRESET, EAS_PARAM_REVERB_HALL);
+  EAS_SetParameter(easData, EAS_MODULE_REVERB, EAS_PARAM_REVERB_WET, 25800);
+  EAS_SetParameter(easData, EAS_MODULE_REVERB, EAS_PARAM_REVERB_BYPASS, !reverb);
+  EAS_SetParameter(easData, EAS_MODULE_CHORUS, EAS_PARAM_CHORUS_PRESET, EAS_PARAM_CHORUS_PRESET1);
+  EAS_SetParameter(easData, EAS_MODULE_CHORUS, EAS_PARAM_CHORUS_BYPASS, !chorus);
+}
+
+// Holds 'notes' notes on channel 0 and times 'blocks' blocks after the attack
+static int run(EAS_DLSLIB_HANDLE bank, int program, int fx, int notes, int blocks,
+               struct Result *result)
+{
+  const S_EAS_LIB_CONFIG *easConfig = EAS_Config();
+  EAS_DATA_HANDLE easData;
+  EAS_HANDLE easHandle;
+  EAS_PCM *buffer;
+  EAS_I32 numGen;
+  EAS_U8 msg[3];
+  int64_t total = 0, start, elapsed;
+  int i, ok = 0;
+
+  buffer = malloc(easConfig->mixBufferSize * easConfig->numChannels * sizeof(EAS_PCM));
+  if (buffer == NULL) {
+    return 0;
+  }
+  if (EAS_Init(&easData) != EAS_SUCCESS) {
+    free(buffer);
+    return 0;
+  }
+  if (EAS_OpenMIDIStream(easData, &easHandle, NULL) != EAS_SUCCESS) {
+    goto shutdown;
+  }
+  if (bank != NULL && EAS_SetDLSCollection(easData, easHandle, bank) != EAS_SUCCESS) {
+    goto close;
+  }
+  setEffects(easData, fx);
+
+  msg[0] = 0xc0;
+  msg[1] = (EAS_U8) program;
+  EAS_WriteMIDIStream(easData, easHandle, msg, 2);
+  for (i = 0; i < notes; i++) {
+    msg[0] = 0x90;
+    msg[1] = (EAS_U8) (FIRST_NOTE + i);
+    msg[2] = 100;
+    EAS_WriteMIDIStream(easData, easHandle, msg, 3);
+  }
+  for (i = 0; i < WARMUP_BLOCKS; i++) {
+    if (EAS_Render(easData, buffer, easConfig->mixBufferSize, &numGen) != EAS_SUCCESS) {
+      goto close;
+    }
+  }
+
+  result->minNanos = 1e18;
+  result->maxNanos = 0;
+  for (i = 0; i < blocks; i++) {
+    start = monotonicNanos();
+    if (EAS_Render(easData, buffer, easConfig->mixBufferSize, &numGen) != EAS_SUCCESS) {
+      goto close;
+    }
+    elapsed = monotonicNanos() - start;
+    total += elapsed;
+    if (elapsed < result->minNanos) {
+      result->minNanos = (double) elapsed;
+    }
+    if (elapsed > result->maxNanos) {
+      result->maxNanos = (double) elapsed;
+    }
+  }
+  result->meanNanos = (double) total / blocks;
+  result->voices = 0;
+  EAS_GetVoiceCount(easData, easHandle, &result->voices);
+  ok = 1;
+
+close:
+  EAS_CloseMIDIStream(easData, easHandle);
+shutdown:
+  EAS_Shutdown(easData);
+  free(buffer);
+  return ok;
+}
+
+static void usage(const char *name)
+{
+  fprintf(stderr,
+      "usage: %s [-b blocks] [-p program] [-d bank.dls] [-n notes,...]\n"
+      "  -b  blocks timed per run (default %d)\n"
+      "  -p  GM program played, 0-127 (default %d)\n"
+      "  -d  DLS collection replacing the built-in sounds\n"
+      "  -n  comma separated note counts, up to %d (default 0,1,8,16,32,64)\n",
+      name, DEFAULT_BLOCKS, DEFAULT_PROGRAM, MAX_NOTES);
+}
+
+int main(int argc, char *argv[])
+{
+  const S_EAS_LIB_CONFIG *easConfig = EAS_Config();
+  EAS_DLSLIB_HANDLE bank = NULL;
+  int blocks = DEFAULT_BLOCKS, program = DEFAULT_PROGRAM;
+  int notes[MAX_NOTES + 1], numNotes = 0;
+  struct Result result;
+  double blockNanos, baseline;
+  char *p;
+  int opt, fx, i;
+
+  while ((opt = getopt(argc, argv, "b:p:d:n:h")) != -1) {
+    switch (opt) {
+    case 'b':
+      blocks = atoi(optarg);
+      break;
+    case 'p':
+      program = atoi(optarg);
+      break;
+    case 'd':
+      bank = loadBank(optarg);
+      if (bank == NULL) {
+        fprintf(stderr, "invalid DLS collection: %s\n", optarg);
+        return 1;
+      }
+      break;
+    case 'n':
+      for (p = strtok(optarg, ","); p != NULL && numNotes <= MAX_NOTES; p = strtok(NULL, ",")) {
+        notes[numNotes++] = atoi(p);
+      }
+      break;
+    default:
+      usage(argv[0]);
+      return opt == 'h' ? 0 : 1;
+    }
+  }
+  if (blocks <= 0 || program < 0 || program > 127) {
+    usage(argv[0]);
+    return 1;
+  }
+  if (numNotes == 0) {
+    numNotes = (int) (sizeof(defaultNotes) / sizeof(defaultNotes[0]));
+    memcpy(notes, defaultNotes, sizeof(defaultNotes));
+  }
+  for (i = 0; i < numNotes; i++) {
+    if (notes[i] < 0 || notes[i] > MAX_NOTES) {
+      usage(argv[0]);
+      return 1;
+    }
+  }
+
+  blockNanos = easConfig->mixBufferSize * 1e9 / easConfig->sampleRate;
+  printf("# %ld Hz, %ld channels, %ld frames per block (%.0f us), %ld voices max, %d blocks per run\n",
+         (long) easConfig->sampleRate, (long) easConfig->numChannels,
+         (long) easConfig->mixBufferSize, blockNanos / 1000, (long) easConfig->maxVoices, blocks);
+  printf("%-7s %5s %6s %9s %9s %9s %7s %10s\n",
+         "effects", "notes", "voices", "mean_us", "min_us", "max_us", "load_%", "voice_ns");
+  for (fx = 0; fx < FX_COUNT; fx++) {
+    baseline = -1;
+    for (i = 0; i < numNotes; i++) {
+      if (!run(bank, program, fx, notes[i], blocks, &result)) {
+        fprintf(stderr, "render error\n");
+        EAS_FreeDLSCollection(bank);
+        return 1;
+      }
+      if (notes[i] == 0) {
+        baseline = result.meanNanos;
+      }
+      printf("%-7s %5d %6ld %9.2f %9.2f %9.2f %7.2f ", fxNames[fx], notes[i], (long) result.voices,
+             result.meanNanos / 1000, result.minNanos / 1000, result.maxNanos / 1000,
+             100 * result.meanNanos / blockNanos);
+      // marginal cost of a voice over the fixed cost of the mix
+      if (baseline >= 0 && result.voices > 0) {
+        printf("%10.0f\n", (result.meanNanos - baseline) / result.voices);
+      } else {
+        printf("%10s\n", "-");
+      }
+    }
+  }
+  EAS_FreeDLSCollection(bank);
+  return 0;
+}
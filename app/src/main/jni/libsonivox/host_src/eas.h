@@ -624,6 +624,34 @@ EAS_PUBLIC EAS_RESULT EAS_RegisterMetaDataCallback (
 */
 EAS_PUBLIC EAS_RESULT EAS_GetNoteCount (EAS_DATA_HANDLE pEASData, EAS_HANDLE pStream, EAS_I32 *pNoteCount);
 
+/*----------------------------------------------------------------------------
+ * EAS_GetStealCount ()
+ *----------------------------------------------------------------------------
+ * Returns the number of voices stolen to start new notes in this stream,
+ * because all the voices allowed by the polyphony were busy
+ *
+ * Inputs:
+ * pEASData         - pointer to overall EAS data structure
+ * streamHandle     - file or stream handle
+ * pStealCount      - pointer to variable to receive steal count
+ *----------------------------------------------------------------------------
+*/
+EAS_PUBLIC EAS_RESULT EAS_GetStealCount (EAS_DATA_HANDLE pEASData, EAS_HANDLE pStream, EAS_I32 *pStealCount);
+
+/*----------------------------------------------------------------------------
+ * EAS_GetVoiceCount ()
+ *----------------------------------------------------------------------------
+ * Returns the number of voices currently sounding in this stream, including
+ * those being muted
+ *
+ * Inputs:
+ * pEASData         - pointer to overall EAS data structure
+ * streamHandle     - file or stream handle
+ * pVoiceCount      - pointer to variable to receive voice count
+ *----------------------------------------------------------------------------
+*/
+EAS_PUBLIC EAS_RESULT EAS_GetVoiceCount (EAS_DATA_HANDLE pEASData, EAS_HANDLE pStream, EAS_I32 *pVoiceCount);
+
 /*----------------------------------------------------------------------------
  * EAS_CloseFile()
  *----------------------------------------------------------------------------
@@ -968,6 +996,135 @@ EAS_PUBLIC EAS_RESULT EAS_SetPlayMode (EAS_DATA_HANDLE pEASData, EAS_HANDLE pStr
  *----------------------------------------------------------------------------
 */
 EAS_PUBLIC EAS_RESULT EAS_LoadDLSCollection (EAS_DATA_HANDLE pEASData, EAS_HANDLE streamHandle, EAS_FILE_LOCATOR locator);
+
+/*----------------------------------------------------------------------------
+ * EAS_ParseDLSCollection()
+ *----------------------------------------------------------------------------
+ * Purpose:
+ * Parses a DLS collection without downloading it, so that the slow part of
+ * EAS_LoadDLSCollection may run on a worker thread
+ *
+ * Inputs:
+ * locator              - file locator
+ *
+ * Outputs:
+ * ppDLS                - collection handle, to be released with
+ *                        EAS_FreeDLSCollection
+ *
+ *----------------------------------------------------------------------------
+*/
+EAS_PUBLIC EAS_RESULT EAS_ParseDLSCollection (EAS_FILE_LOCATOR locator, EAS_DLSLIB_HANDLE *ppDLS);
+
+/*----------------------------------------------------------------------------
+ * EAS_SetDLSCollection()
+ *----------------------------------------------------------------------------
+ * Purpose:
+ * Downloads a parsed DLS collection to a stream, replacing the previous
+ * one. The programs and controllers of the channels are kept.
+ *
+ * Inputs:
+ * pEASData             - instance data handle
+ * streamHandle         - file or stream handle
+ * pDLS                 - collection handle
+ *
+ * Side Effects:
+ * Must not run concurrently with EAS_Render
+ *
+ *----------------------------------------------------------------------------
+*/
+EAS_PUBLIC EAS_RESULT EAS_SetDLSCollection (EAS_DATA_HANDLE pEASData, EAS_HANDLE streamHandle, EAS_DLSLIB_HANDLE pDLS);
+
+/*----------------------------------------------------------------------------
+ * EAS_ChangeDLSCollection()
+ *----------------------------------------------------------------------------
+ * Purpose:
+ * Replaces the DLS collection of a stream without interrupting the audio.
+ * The voices of the stream are muted quickly and new notes are ignored
+ * until the change completes, within a few calls to EAS_Render. The
+ * programs and controllers of the channels are kept.
+ *
+ * Inputs:
+ * pEASData             - instance data handle
+ * streamHandle         - file or stream handle
+ * pDLS                 - collection handle, or NULL for the built-in sounds
+ *
+ * Side Effects:
+ * Must be called from the thread calling EAS_Render. The collection being
+ * replaced is released when the change completes, so the host should keep
+ * its own reference and free it once EAS_GetDLSChangePending reports the
+ * change as complete, to avoid freeing memory from the render thread.
+ *
+ *----------------------------------------------------------------------------
+*/
+EAS_PUBLIC EAS_RESULT EAS_ChangeDLSCollection (EAS_DATA_HANDLE pEASData, EAS_HANDLE streamHandle, EAS_DLSLIB_HANDLE pDLS);
+
+/*----------------------------------------------------------------------------
+ * EAS_GetDLSChangePending()
+ *----------------------------------------------------------------------------
+ * Purpose:
+ * Tells whether a change requested by EAS_ChangeDLSCollection is still
+ * waiting for the voices to mute
+ *
+ * Inputs:
+ * pEASData             - instance data handle
+ * streamHandle         - file or stream handle
+ *
+ * Outputs:
+ * pPending             - EAS_TRUE while the change is pending
+ *
+ *----------------------------------------------------------------------------
+*/
+EAS_PUBLIC EAS_RESULT EAS_GetDLSChangePending (EAS_DATA_HANDLE pEASData, EAS_HANDLE streamHandle, EAS_BOOL *pPending);
+
+/*----------------------------------------------------------------------------
+ * EAS_RetainDLSCollection()
+ *----------------------------------------------------------------------------
+ * Purpose:
+ * Takes another reference to a collection handle, to be released with
+ * EAS_FreeDLSCollection. References may be taken and released from any
+ * thread.
+ *
+ *----------------------------------------------------------------------------
+*/
+EAS_PUBLIC void EAS_RetainDLSCollection (EAS_DLSLIB_HANDLE pDLS);
+
+/*----------------------------------------------------------------------------
+ * EAS_FreeDLSCollection()
+ *----------------------------------------------------------------------------
+ * Purpose:
+ * Releases a collection handle; streams using it keep their own reference
+ *
+ *----------------------------------------------------------------------------
+*/
+EAS_PUBLIC void EAS_FreeDLSCollection (EAS_DLSLIB_HANDLE pDLS);
+
+/*----------------------------------------------------------------------------
+ * EAS_SerializeDLSCollection()
+ *----------------------------------------------------------------------------
+ * Purpose:
+ * Writes an image of a parsed collection, valid only for this build of the
+ * library, into the buffer when it is large enough
+ *
+ * Outputs:
+ * returns the image size (query it with a NULL buffer), or zero on error
+ *
+ *----------------------------------------------------------------------------
+*/
+EAS_PUBLIC EAS_I32 EAS_SerializeDLSCollection (EAS_DLSLIB_HANDLE pDLS, void *pBuffer, EAS_I32 size);
+
+/*----------------------------------------------------------------------------
+ * EAS_DeserializeDLSCollection()
+ *----------------------------------------------------------------------------
+ * Purpose:
+ * Rebuilds a collection from an image, which is validated first
+ *
+ * Outputs:
+ * ppDLS                - collection handle, to be released with
+ *                        EAS_FreeDLSCollection
+ *
+ *----------------------------------------------------------------------------
+*/
+EAS_PUBLIC EAS_RESULT EAS_DeserializeDLSCollection (const void *pBuffer, EAS_I32 size, EAS_DLSLIB_HANDLE *ppDLS);
 #endif
 
 /*----------------------------------------------------------------------------
@@ -335,19 +335,18 @@ EAS_RESULT EAS_HWGetByte (EAS_HW_DATA_HANDLE hwInstData, EAS_FILE_HANDLE file, v
 EAS_RESULT EAS_HWGetWord (EAS_HW_DATA_HANDLE hwInstData, EAS_FILE_HANDLE file, void *p, EAS_BOOL msbFirst)
 {
     EAS_RESULT result;
-    EAS_U8 c1, c2;
+    EAS_I32 count;
+    EAS_U8 c[2];
 
-    /* read 2 bytes from the file */
-    if ((result = EAS_HWGetByte(hwInstData, file, &c1)) != EAS_SUCCESS)
-        return result;
-    if ((result = EAS_HWGetByte(hwInstData, file, &c2)) != EAS_SUCCESS)
+    /* read 2 bytes from the file in a single call */
+    if ((result = EAS_HWReadFile(hwInstData, file, c, 2, &count)) != EAS_SUCCESS)
         return result;
 
     /* order them as requested */
     if (msbFirst)
-        *((EAS_U16*) p) = ((EAS_U16) c1 << 8) | c2;
+        *((EAS_U16*) p) = ((EAS_U16) c[0] << 8) | c[1];
     else
-        *((EAS_U16*) p) = ((EAS_U16) c2 << 8) | c1;
+        *((EAS_U16*) p) = ((EAS_U16) c[1] << 8) | c[0];
 
     return EAS_SUCCESS;
 }
@@ -364,23 +363,18 @@ EAS_RESULT EAS_HWGetWord (EAS_HW_DATA_HANDLE hwInstData, EAS_FILE_HANDLE file, v
 EAS_RESULT EAS_HWGetDWord (EAS_HW_DATA_HANDLE hwInstData, EAS_FILE_HANDLE file, void *p, EAS_BOOL msbFirst)
 {
     EAS_RESULT result;
-    EAS_U8 c1, c2,c3,c4;
+    EAS_I32 count;
+    EAS_U8 c[4];
 
-    /* read 4 bytes from the file */
-    if ((result = EAS_HWGetByte(hwInstData, file, &c1)) != EAS_SUCCESS)
-        return result;
-    if ((result = EAS_HWGetByte(hwInstData, file, &c2)) != EAS_SUCCESS)
-        return result;
-    if ((result = EAS_HWGetByte(hwInstData, file, &c3)) != EAS_SUCCESS)
-        return result;
-    if ((result = EAS_HWGetByte(hwInstData, file, &c4)) != EAS_SUCCESS)
+    /* read 4 bytes from the file in a single call */
+    if ((result = EAS_HWReadFile(hwInstData, file, c, 4, &count)) != EAS_SUCCESS)
         return result;
 
     /* order them as requested */
     if (msbFirst)
-        *((EAS_U32*) p) = ((EAS_U32) c1 << 24) | ((EAS_U32) c2 << 16) | ((EAS_U32) c3 << 8) | c4;
+        *((EAS_U32*) p) = ((EAS_U32) c[0] << 24) | ((EAS_U32) c[1] << 16) | ((EAS_U32) c[2] << 8) | c[3];
     else
-        *((EAS_U32*) p)= ((EAS_U32) c4 << 24) | ((EAS_U32) c3 << 16) | ((EAS_U32) c2 << 8) | c1;
+        *((EAS_U32*) p)= ((EAS_U32) c[3] << 24) | ((EAS_U32) c[2] << 16) | ((EAS_U32) c[1] << 8) | c[0];
 
     return EAS_SUCCESS;
 }
@@ -32,6 +32,7 @@
 #include "eas_effects.h"
 #include "eas_math.h"
 #include "eas_chorusdata.h"
+#include "eas_mixer.h"
 #include "eas_chorus.h"
 #include "eas_config.h"
 #include "eas_host.h"
@@ -232,6 +233,98 @@ static EAS_I16 WeightedTap(const EAS_I16 *array, EAS_I16 indexReference, EAS_I32
     return(val1 + (EAS_I16)MULT_EG1_EG1(val2-val1,fraction));
 }
 
+/*----------------------------------------------------------------------------
+ * ChorusChannel()
+ *----------------------------------------------------------------------------
+ * Purpose: feed one channel into its delay line and compute the chorus taps
+ *
+ * Inputs:
+ * delay: the delay line of the channel
+ * pIndex: write index of the delay line, updated
+ * pPhase: LFO phase of the channel, updated
+ * size: size of the delay line
+ * pIn: first input sample of the channel, interleaved with the others
+ * pTaps: receives the taps, interleaved like the input
+ * count: the number of sample frames
+ *
+ * Outputs:
+ * None
+ *
+ * Notes:
+ * The whole block is written before any tap is read, so the taps must never
+ * reach the samples written later in the block; ChorusProcess limits the
+ * block size accordingly.
+ *----------------------------------------------------------------------------
+*/
+static void ChorusChannel (S_CHORUS_OBJECT *pChorusData, EAS_PCM *delay, EAS_I16 *pIndex, EAS_I32 *pPhase, EAS_I16 size, const EAS_PCM *pIn, EAS_PCM *pTaps, EAS_I32 count)
+{
+    EAS_I32 ix;
+    EAS_I32 jx;
+    EAS_I32 nFrames;
+    EAS_I16 index;
+    EAS_I16 start;
+    EAS_I32 lfoPhase;
+    EAS_I16 lfoValue;
+    EAS_I32 positionOffset;
+
+    //feed input into chorus delay line, split where the buffer wraps
+    start = *pIndex;
+    index = start;
+    for (ix = count; ix > 0; ix -= nFrames)
+    {
+        nFrames = size - index;
+        if (nFrames > ix)
+            nFrames = ix;
+        for (jx = 0; jx < nFrames; jx++)
+        {
+            delay[index + jx] = *pIn;
+            pIn += NUM_OUTPUT_CHANNELS;
+        }
+        index = (EAS_I16) (index + nFrames);
+        if (index >= size)
+            index = 0;
+    }
+
+    *pIndex = index;
+
+    //the taps follow the delay line from where the block started
+    index = start;
+    lfoPhase = *pPhase;
+
+    for (ix = 0; ix < count; ix++)
+    {
+        //compute chorus lfo value using phase as fractional index into chorus shape table
+        //resulting value is between -1.0 and 1.0, expressed as signed 16 bit number
+        lfoValue = WeightedTap(EAS_chorusShape, 0, lfoPhase, CHORUS_SHAPE_SIZE);
+
+        //scale chorus depth by lfo value to get relative fractional sample index
+        //index is expressed as 32 bit number with 16 bit fractional part
+        /*lint -e{703} use shift for performance */
+        positionOffset = pChorusData->m_nDepth * (((EAS_I32)lfoValue) << 1);
+
+        //add fixed chorus delay to get actual fractional sample index
+        positionOffset += ((EAS_I32)pChorusData->chorusTapPosition) << 16;
+
+        //get tap value from chorus delay using fractional sample index
+        *pTaps = WeightedTap(delay, index, positionOffset, size);
+        pTaps += NUM_OUTPUT_CHANNELS;
+
+        //increment chorus delay index and make it wrap as needed
+        //this implements circular buffer
+        if ((index+=1) >= size)
+            index = 0;
+
+        //increment fractional lfo phase, and make it wrap as needed
+        lfoPhase += pChorusData->m_nRate;
+        while (lfoPhase >= (CHORUS_SHAPE_SIZE<<16))
+        {
+            lfoPhase -= (CHORUS_SHAPE_SIZE<<16);
+        }
+    }
+
+    *pPhase = lfoPhase;
+}
+
 /*----------------------------------------------------------------------------
  * ChorusProcess()
  *----------------------------------------------------------------------------
@@ -251,19 +344,10 @@ static EAS_I16 WeightedTap(const EAS_I16 *array, EAS_I16 indexReference, EAS_I32
 //compute the chorus, and mix into output buffer
 static void ChorusProcess (EAS_VOID_PTR pInstData, EAS_PCM *pSrc, EAS_PCM *pDst, EAS_I32 numSamples)
 {
-    EAS_I32 ix;
-    EAS_I32 nChannelNumber;
-    EAS_I16 lfoValueLeft;
-    EAS_I16 lfoValueRight;
-    EAS_I32 positionOffsetL;
-    EAS_I32 positionOffsetR;
-    EAS_PCM tapL;
-    EAS_PCM tapR;
-    EAS_I32 tempValue;
-    EAS_PCM nInputSample;
-    EAS_I32 nOutputSample;
-    EAS_PCM *pIn;
-    EAS_PCM *pOut;
+    EAS_PCM taps[CHORUS_BLOCK_SIZE * NUM_OUTPUT_CHANNELS];
+    EAS_I32 nDepth;
+    EAS_I32 nMaxCount;
+    EAS_I32 nCount;
 
     S_CHORUS_OBJECT *pChorusData;
 
@@ -273,7 +357,7 @@ static void ChorusProcess (EAS_VOID_PTR pInstData, EAS_PCM *pSrc, EAS_PCM *pDst,
     if (pChorusData->bypass == EAS_TRUE || pChorusData->m_nLevel == 0)
     {
         if (pSrc != pDst)
-            EAS_HWMemCpy(pSrc, pDst, numSamples * NUM_OUTPUT_CHANNELS * (EAS_I32) sizeof(EAS_PCM));
+            EAS_HWMemCpy(pDst, pSrc, numSamples * NUM_OUTPUT_CHANNELS * (EAS_I32) sizeof(EAS_PCM));
         return;
     }
 
@@ -282,104 +366,41 @@ static void ChorusProcess (EAS_VOID_PTR pInstData, EAS_PCM *pSrc, EAS_PCM *pDst,
         ChorusUpdate(pChorusData);
     }
 
-    for (nChannelNumber = 0; nChannelNumber < NUM_OUTPUT_CHANNELS; nChannelNumber++)
+    //the chorus is summed with the input in place
+    if (pSrc != pDst)
+        EAS_HWMemCpy(pDst, pSrc, numSamples * NUM_OUTPUT_CHANNELS * (EAS_I32) sizeof(EAS_PCM));
+
+    //the taps reach from chorusTapPosition - depth to chorusTapPosition + depth
+    //samples back (plus one for the interpolation); a block may be fed into the
+    //delay line before its taps are read as long as it is no longer than what
+    //remains of the delay line beyond the farthest tap
+    nDepth = pChorusData->m_nDepth;
+    if (nDepth < 0)
+        nDepth = -nDepth;
+    nMaxCount = CHORUS_L_SIZE - ((EAS_I32) pChorusData->chorusTapPosition + nDepth) - 1;
+    if ((EAS_I32) pChorusData->chorusTapPosition < nDepth + 1 || nMaxCount < 1)
+        nMaxCount = 1;
+    if (nMaxCount > CHORUS_BLOCK_SIZE)
+        nMaxCount = CHORUS_BLOCK_SIZE;
+
+    while (numSamples > 0)
     {
-
-        pIn = pSrc + nChannelNumber;
-        pOut = pDst + nChannelNumber;
-
-        if(nChannelNumber==0)
-        {
-            for (ix = 0; ix < numSamples; ix++)
-            {
-                nInputSample = *pIn;
-                pIn += NUM_OUTPUT_CHANNELS;
-
-                //feed input into chorus delay line
-                pChorusData->chorusDelayL[pChorusData->chorusIndexL] = nInputSample;
-
-                //compute chorus lfo value using phase as fractional index into chorus shape table
-                //resulting value is between -1.0 and 1.0, expressed as signed 16 bit number
-                lfoValueLeft = WeightedTap(EAS_chorusShape, 0, pChorusData->lfoLPhase, CHORUS_SHAPE_SIZE);
-
-                //scale chorus depth by lfo value to get relative fractional sample index
-                //index is expressed as 32 bit number with 16 bit fractional part
-                /*lint -e{703} use shift for performance */
-                positionOffsetL = pChorusData->m_nDepth * (((EAS_I32)lfoValueLeft) << 1);
-
-                //add fixed chorus delay to get actual fractional sample index
-                positionOffsetL += ((EAS_I32)pChorusData->chorusTapPosition) << 16;
-
-                //get tap value from chorus delay using fractional sample index
-                tapL = WeightedTap(pChorusData->chorusDelayL, pChorusData->chorusIndexL, positionOffsetL, CHORUS_L_SIZE);
-
-                //scale by chorus level, then sum with input buffer contents and saturate
-                tempValue = MULT_EG1_EG1(tapL, pChorusData->m_nLevel);
-                nOutputSample = SATURATE(tempValue + nInputSample);
-
-                *pOut = (EAS_I16)SATURATE(nOutputSample);
-                pOut += NUM_OUTPUT_CHANNELS;
-
-
-                //increment chorus delay index and make it wrap as needed
-                //this implements circular buffer
-                if ((pChorusData->chorusIndexL+=1) >= CHORUS_L_SIZE)
-                    pChorusData->chorusIndexL = 0;
-
-                //increment fractional lfo phase, and make it wrap as needed
-                pChorusData->lfoLPhase += pChorusData->m_nRate;
-                while (pChorusData->lfoLPhase >= (CHORUS_SHAPE_SIZE<<16))
-                {
-                    pChorusData->lfoLPhase -= (CHORUS_SHAPE_SIZE<<16);
-                }
-            }
-        }
-        else
-        {
-            for (ix = 0; ix < numSamples; ix++)
-            {
-                nInputSample = *pIn;
-                pIn += NUM_OUTPUT_CHANNELS;
-
-                //feed input into chorus delay line
-                pChorusData->chorusDelayR[pChorusData->chorusIndexR] = nInputSample;
-
-                //compute chorus lfo value using phase as fractional index into chorus shape table
-                //resulting value is between -1.0 and 1.0, expressed as signed 16 bit number
-                lfoValueRight = WeightedTap(EAS_chorusShape, 0, pChorusData->lfoRPhase, CHORUS_SHAPE_SIZE);
-
-                //scale chorus depth by lfo value to get relative fractional sample index
-                //index is expressed as 32 bit number with 16 bit fractional part
-                /*lint -e{703} use shift for performance */
-                positionOffsetR = pChorusData->m_nDepth * (((EAS_I32)lfoValueRight) << 1);
-
-                //add fixed chorus delay to get actual fractional sample index
-                positionOffsetR += ((EAS_I32)pChorusData->chorusTapPosition) << 16;
-
-                //get tap value from chorus delay using fractional sample index
-                tapR = WeightedTap(pChorusData->chorusDelayR, pChorusData->chorusIndexR, positionOffsetR, CHORUS_R_SIZE);
-
-                //scale by chorus level, then sum with output buffer contents and saturate
-                tempValue = MULT_EG1_EG1(tapR, pChorusData->m_nLevel);
-                nOutputSample = SATURATE(tempValue + nInputSample);
-
-                *pOut = (EAS_I16)SATURATE(nOutputSample);
-                pOut += NUM_OUTPUT_CHANNELS;
-
-                //increment chorus delay index and make it wrap as needed
-                //this implements circular buffer
-                if ((pChorusData->chorusIndexR+=1) >= CHORUS_R_SIZE)
-                    pChorusData->chorusIndexR = 0;
-
-                //increment fractional lfo phase, and make it wrap as needed
-                pChorusData->lfoRPhase += pChorusData->m_nRate;
-                while (pChorusData->lfoRPhase >= (CHORUS_SHAPE_SIZE<<16))
-                {
-                    pChorusData->lfoRPhase -= (CHORUS_SHAPE_SIZE<<16);
-                }
-            }
-        }
-
+        nCount = numSamples;
+        if (nCount > nMaxCount)
+            nCount = nMaxCount;
+
+        ChorusChannel(pChorusData, pChorusData->chorusDelayL, &pChorusData->chorusIndexL,
+            &pChorusData->lfoLPhase, CHORUS_L_SIZE, pDst, taps, nCount);
+#if (NUM_OUTPUT_CHANNELS == 2)
+        ChorusChannel(pChorusData, pChorusData->chorusDelayR, &pChorusData->chorusIndexR,
+            &pChorusData->lfoRPhase, CHORUS_R_SIZE, pDst + 1, taps + 1, nCount);
+#endif
+
+        //scale by chorus level, then sum with input buffer contents and saturate
+        EAS_MixEffect(pDst, taps, pChorusData->m_nLevel, NUM_EG1_FRAC_BITS, nCount * NUM_OUTPUT_CHANNELS);
+
+        pDst += nCount * NUM_OUTPUT_CHANNELS;
+        numSamples -= nCount;
     }
 }  /* end ChorusProcess */
 
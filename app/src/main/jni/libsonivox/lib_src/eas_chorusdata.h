@@ -56,6 +56,7 @@
 #define CHORUS_R_SIZE CHORUS_L_SIZE
 #define CHORUS_SHAPE_SIZE 128
 #define CHORUS_DELAY_MS 10
+#define CHORUS_BLOCK_SIZE 64 // frames fed into the delay lines before their taps are read
 
 #define CHORUS_MAX_TYPE         4   // any Chorus numbers larger than this are invalid
 
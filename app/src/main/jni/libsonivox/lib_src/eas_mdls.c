@@ -646,6 +646,7 @@ EAS_RESULT DLSParser (EAS_HW_DATA_HANDLE hwInstData, EAS_FILE_HANDLE fileHandle,
         }
         EAS_HWMemSet(dls.pDLS, 0, size);
         dls.pDLS->refCount = 1;
+        dls.pDLS->size = size;
         p = PtrOfs(dls.pDLS, sizeof(S_EAS));
 
         /* setup pointer to programs */
@@ -728,12 +729,13 @@ EAS_RESULT DLSParser (EAS_HW_DATA_HANDLE hwInstData, EAS_FILE_HANDLE fileHandle,
 EAS_RESULT DLSCleanup (EAS_HW_DATA_HANDLE hwInstData, S_DLS *pDLS)
 {
 
-    /* free the allocated memory */
+    /* free the allocated memory; the host may hold references from
+       other threads, so the count is updated atomically */
     if (pDLS)
     {
-        if (pDLS->refCount)
+        if (__atomic_load_n(&pDLS->refCount, __ATOMIC_RELAXED))
         {
-            if (--pDLS->refCount == 0)
+            if (__atomic_sub_fetch(&pDLS->refCount, 1, __ATOMIC_ACQ_REL) == 0)
                 EAS_HWFree(hwInstData, pDLS);
         }
     }
@@ -749,7 +751,188 @@ EAS_RESULT DLSCleanup (EAS_HW_DATA_HANDLE hwInstData, S_DLS *pDLS)
 void DLSAddRef (S_DLS *pDLS)
 {
     if (pDLS)
-        pDLS->refCount++;
+        __atomic_add_fetch(&pDLS->refCount, 1, __ATOMIC_RELAXED);
+}
+
+/*----------------------------------------------------------------------------
+ * DLS collection images
+ *----------------------------------------------------------------------------
+ * A parsed collection is a single allocation whose only pointers are the
+ * six array pointers in S_DLS, all of them into the same allocation. The
+ * image is a header followed by a copy of the allocation with those
+ * pointers stored as offsets. The layout word rejects images written by a
+ * build with different structures, so an image is only valid for the
+ * library that wrote it. The layout only encodes sizes, and a cache file
+ * may be damaged, so every index and sample range the synthesizer follows
+ * is checked as well before the image is used.
+ *----------------------------------------------------------------------------
+*/
+#define DLS_IMAGE_MAGIC     0x43534C44  /* "DLSC" */
+#define DLS_IMAGE_VERSION   1
+
+typedef struct s_dls_image_tag
+{
+    EAS_U32     magic;
+    EAS_U32     layout;
+    EAS_I32     size;
+} S_DLS_IMAGE;
+
+static EAS_U32 DLSImageLayout (void)
+{
+    return ((EAS_U32) DLS_IMAGE_VERSION << 28) ^
+        ((EAS_U32) sizeof(void*) << 24) ^
+        ((EAS_U32) sizeof(S_EAS) << 16) ^
+        ((EAS_U32) sizeof(S_DLS_ARTICULATION) << 8) ^
+        ((EAS_U32) sizeof(S_DLS_REGION) << 4) ^
+        (EAS_U32) sizeof(S_PROGRAM);
+}
+
+/* converts between an array pointer and its offset in the allocation */
+#define DLS_TO_OFFSET(base, ptr) ((void*) ((EAS_U8*) (ptr) - (EAS_U8*) (base)))
+#define DLS_FROM_OFFSET(base, ofs) ((void*) ((EAS_U8*) (base) + (EAS_U32) (ofs)))
+
+/* checks that an array stored as an offset lies inside the allocation */
+static EAS_BOOL DLSImageArrayValid (const void *ofs, EAS_U32 count, EAS_U32 itemSize, EAS_I32 size)
+{
+    EAS_U32 start = (EAS_U32) ofs;
+    return (start <= (EAS_U32) size) &&
+        ((EAS_U32) count * itemSize <= (EAS_U32) size - start);
+}
+
+/* checks the indices and sample ranges followed by the synthesizer */
+static EAS_BOOL DLSImageContentValid (const S_DLS *pDLS)
+{
+    const S_DLS_REGION *pRgn;
+    EAS_U32 samplesSize;
+    EAS_U32 sampleLen;
+    EAS_U32 regionIndex;
+    EAS_INT i;
+
+    /* the sample data runs to the end of the allocation */
+    samplesSize = (EAS_U32) pDLS->size - (EAS_U32) ((const EAS_U8*) pDLS->pDLSSamples - (const EAS_U8*) pDLS);
+    for (i = 0; i < pDLS->numDLSSamples; i++)
+    {
+        if ((pDLS->pDLSSampleOffsets[i] > samplesSize) ||
+            (pDLS->pDLSSampleLen[i] > samplesSize - pDLS->pDLSSampleOffsets[i]))
+            return EAS_FALSE;
+    }
+
+    /* the region lists of the programs end inside the array */
+    for (i = 0; i < pDLS->numDLSPrograms; i++)
+    {
+        regionIndex = pDLS->pDLSPrograms[i].regionIndex;
+        if (((regionIndex & FLAG_RGN_IDX_DLS_SYNTH) == 0) ||
+            ((regionIndex & REGION_INDEX_MASK) >= pDLS->numDLSRegions))
+            return EAS_FALSE;
+    }
+    if ((pDLS->numDLSRegions != 0) &&
+        ((pDLS->pDLSRegions[pDLS->numDLSRegions - 1].wtRegion.region.keyGroupAndFlags & REGION_FLAG_LAST_REGION) == 0))
+        return EAS_FALSE;
+
+    /* same limits as Parse_rgn() */
+    for (i = 0; i < pDLS->numDLSRegions; i++)
+    {
+        pRgn = &pDLS->pDLSRegions[i];
+        if ((pRgn->wtRegion.waveIndex >= pDLS->numDLSSamples) ||
+            (pRgn->wtRegion.artIndex >= pDLS->numDLSArticulations))
+            return EAS_FALSE;
+        sampleLen = pDLS->pDLSSampleLen[pRgn->wtRegion.waveIndex];
+        if (sampleLen < sizeof(EAS_SAMPLE))
+            return EAS_FALSE;
+        if ((pRgn->wtRegion.region.keyGroupAndFlags & REGION_FLAG_IS_LOOPED) &&
+            ((pRgn->wtRegion.loopStart > pRgn->wtRegion.loopEnd) ||
+            (pRgn->wtRegion.loopEnd > (sampleLen - sizeof(EAS_SAMPLE)) / sizeof(EAS_SAMPLE))))
+            return EAS_FALSE;
+    }
+    return EAS_TRUE;
+}
+
+/*----------------------------------------------------------------------------
+ * DLSSerialize ()
+ *----------------------------------------------------------------------------
+ * Writes the image of a collection to the buffer, if it is large enough.
+ * Returns the size of the image, or zero if the collection is invalid.
+ *----------------------------------------------------------------------------
+*/
+EAS_I32 DLSSerialize (S_DLS *pDLS, void *pBuffer, EAS_I32 bufferSize)
+{
+    S_DLS_IMAGE *pImage;
+    S_DLS *pCopy;
+    EAS_I32 imageSize;
+
+    if ((pDLS == NULL) || (pDLS->size <= 0))
+        return 0;
+    imageSize = (EAS_I32) sizeof(S_DLS_IMAGE) + pDLS->size;
+    if ((pBuffer == NULL) || (bufferSize < imageSize))
+        return imageSize;
+
+    pImage = (S_DLS_IMAGE*) pBuffer;
+    pImage->magic = DLS_IMAGE_MAGIC;
+    pImage->layout = DLSImageLayout();
+    pImage->size = pDLS->size;
+
+    pCopy = (S_DLS*) (pImage + 1);
+    EAS_HWMemCpy(pCopy, pDLS, pDLS->size);
+    pCopy->pDLSPrograms = DLS_TO_OFFSET(pDLS, pDLS->pDLSPrograms);
+    pCopy->pDLSRegions = DLS_TO_OFFSET(pDLS, pDLS->pDLSRegions);
+    pCopy->pDLSArticulations = DLS_TO_OFFSET(pDLS, pDLS->pDLSArticulations);
+    pCopy->pDLSSampleLen = DLS_TO_OFFSET(pDLS, pDLS->pDLSSampleLen);
+    pCopy->pDLSSampleOffsets = DLS_TO_OFFSET(pDLS, pDLS->pDLSSampleOffsets);
+    pCopy->pDLSSamples = DLS_TO_OFFSET(pDLS, pDLS->pDLSSamples);
+    pCopy->refCount = 0;
+    return imageSize;
+}
+
+/*----------------------------------------------------------------------------
+ * DLSDeserialize ()
+ *----------------------------------------------------------------------------
+ * Rebuilds a collection from an image written by DLSSerialize.
+ *----------------------------------------------------------------------------
+*/
+EAS_RESULT DLSDeserialize (EAS_HW_DATA_HANDLE hwInstData, const void *pBuffer, EAS_I32 bufferSize, S_DLS **ppDLS)
+{
+    const S_DLS_IMAGE *pImage = (const S_DLS_IMAGE*) pBuffer;
+    const S_DLS *pSrc;
+    S_DLS *pDLS;
+
+    *ppDLS = NULL;
+    if ((pBuffer == NULL) || (bufferSize < (EAS_I32) sizeof(S_DLS_IMAGE)))
+        return EAS_ERROR_FILE_FORMAT;
+    if ((pImage->magic != DLS_IMAGE_MAGIC) || (pImage->layout != DLSImageLayout()))
+        return EAS_ERROR_FILE_FORMAT;
+    if ((pImage->size < (EAS_I32) sizeof(S_EAS)) ||
+        (pImage->size > bufferSize - (EAS_I32) sizeof(S_DLS_IMAGE)))
+        return EAS_ERROR_FILE_FORMAT;
+
+    /* validate the arrays before trusting the offsets */
+    pSrc = (const S_DLS*) (pImage + 1);
+    if (!DLSImageArrayValid(pSrc->pDLSPrograms, pSrc->numDLSPrograms, sizeof(S_PROGRAM), pImage->size) ||
+        !DLSImageArrayValid(pSrc->pDLSRegions, pSrc->numDLSRegions, sizeof(S_DLS_REGION), pImage->size) ||
+        !DLSImageArrayValid(pSrc->pDLSArticulations, pSrc->numDLSArticulations, sizeof(S_DLS_ARTICULATION), pImage->size) ||
+        !DLSImageArrayValid(pSrc->pDLSSampleLen, pSrc->numDLSSamples, sizeof(EAS_U32), pImage->size) ||
+        !DLSImageArrayValid(pSrc->pDLSSampleOffsets, pSrc->numDLSSamples, sizeof(EAS_U32), pImage->size) ||
+        !DLSImageArrayValid(pSrc->pDLSSamples, 0, 1, pImage->size))
+        return EAS_ERROR_FILE_FORMAT;
+
+    pDLS = EAS_HWMalloc(hwInstData, pImage->size);
+    if (pDLS == NULL)
+        return EAS_ERROR_MALLOC_FAILED;
+    EAS_HWMemCpy(pDLS, pSrc, pImage->size);
+    pDLS->pDLSPrograms = DLS_FROM_OFFSET(pDLS, pSrc->pDLSPrograms);
+    pDLS->pDLSRegions = DLS_FROM_OFFSET(pDLS, pSrc->pDLSRegions);
+    pDLS->pDLSArticulations = DLS_FROM_OFFSET(pDLS, pSrc->pDLSArticulations);
+    pDLS->pDLSSampleLen = DLS_FROM_OFFSET(pDLS, pSrc->pDLSSampleLen);
+    pDLS->pDLSSampleOffsets = DLS_FROM_OFFSET(pDLS, pSrc->pDLSSampleOffsets);
+    pDLS->pDLSSamples = DLS_FROM_OFFSET(pDLS, pSrc->pDLSSamples);
+    pDLS->size = pImage->size;
+    pDLS->refCount = 1;
+    if (!DLSImageContentValid(pDLS))
+    {
+        EAS_HWFree(hwInstData, pDLS);
+        return EAS_ERROR_FILE_FORMAT;
+    }
+    *ppDLS = pDLS;
+    return EAS_SUCCESS;
 }
 
 /*----------------------------------------------------------------------------
@@ -113,6 +113,20 @@ void EAS_MixEnginePost (EAS_DATA_HANDLE pEASData, EAS_I32 nNumSamplesToAdd);
 */
 EAS_RESULT EAS_MixEngineShutdown (EAS_DATA_HANDLE pEASData);
 
+/*----------------------------------------------------------------------------
+ * EAS_MixEffect
+ *----------------------------------------------------------------------------
+ * Mix the 16-bit output of an effect into a 16-bit buffer, with saturation
+ *
+ * pBuffer      16-bit buffer, updated in place
+ * pInput       16-bit effect output
+ * gain         effect level
+ * shift        right shift applied to the scaled effect output
+ * numSamples   number of samples to mix (frames * channels)
+ *----------------------------------------------------------------------------
+*/
+void EAS_MixEffect (EAS_PCM *pBuffer, const EAS_PCM *pInput, EAS_I16 gain, EAS_INT shift, EAS_I32 numSamples);
+
 #ifdef UNIFIED_MIXER
 /*----------------------------------------------------------------------------
  * EAS_MixStream
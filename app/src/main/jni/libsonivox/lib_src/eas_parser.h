@@ -92,7 +92,9 @@ typedef enum
     PARSER_DATA_NOTE_COUNT,
     PARSER_DATA_MAX_PCM_STREAMS,
     PARSER_DATA_GAIN_OFFSET,
-    PARSER_DATA_PLAY_MODE
+    PARSER_DATA_PLAY_MODE,
+    PARSER_DATA_STEAL_COUNT,
+    PARSER_DATA_VOICE_COUNT
 } E_PARSER_DATA;
 
 #endif /* #ifndef _EAS_PARSER_H */
@@ -100,6 +100,8 @@ EAS_RESULT EAS_SetStreamParameter (S_EAS_DATA *pEASData, EAS_HANDLE pStream, EAS
     S_FILE_PARSER_INTERFACE *pParserModule;
 
     pParserModule = (S_FILE_PARSER_INTERFACE*) pStream->pParserModule;
+    if (pParserModule == NULL)
+        return EAS_ERROR_FEATURE_NOT_AVAILABLE;
     if (pParserModule->pfSetData)
         return (*pParserModule->pfSetData)(pEASData, pStream->handle, param, value);
     return EAS_ERROR_FEATURE_NOT_AVAILABLE;
@@ -122,6 +124,16 @@ EAS_RESULT EAS_GetStreamParameter (S_EAS_DATA *pEASData, EAS_HANDLE pStream, EAS
     S_FILE_PARSER_INTERFACE *pParserModule;
 
     pParserModule = (S_FILE_PARSER_INTERFACE*) pStream->pParserModule;
+
+    /* interactive MIDI streams have no parser, only a synth */
+    if (pParserModule == NULL)
+    {
+        if (param != PARSER_DATA_SYNTH_HANDLE)
+            return EAS_ERROR_FEATURE_NOT_AVAILABLE;
+        /*lint -e{740} we are cheating by passing a pointer through this interface */
+        *pValue = (EAS_I32) ((S_INTERACTIVE_MIDI*) pStream->handle)->pSynth;
+        return EAS_SUCCESS;
+    }
     if (pParserModule->pfGetData)
         return (*pParserModule->pfGetData)(pEASData, pStream->handle, param, pValue);
     return EAS_ERROR_FEATURE_NOT_AVAILABLE;
@@ -143,6 +155,8 @@ EAS_BOOL EAS_StreamReady (S_EAS_DATA *pEASData, EAS_HANDLE pStream)
     EAS_STATE state;
 
     pParserModule = (S_FILE_PARSER_INTERFACE*) pStream->pParserModule;
+    if (pParserModule == NULL)
+        return EAS_TRUE;
     if (pParserModule->pfState(pEASData, pStream->handle, &state) != EAS_SUCCESS)
         return EAS_FALSE;
     return (state < EAS_STATE_OPEN);
@@ -180,11 +194,34 @@ EAS_RESULT EAS_IntSetStrmParam (S_EAS_DATA *pEASData, EAS_HANDLE pStream, EAS_IN
 #ifdef DLS_SYNTHESIZER
         case PARSER_DATA_DLS_COLLECTION:
             {
-                EAS_RESULT result = VMSetDLSLib(pSynth, (EAS_DLSLIB_HANDLE) value);
+                EAS_RESULT result;
+                EAS_INT i;
+                /* release the collection being replaced, if any, after
+                   stopping the voices that may still play its samples */
+                if (pSynth->pDLS != NULL)
+                {
+                    pEASData->pVoiceMgr->activeVoices -= pSynth->numActiveVoices;
+                    pSynth->numActiveVoices = 0;
+                    VMInitializeAllVoices(pEASData->pVoiceMgr, pSynth->vSynthNum);
+                    for (i = 0; i < NUM_SYNTH_CHANNELS; i++)
+                        pSynth->poolCount[i] = 0;
+                    DLSCleanup(pEASData->hwInstData, pSynth->pDLS);
+                }
+                /* and supersede a change waiting for the voices to mute */
+                if (pSynth->synthFlags & SYNTH_FLAG_DLS_CHANGE_IS_REQUESTED)
+                {
+                    DLSCleanup(pEASData->hwInstData, pSynth->pNextDLS);
+                    pSynth->pNextDLS = NULL;
+                    pSynth->synthFlags &= ~SYNTH_FLAG_DLS_CHANGE_IS_REQUESTED;
+                }
+                result = VMSetDLSLib(pSynth, (EAS_DLSLIB_HANDLE) value);
                 if (result == EAS_SUCCESS)
                 {
                     DLSAddRef((S_DLS*) value);
-                    VMInitializeAllChannels(pEASData->pVoiceMgr, pSynth);
+                    /* look up the current programs in the new collection,
+                       keeping the state of the channels */
+                    for (i = 0; i < NUM_SYNTH_CHANNELS; i++)
+                        VMProgramChange(pEASData->pVoiceMgr, pSynth, (EAS_U8) i, pSynth->channels[i].programNum);
                 }
                 return result;
             }
@@ -256,6 +293,14 @@ EAS_RESULT EAS_IntGetStrmParam (S_EAS_DATA *pEASData, EAS_HANDLE pStream, EAS_IN
             *pValue = VMGetNoteCount(pSynth);
             break;
 
+        case PARSER_DATA_STEAL_COUNT:
+            *pValue = VMGetStealCount(pSynth);
+            break;
+
+        case PARSER_DATA_VOICE_COUNT:
+            *pValue = VMActiveVoices(pSynth);
+            break;
+
         default:
             { /* dpp: EAS_ReportEx(_EAS_SEVERITY_ERROR, "Invalid paramter %d in call to EAS_IntSetStrmParam", param); */ }
             return EAS_ERROR_INVALID_PARAMETER;
@@ -1442,6 +1487,33 @@ EAS_PUBLIC EAS_RESULT EAS_GetNoteCount (EAS_DATA_HANDLE pEASData, EAS_HANDLE pSt
     return EAS_IntGetStrmParam(pEASData, pStream, PARSER_DATA_NOTE_COUNT, pNoteCount);
 }
 
+/*----------------------------------------------------------------------------
+ * EAS_GetStealCount ()
+ *----------------------------------------------------------------------------
+ * Returns the number of voices stolen to start new notes in this stream
+ *----------------------------------------------------------------------------
+*/
+EAS_PUBLIC EAS_RESULT EAS_GetStealCount (EAS_DATA_HANDLE pEASData, EAS_HANDLE pStream, EAS_I32 *pStealCount)
+{
+    if (!EAS_StreamReady(pEASData, pStream))
+        return EAS_ERROR_NOT_VALID_IN_THIS_STATE;
+    return EAS_IntGetStrmParam(pEASData, pStream, PARSER_DATA_STEAL_COUNT, pStealCount);
+}
+
+/*----------------------------------------------------------------------------
+ * EAS_GetVoiceCount ()
+ *----------------------------------------------------------------------------
+ * Returns the number of voices currently sounding in this stream, including
+ * those being muted
+ *----------------------------------------------------------------------------
+*/
+EAS_PUBLIC EAS_RESULT EAS_GetVoiceCount (EAS_DATA_HANDLE pEASData, EAS_HANDLE pStream, EAS_I32 *pVoiceCount)
+{
+    if (!EAS_StreamReady(pEASData, pStream))
+        return EAS_ERROR_NOT_VALID_IN_THIS_STATE;
+    return EAS_IntGetStrmParam(pEASData, pStream, PARSER_DATA_VOICE_COUNT, pVoiceCount);
+}
+
 /*----------------------------------------------------------------------------
  * EAS_CloseFile()
  *----------------------------------------------------------------------------
@@ -2445,9 +2517,13 @@ EAS_PUBLIC EAS_RESULT EAS_LoadDLSCollection (EAS_DATA_HANDLE pEASData, EAS_HANDL
     if (result == EAS_SUCCESS)
     {
 
-        /* if a stream pStream is specified, point it to the DLS collection */
+        /* if a stream pStream is specified, point it to the DLS collection;
+           the stream holds its own reference, so drop the parser's one */
         if (pStream)
+        {
             result = EAS_IntSetStrmParam(pEASData, pStream, PARSER_DATA_DLS_COLLECTION, (EAS_I32) pDLS);
+            DLSCleanup(pEASData->hwInstData, pDLS);
+        }
 
         /* global DLS load */
         else
@@ -2456,6 +2532,150 @@ EAS_PUBLIC EAS_RESULT EAS_LoadDLSCollection (EAS_DATA_HANDLE pEASData, EAS_HANDL
 
     return result;
 }
+
+/*----------------------------------------------------------------------------
+ * EAS_ParseDLSCollection()
+ *----------------------------------------------------------------------------
+ * Purpose:
+ * Parses a DLS collection without attaching it to the synthesizer. Uses its
+ * own host instance, so it may run on any thread.
+ *
+ *----------------------------------------------------------------------------
+*/
+EAS_PUBLIC EAS_RESULT EAS_ParseDLSCollection (EAS_FILE_LOCATOR locator, EAS_DLSLIB_HANDLE *ppDLS)
+{
+    EAS_HW_DATA_HANDLE hwInstData;
+    EAS_FILE_HANDLE fileHandle;
+    EAS_RESULT result;
+
+    *ppDLS = NULL;
+    if ((result = EAS_HWInit(&hwInstData)) != EAS_SUCCESS)
+        return result;
+
+    if ((result = EAS_HWOpenFile(hwInstData, locator, &fileHandle, EAS_FILE_READ)) == EAS_SUCCESS)
+    {
+        result = DLSParser(hwInstData, fileHandle, 0, ppDLS);
+        EAS_HWCloseFile(hwInstData, fileHandle);
+    }
+
+    EAS_HWShutdown(hwInstData);
+    return result;
+}
+
+/*----------------------------------------------------------------------------
+ * EAS_SetDLSCollection()
+ *----------------------------------------------------------------------------
+ * Purpose:
+ * Points a stream to a parsed DLS collection. The stream takes its own
+ * reference; the caller keeps the one it owns.
+ *
+ *----------------------------------------------------------------------------
+*/
+EAS_PUBLIC EAS_RESULT EAS_SetDLSCollection (EAS_DATA_HANDLE pEASData, EAS_HANDLE pStream, EAS_DLSLIB_HANDLE pDLS)
+{
+    if (!EAS_StreamReady(pEASData, pStream))
+        return EAS_ERROR_NOT_VALID_IN_THIS_STATE;
+    return EAS_IntSetStrmParam(pEASData, pStream, PARSER_DATA_DLS_COLLECTION, (EAS_I32) pDLS);
+}
+
+/*----------------------------------------------------------------------------
+ * EAS_ChangeDLSCollection()
+ *----------------------------------------------------------------------------
+ * Purpose:
+ * Replaces the DLS collection of a stream once its voices have muted.
+ *
+ *----------------------------------------------------------------------------
+*/
+EAS_PUBLIC EAS_RESULT EAS_ChangeDLSCollection (EAS_DATA_HANDLE pEASData, EAS_HANDLE pStream, EAS_DLSLIB_HANDLE pDLS)
+{
+    S_SYNTH *pSynth;
+
+    /*lint -e{740} we are cheating by passing a pointer through this interface */
+    if (EAS_GetStreamParameter(pEASData, pStream, PARSER_DATA_SYNTH_HANDLE, (EAS_I32*) &pSynth) != EAS_SUCCESS)
+        return EAS_ERROR_INVALID_PARAMETER;
+    if (pSynth == NULL)
+        return EAS_ERROR_INVALID_PARAMETER;
+
+    VMChangeDLSLib(pEASData->pVoiceMgr, pSynth, pDLS);
+    return EAS_SUCCESS;
+}
+
+/*----------------------------------------------------------------------------
+ * EAS_GetDLSChangePending()
+ *----------------------------------------------------------------------------
+ * Purpose:
+ * Tells whether a change of DLS collection is waiting for the voices.
+ *
+ *----------------------------------------------------------------------------
+*/
+EAS_PUBLIC EAS_RESULT EAS_GetDLSChangePending (EAS_DATA_HANDLE pEASData, EAS_HANDLE pStream, EAS_BOOL *pPending)
+{
+    S_SYNTH *pSynth;
+
+    /*lint -e{740} we are cheating by passing a pointer through this interface */
+    if (EAS_GetStreamParameter(pEASData, pStream, PARSER_DATA_SYNTH_HANDLE, (EAS_I32*) &pSynth) != EAS_SUCCESS)
+        return EAS_ERROR_INVALID_PARAMETER;
+    if (pSynth == NULL)
+        return EAS_ERROR_INVALID_PARAMETER;
+
+    *pPending = (pSynth->synthFlags & SYNTH_FLAG_DLS_CHANGE_IS_REQUESTED) ? EAS_TRUE : EAS_FALSE;
+    return EAS_SUCCESS;
+}
+
+/*----------------------------------------------------------------------------
+ * EAS_RetainDLSCollection()
+ *----------------------------------------------------------------------------
+ * Purpose:
+ * Takes another reference to a DLS collection.
+ *
+ *----------------------------------------------------------------------------
+*/
+EAS_PUBLIC void EAS_RetainDLSCollection (EAS_DLSLIB_HANDLE pDLS)
+{
+    DLSAddRef(pDLS);
+}
+
+/*----------------------------------------------------------------------------
+ * EAS_FreeDLSCollection()
+ *----------------------------------------------------------------------------
+ * Purpose:
+ * Releases the caller's reference to a DLS collection.
+ *
+ *----------------------------------------------------------------------------
+*/
+EAS_PUBLIC void EAS_FreeDLSCollection (EAS_DLSLIB_HANDLE pDLS)
+{
+    DLSCleanup(NULL, pDLS);
+}
+
+/*----------------------------------------------------------------------------
+ * EAS_SerializeDLSCollection()
+ *----------------------------------------------------------------------------
+ * Purpose:
+ * Writes a relocatable image of a parsed collection to the buffer, if it is
+ * large enough. Returns the size of the image, so a NULL buffer may be used
+ * to query it, or zero on error.
+ *
+ *----------------------------------------------------------------------------
+*/
+EAS_PUBLIC EAS_I32 EAS_SerializeDLSCollection (EAS_DLSLIB_HANDLE pDLS, void *pBuffer, EAS_I32 size)
+{
+    return DLSSerialize(pDLS, pBuffer, size);
+}
+
+/*----------------------------------------------------------------------------
+ * EAS_DeserializeDLSCollection()
+ *----------------------------------------------------------------------------
+ * Purpose:
+ * Rebuilds a collection from an image written by EAS_SerializeDLSCollection
+ * with the same build of the library, which is much faster than parsing.
+ *
+ *----------------------------------------------------------------------------
+*/
+EAS_PUBLIC EAS_RESULT EAS_DeserializeDLSCollection (const void *pBuffer, EAS_I32 size, EAS_DLSLIB_HANDLE *ppDLS)
+{
+    return DLSDeserialize(NULL, pBuffer, size, ppDLS);
+}
 #endif
 
 #ifdef EXTERNAL_AUDIO
@@ -37,6 +37,7 @@
 #include "eas_effects.h"
 #include "eas_math.h"
 #include "eas_reverbdata.h"
+#include "eas_mixer.h"
 #include "eas_reverb.h"
 #include "eas_config.h"
 #include "eas_host.h"
@@ -283,7 +284,7 @@ static void ReverbProcess(EAS_VOID_PTR pInstData, EAS_PCM *pSrc, EAS_PCM *pDst,
         (pReverbData->m_nWet == 0 && pReverbData->m_nDry == 32767))
     {
         if (pSrc != pDst)
-            EAS_HWMemCpy(pSrc, pDst, numSamples * NUM_OUTPUT_CHANNELS * (EAS_I32) sizeof(EAS_PCM));
+            EAS_HWMemCpy(pDst, pSrc, numSamples * NUM_OUTPUT_CHANNELS * (EAS_I32) sizeof(EAS_PCM));
         return;
     }
 
@@ -520,6 +521,11 @@ static EAS_RESULT ReverbCalculateSinCos(EAS_I16 nPhase, EAS_I16 *pnSin, EAS_I16
  *
  * Side Effects:
  *
+ * Notes:
+ * The feedback network runs one sample at a time; its output is collected
+ * for up to REVERB_MIX_BLOCK_SIZE frames and then mixed into the output
+ * buffer by EAS_MixEffect, which is vectorized.
+ *
  *----------------------------------------------------------------------------
 */
 static EAS_RESULT Reverb(S_REVERB_OBJECT *pReverbData, EAS_INT nNumSamplesToAdd, EAS_PCM *pOutputBuffer, EAS_PCM *pInputBuffer)
@@ -536,238 +542,267 @@ static EAS_RESULT Reverb(S_REVERB_OBJECT *pReverbData, EAS_INT nNumSamplesToAdd,
 
     EAS_I32 j;
     EAS_I32 nEarlyOut;
-
-    EAS_I32 tempValue;
-
+    EAS_I32 nCount;
+
+    EAS_PCM *pDelayLine;
+    EAS_PCM pWet[REVERB_MIX_BLOCK_SIZE * 2];
+
+    // state updated every sample, kept in registers instead of being
+    // reloaded after each store into the delay line
+    EAS_I16 nSin;
+    EAS_I16 nCos;
+    EAS_PCM zLpf0;
+    EAS_PCM zLpf1;
+    EAS_PCM nRevOutFbkL;
+    EAS_PCM nRevOutFbkR;
+    EAS_PCM zEarlyLpfL;
+    EAS_PCM zEarlyLpfR;
+    EAS_BOOL bEarlyL;
+    EAS_BOOL bEarlyR;
 
     // get the base address
     nBase = pReverbData->m_nBaseIndex;
-
-    for (i=0; i < nNumSamplesToAdd; i++)
+    pDelayLine = pReverbData->m_nDelayLine;
+
+    nSin = pReverbData->m_nSin;
+    nCos = pReverbData->m_nCos;
+    zLpf0 = pReverbData->m_zLpf0;
+    zLpf1 = pReverbData->m_zLpf1;
+    nRevOutFbkL = pReverbData->m_nRevOutFbkL;
+    nRevOutFbkR = pReverbData->m_nRevOutFbkR;
+    zEarlyLpfL = pReverbData->m_sEarlyL.m_zLpf;
+    zEarlyLpfR = pReverbData->m_sEarlyR.m_zLpf;
+
+    // the early reflection taps add nothing while all their gains are zero
+    bEarlyL = EAS_FALSE;
+    bEarlyR = EAS_FALSE;
+    for (j=0; j < REVERB_MAX_NUM_REFLECTIONS; j++)
     {
-        // ********** Left Allpass - start
-        // left input = (left dry/4) + right feedback from previous period
-        /*lint -e{702} use shift for performance */
-        nApIn = ((*pInputBuffer++)>>2) + pReverbData->m_nRevOutFbkR;
-//      nApIn = *pInputBuffer++;    // 1xxx test and debug ap
-
-        // fetch allpass delay line out
-        //nAddr = CIRCULAR(nBase, psAp0->m_zApOut, REVERB_BUFFER_MASK);
-        nAddr = CIRCULAR(nBase, pReverbData->m_sAp0.m_zApOut, REVERB_BUFFER_MASK);
-        nDelayOut = pReverbData->m_nDelayLine[nAddr];
+        if (pReverbData->m_sEarlyL.m_nGain[j] != 0)
+            bEarlyL = EAS_TRUE;
+        if (pReverbData->m_sEarlyR.m_nGain[j] != 0)
+            bEarlyR = EAS_TRUE;
+    }
 
-        // calculate allpass feedforward; subtract the feedforward result
-        nTemp1 = MULT_EG1_EG1(nApIn, pReverbData->m_sAp0.m_nApGain);
-        nApOut = SATURATE(nDelayOut - nTemp1);          // allpass output
+    while (nNumSamplesToAdd > 0)
+    {
+        nCount = nNumSamplesToAdd;
+        if (nCount > REVERB_MIX_BLOCK_SIZE)
+            nCount = REVERB_MIX_BLOCK_SIZE;
 
-        // calculate allpass feedback; add the feedback result
-        nTemp1 = MULT_EG1_EG1(nApOut, pReverbData->m_sAp0.m_nApGain);
-        nTemp1 = SATURATE(nApIn + nTemp1);
+        for (i=0; i < nCount; i++)
+        {
+            // ********** Left Allpass - start
+            // left input = (left dry/4) + right feedback from previous period
+            /*lint -e{702} use shift for performance */
+            nApIn = ((*pInputBuffer++)>>2) + nRevOutFbkR;
 
-        // inject into allpass delay
-        nAddr = CIRCULAR(nBase, pReverbData->m_sAp0.m_zApIn, REVERB_BUFFER_MASK);
-        pReverbData->m_nDelayLine[nAddr] = (EAS_PCM) nTemp1;
+            // fetch allpass delay line out
+            nAddr = CIRCULAR(nBase, pReverbData->m_sAp0.m_zApOut, REVERB_BUFFER_MASK);
+            nDelayOut = pDelayLine[nAddr];
 
-        // inject allpass output into delay line
-        nAddr = CIRCULAR(nBase, pReverbData->m_zD0In, REVERB_BUFFER_MASK);
-        pReverbData->m_nDelayLine[nAddr] = (EAS_PCM) nApOut;
+            // calculate allpass feedforward; subtract the feedforward result
+            nTemp1 = MULT_EG1_EG1(nApIn, pReverbData->m_sAp0.m_nApGain);
+            nApOut = SATURATE(nDelayOut - nTemp1);          // allpass output
 
-        // ********** Left Allpass - end
+            // calculate allpass feedback; add the feedback result
+            nTemp1 = MULT_EG1_EG1(nApOut, pReverbData->m_sAp0.m_nApGain);
+            nTemp1 = SATURATE(nApIn + nTemp1);
 
-        // ********** Right Allpass - start
-        // right input = (right dry/4) + left feedback from previous period
-        /*lint -e{702} use shift for performance */
-        nApIn = ((*pInputBuffer++)>>2) + pReverbData->m_nRevOutFbkL;
-//      nApIn = *pInputBuffer++;    // 1xxx test and debug ap
+            // inject into allpass delay
+            nAddr = CIRCULAR(nBase, pReverbData->m_sAp0.m_zApIn, REVERB_BUFFER_MASK);
+            pDelayLine[nAddr] = (EAS_PCM) nTemp1;
 
-        // fetch allpass delay line out
-        nAddr = CIRCULAR(nBase, pReverbData->m_sAp1.m_zApOut, REVERB_BUFFER_MASK);
-        nDelayOut = pReverbData->m_nDelayLine[nAddr];
+            // inject allpass output into delay line
+            nAddr = CIRCULAR(nBase, pReverbData->m_zD0In, REVERB_BUFFER_MASK);
+            pDelayLine[nAddr] = (EAS_PCM) nApOut;
 
-        // calculate allpass feedforward; subtract the feedforward result
-        nTemp1 = MULT_EG1_EG1(nApIn, pReverbData->m_sAp1.m_nApGain);
-        nApOut = SATURATE(nDelayOut - nTemp1);          // allpass output
+            // ********** Left Allpass - end
 
-        // calculate allpass feedback; add the feedback result
-        nTemp1 = MULT_EG1_EG1(nApOut, pReverbData->m_sAp1.m_nApGain);
-        nTemp1 = SATURATE(nApIn + nTemp1);
+            // ********** Right Allpass - start
+            // right input = (right dry/4) + left feedback from previous period
+            /*lint -e{702} use shift for performance */
+            nApIn = ((*pInputBuffer++)>>2) + nRevOutFbkL;
 
-        // inject into allpass delay
-        nAddr = CIRCULAR(nBase, pReverbData->m_sAp1.m_zApIn, REVERB_BUFFER_MASK);
-        pReverbData->m_nDelayLine[nAddr] = (EAS_PCM) nTemp1;
+            // fetch allpass delay line out
+            nAddr = CIRCULAR(nBase, pReverbData->m_sAp1.m_zApOut, REVERB_BUFFER_MASK);
+            nDelayOut = pDelayLine[nAddr];
 
-        // inject allpass output into delay line
-        nAddr = CIRCULAR(nBase, pReverbData->m_zD1In, REVERB_BUFFER_MASK);
-        pReverbData->m_nDelayLine[nAddr] = (EAS_PCM) nApOut;
+            // calculate allpass feedforward; subtract the feedforward result
+            nTemp1 = MULT_EG1_EG1(nApIn, pReverbData->m_sAp1.m_nApGain);
+            nApOut = SATURATE(nDelayOut - nTemp1);          // allpass output
 
-        // ********** Right Allpass - end
+            // calculate allpass feedback; add the feedback result
+            nTemp1 = MULT_EG1_EG1(nApOut, pReverbData->m_sAp1.m_nApGain);
+            nTemp1 = SATURATE(nApIn + nTemp1);
 
-        // ********** D0 output - start
-        // fetch delay line self out
-        nAddr = CIRCULAR(nBase, pReverbData->m_zD0Self, REVERB_BUFFER_MASK);
-        nDelayOut = pReverbData->m_nDelayLine[nAddr];
+            // inject into allpass delay
+            nAddr = CIRCULAR(nBase, pReverbData->m_sAp1.m_zApIn, REVERB_BUFFER_MASK);
+            pDelayLine[nAddr] = (EAS_PCM) nTemp1;
 
-        // calculate delay line self out
-        nTemp1 = MULT_EG1_EG1(nDelayOut, pReverbData->m_nSin);
+            // inject allpass output into delay line
+            nAddr = CIRCULAR(nBase, pReverbData->m_zD1In, REVERB_BUFFER_MASK);
+            pDelayLine[nAddr] = (EAS_PCM) nApOut;
 
-        // fetch delay line cross out
-        nAddr = CIRCULAR(nBase, pReverbData->m_zD1Cross, REVERB_BUFFER_MASK);
-        nDelayOut = pReverbData->m_nDelayLine[nAddr];
+            // ********** Right Allpass - end
 
-        // calculate delay line self out
-        nTemp2 = MULT_EG1_EG1(nDelayOut, pReverbData->m_nCos);
+            // ********** D0 output - start
+            // fetch delay line self out
+            nAddr = CIRCULAR(nBase, pReverbData->m_zD0Self, REVERB_BUFFER_MASK);
+            nDelayOut = pDelayLine[nAddr];
 
-        // calculate unfiltered delay out
-        nDelayOut = SATURATE(nTemp1 + nTemp2);
+            // calculate delay line self out
+            nTemp1 = MULT_EG1_EG1(nDelayOut, nSin);
 
-        // calculate lowpass filter (mixer scale factor included in LPF feedforward)
-        nTemp1 = MULT_EG1_EG1(nDelayOut, pReverbData->m_nLpfFwd);
+            // fetch delay line cross out
+            nAddr = CIRCULAR(nBase, pReverbData->m_zD1Cross, REVERB_BUFFER_MASK);
+            nDelayOut = pDelayLine[nAddr];
 
-        nTemp2 = MULT_EG1_EG1(pReverbData->m_zLpf0, pReverbData->m_nLpfFbk);
+            // calculate delay line self out
+            nTemp2 = MULT_EG1_EG1(nDelayOut, nCos);
 
-        // calculate filtered delay out and simultaneously update LPF state variable
-        // filtered delay output is stored in m_zLpf0
-        pReverbData->m_zLpf0 = (EAS_PCM) SATURATE(nTemp1 + nTemp2);
+            // calculate unfiltered delay out
+            nDelayOut = SATURATE(nTemp1 + nTemp2);
 
-        // ********** D0 output - end
+            // calculate lowpass filter (mixer scale factor included in LPF feedforward)
+            nTemp1 = MULT_EG1_EG1(nDelayOut, pReverbData->m_nLpfFwd);
 
-        // ********** D1 output - start
-        // fetch delay line self out
-        nAddr = CIRCULAR(nBase, pReverbData->m_zD1Self, REVERB_BUFFER_MASK);
-        nDelayOut = pReverbData->m_nDelayLine[nAddr];
+            nTemp2 = MULT_EG1_EG1(zLpf0, pReverbData->m_nLpfFbk);
 
-        // calculate delay line self out
-        nTemp1 = MULT_EG1_EG1(nDelayOut, pReverbData->m_nSin);
+            // calculate filtered delay out and simultaneously update LPF state variable
+            // filtered delay output is stored in zLpf0
+            zLpf0 = (EAS_PCM) SATURATE(nTemp1 + nTemp2);
 
-        // fetch delay line cross out
-        nAddr = CIRCULAR(nBase, pReverbData->m_zD0Cross, REVERB_BUFFER_MASK);
-        nDelayOut = pReverbData->m_nDelayLine[nAddr];
+            // ********** D0 output - end
 
-        // calculate delay line self out
-        nTemp2 = MULT_EG1_EG1(nDelayOut, pReverbData->m_nCos);
+            // ********** D1 output - start
+            // fetch delay line self out
+            nAddr = CIRCULAR(nBase, pReverbData->m_zD1Self, REVERB_BUFFER_MASK);
+            nDelayOut = pDelayLine[nAddr];
 
-        // calculate unfiltered delay out
-        nDelayOut = SATURATE(nTemp1 + nTemp2);
+            // calculate delay line self out
+            nTemp1 = MULT_EG1_EG1(nDelayOut, nSin);
 
-        // calculate lowpass filter (mixer scale factor included in LPF feedforward)
-        nTemp1 = MULT_EG1_EG1(nDelayOut, pReverbData->m_nLpfFwd);
+            // fetch delay line cross out
+            nAddr = CIRCULAR(nBase, pReverbData->m_zD0Cross, REVERB_BUFFER_MASK);
+            nDelayOut = pDelayLine[nAddr];
 
-        nTemp2 = MULT_EG1_EG1(pReverbData->m_zLpf1, pReverbData->m_nLpfFbk);
+            // calculate delay line self out
+            nTemp2 = MULT_EG1_EG1(nDelayOut, nCos);
 
-        // calculate filtered delay out and simultaneously update LPF state variable
-        // filtered delay output is stored in m_zLpf1
-        pReverbData->m_zLpf1 = (EAS_PCM)SATURATE(nTemp1 + nTemp2);
+            // calculate unfiltered delay out
+            nDelayOut = SATURATE(nTemp1 + nTemp2);
 
-        // ********** D1 output - end
+            // calculate lowpass filter (mixer scale factor included in LPF feedforward)
+            nTemp1 = MULT_EG1_EG1(nDelayOut, pReverbData->m_nLpfFwd);
 
-        // ********** mixer and feedback - start
-        // sum is fedback to right input (R + L)
-        pReverbData->m_nRevOutFbkL =
-            (EAS_PCM)SATURATE((EAS_I32)pReverbData->m_zLpf1 + (EAS_I32)pReverbData->m_zLpf0);
+            nTemp2 = MULT_EG1_EG1(zLpf1, pReverbData->m_nLpfFbk);
 
-        // difference is feedback to left input (R - L)
-        /*lint -e{685} lint complains that it can't saturate negative */
-        pReverbData->m_nRevOutFbkR =
-            (EAS_PCM)SATURATE((EAS_I32)pReverbData->m_zLpf1 - (EAS_I32)pReverbData->m_zLpf0);
+            // calculate filtered delay out and simultaneously update LPF state variable
+            // filtered delay output is stored in zLpf1
+            zLpf1 = (EAS_PCM)SATURATE(nTemp1 + nTemp2);
 
-        // ********** mixer and feedback - end
+            // ********** D1 output - end
 
-        // ********** start early reflection generator, left
-        //psEarly = &(pReverbData->m_sEarlyL);
+            // ********** mixer and feedback - start
+            // sum is fedback to right input (R + L)
+            nRevOutFbkL = (EAS_PCM)SATURATE((EAS_I32)zLpf1 + (EAS_I32)zLpf0);
 
-        nEarlyOut = 0;
+            // difference is feedback to left input (R - L)
+            /*lint -e{685} lint complains that it can't saturate negative */
+            nRevOutFbkR = (EAS_PCM)SATURATE((EAS_I32)zLpf1 - (EAS_I32)zLpf0);
 
-        for (j=0; j < REVERB_MAX_NUM_REFLECTIONS; j++)
-        {
-            // fetch delay line out
-            //nAddr = CIRCULAR(nBase, psEarly->m_zDelay[j], REVERB_BUFFER_MASK);
-            nAddr = CIRCULAR(nBase, pReverbData->m_sEarlyL.m_zDelay[j], REVERB_BUFFER_MASK);
+            // ********** mixer and feedback - end
 
-            nDelayOut = pReverbData->m_nDelayLine[nAddr];
+            // ********** start early reflection generator, left
+            nEarlyOut = 0;
 
-            // calculate reflection
-            //nTemp1 = MULT_EG1_EG1(nDelayOut, psEarly->m_nGain[j]);
-            nTemp1 = MULT_EG1_EG1(nDelayOut, pReverbData->m_sEarlyL.m_nGain[j]);
+            if (bEarlyL)
+            {
+                for (j=0; j < REVERB_MAX_NUM_REFLECTIONS; j++)
+                {
+                    // fetch delay line out
+                    nAddr = CIRCULAR(nBase, pReverbData->m_sEarlyL.m_zDelay[j], REVERB_BUFFER_MASK);
+                    nDelayOut = pDelayLine[nAddr];
 
-            nEarlyOut = SATURATE(nEarlyOut + nTemp1);
+                    // calculate reflection
+                    nTemp1 = MULT_EG1_EG1(nDelayOut, pReverbData->m_sEarlyL.m_nGain[j]);
 
-        }   // end for (j=0; j < REVERB_MAX_NUM_REFLECTIONS; j++)
+                    nEarlyOut = SATURATE(nEarlyOut + nTemp1);
 
-        // apply lowpass to early reflections
-        //nTemp1 = MULT_EG1_EG1(nEarlyOut, psEarly->m_nLpfFwd);
-        nTemp1 = MULT_EG1_EG1(nEarlyOut, pReverbData->m_sEarlyL.m_nLpfFwd);
+                }   // end for (j=0; j < REVERB_MAX_NUM_REFLECTIONS; j++)
+            }
 
-        //nTemp2 = MULT_EG1_EG1(psEarly->m_zLpf, psEarly->m_nLpfFbk);
-        nTemp2 = MULT_EG1_EG1(pReverbData->m_sEarlyL.m_zLpf, pReverbData->m_sEarlyL.m_nLpfFbk);
+            // apply lowpass to early reflections
+            nTemp1 = MULT_EG1_EG1(nEarlyOut, pReverbData->m_sEarlyL.m_nLpfFwd);
 
+            nTemp2 = MULT_EG1_EG1(zEarlyLpfL, pReverbData->m_sEarlyL.m_nLpfFbk);
 
-        // calculate filtered out and simultaneously update LPF state variable
-        // filtered output is stored in m_zLpf1
-        //psEarly->m_zLpf = SATURATE(nTemp1 + nTemp2);
-        pReverbData->m_sEarlyL.m_zLpf = (EAS_PCM) SATURATE(nTemp1 + nTemp2);
+            // calculate filtered out and simultaneously update LPF state variable
+            zEarlyLpfL = (EAS_PCM) SATURATE(nTemp1 + nTemp2);
 
-        // combine filtered early and late reflections for output
-        //*pOutputBuffer++ = inL;
-        //tempValue = SATURATE(psEarly->m_zLpf + pReverbData->m_nRevOutFbkL);
-        tempValue = SATURATE((EAS_I32)pReverbData->m_sEarlyL.m_zLpf + (EAS_I32)pReverbData->m_nRevOutFbkL);
-        //scale reverb output by wet level
-        /*lint -e{701} use shift for performance */
-        tempValue = MULT_EG1_EG1(tempValue, (pReverbData->m_nWet<<1));
-        //sum with output buffer
-        tempValue += *pOutputBuffer;
-        *pOutputBuffer++ = (EAS_PCM)SATURATE(tempValue);
+            // combine filtered early and late reflections for output
+            pWet[2 * i] = (EAS_PCM) SATURATE((EAS_I32)zEarlyLpfL + (EAS_I32)nRevOutFbkL);
 
-        // ********** end early reflection generator, left
+            // ********** end early reflection generator, left
 
-        // ********** start early reflection generator, right
-        //psEarly = &(pReverbData->m_sEarlyR);
+            // ********** start early reflection generator, right
+            nEarlyOut = 0;
 
-        nEarlyOut = 0;
+            if (bEarlyR)
+            {
+                for (j=0; j < REVERB_MAX_NUM_REFLECTIONS; j++)
+                {
+                    // fetch delay line out
+                    nAddr = CIRCULAR(nBase, pReverbData->m_sEarlyR.m_zDelay[j], REVERB_BUFFER_MASK);
+                    nDelayOut = pDelayLine[nAddr];
 
-        for (j=0; j < REVERB_MAX_NUM_REFLECTIONS; j++)
-        {
-            // fetch delay line out
-            nAddr = CIRCULAR(nBase, pReverbData->m_sEarlyR.m_zDelay[j], REVERB_BUFFER_MASK);
-            nDelayOut = pReverbData->m_nDelayLine[nAddr];
+                    // calculate reflection
+                    nTemp1 = MULT_EG1_EG1(nDelayOut, pReverbData->m_sEarlyR.m_nGain[j]);
 
-            // calculate reflection
-            nTemp1 = MULT_EG1_EG1(nDelayOut, pReverbData->m_sEarlyR.m_nGain[j]);
+                    nEarlyOut = SATURATE(nEarlyOut + nTemp1);
 
-            nEarlyOut = SATURATE(nEarlyOut + nTemp1);
+                }   // end for (j=0; j < REVERB_MAX_NUM_REFLECTIONS; j++)
+            }
 
-        }   // end for (j=0; j < REVERB_MAX_NUM_REFLECTIONS; j++)
+            // apply lowpass to early reflections
+            nTemp1 = MULT_EG1_EG1(nEarlyOut, pReverbData->m_sEarlyR.m_nLpfFwd);
 
-        // apply lowpass to early reflections
-        nTemp1 = MULT_EG1_EG1(nEarlyOut, pReverbData->m_sEarlyR.m_nLpfFwd);
+            nTemp2 = MULT_EG1_EG1(zEarlyLpfR, pReverbData->m_sEarlyR.m_nLpfFbk);
 
-        nTemp2 = MULT_EG1_EG1(pReverbData->m_sEarlyR.m_zLpf, pReverbData->m_sEarlyR.m_nLpfFbk);
+            // calculate filtered out and simultaneously update LPF state variable
+            zEarlyLpfR = (EAS_PCM)SATURATE(nTemp1 + nTemp2);
 
-        // calculate filtered out and simultaneously update LPF state variable
-        // filtered output is stored in m_zLpf1
-        pReverbData->m_sEarlyR.m_zLpf = (EAS_PCM)SATURATE(nTemp1 + nTemp2);
+            // combine filtered early and late reflections for output
+            pWet[2 * i + 1] = (EAS_PCM) SATURATE((EAS_I32)zEarlyLpfR + (EAS_I32)nRevOutFbkR);
 
-        // combine filtered early and late reflections for output
-        //*pOutputBuffer++ = inR;
-        tempValue = SATURATE((EAS_I32)pReverbData->m_sEarlyR.m_zLpf + (EAS_I32)pReverbData->m_nRevOutFbkR);
-        //scale reverb output by wet level
-        /*lint -e{701} use shift for performance */
-        tempValue = MULT_EG1_EG1(tempValue, (pReverbData->m_nWet << 1));
-        //sum with output buffer
-        tempValue = tempValue + *pOutputBuffer;
-        *pOutputBuffer++ = (EAS_PCM)SATURATE(tempValue);
+            // ********** end early reflection generator, right
 
-        // ********** end early reflection generator, right
+            // decrement base addr for next sample period
+            nBase--;
 
-        // decrement base addr for next sample period
-        nBase--;
+            nSin += pReverbData->m_nSinIncrement;
+            nCos += pReverbData->m_nCosIncrement;
 
-        pReverbData->m_nSin += pReverbData->m_nSinIncrement;
-        pReverbData->m_nCos += pReverbData->m_nCosIncrement;
+        }   // end for (i=0; i < nCount; i++)
 
-    }   // end for (i=0; i < nNumSamplesToAdd; i++)
+        // scale reverb output by wet level and sum with output buffer:
+        // MULT_EG1_EG1(x, m_nWet << 1) == (x * m_nWet) >> (NUM_EG1_FRAC_BITS - 1)
+        EAS_MixEffect(pOutputBuffer, pWet, pReverbData->m_nWet, NUM_EG1_FRAC_BITS - 1, nCount * 2);
+        pOutputBuffer += nCount * 2;
+        nNumSamplesToAdd -= nCount;
+    }
 
     // store the most up to date version
     pReverbData->m_nBaseIndex = nBase;
+    pReverbData->m_nSin = nSin;
+    pReverbData->m_nCos = nCos;
+    pReverbData->m_zLpf0 = zLpf0;
+    pReverbData->m_zLpf1 = zLpf1;
+    pReverbData->m_nRevOutFbkL = nRevOutFbkL;
+    pReverbData->m_nRevOutFbkR = nRevOutFbkR;
+    pReverbData->m_sEarlyL.m_zLpf = zEarlyLpfL;
+    pReverbData->m_sEarlyR.m_zLpf = zEarlyLpfR;
 
     return EAS_SUCCESS;
 }   /* end Reverb */
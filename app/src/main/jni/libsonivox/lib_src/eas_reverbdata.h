@@ -92,6 +92,7 @@ if the buffer size is a power of two.
 
 #define REVERB_MAX_ROOM_TYPE            4   // any room numbers larger than this are invalid
 #define REVERB_MAX_NUM_REFLECTIONS      5   // max num reflections per channel
+#define REVERB_MIX_BLOCK_SIZE           64  // frames computed before each mix into the output
 
 /* synth parameters are updated every SYNTH_UPDATE_PERIOD_IN_SAMPLES */
 #define REVERB_UPDATE_PERIOD_IN_SAMPLES (EAS_I32)(0x1L << REVERB_UPDATE_PERIOD_IN_BITS)
@@ -356,6 +356,7 @@ typedef struct s_eas_dls_tag
     EAS_U16             numDLSArticulations;
     EAS_U16             numDLSSamples;
     EAS_U8              refCount;
+    EAS_I32             size;       /* size of the whole allocation */
 } S_DLS;
 #endif
 
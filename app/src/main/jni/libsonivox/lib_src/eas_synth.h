@@ -300,6 +300,7 @@ typedef struct s_synth_voice_tag
 #define SYNTH_FLAG_SP_MIDI_ON                           0x02
 #define SYNTH_FLAG_UPDATE_ALL_CHANNEL_PARAMETERS        0x04
 #define SYNTH_FLAG_DEFERRED_MIDI_NOTE_OFF_PENDING       0x08
+#define SYNTH_FLAG_DLS_CHANGE_IS_REQUESTED              0x10
 #define DEFAULT_SYNTH_FLAGS     SYNTH_FLAG_UPDATE_ALL_CHANNEL_PARAMETERS
 
 typedef struct s_synth_tag
@@ -309,6 +310,7 @@ typedef struct s_synth_tag
 
 #ifdef DLS_SYNTHESIZER
     S_DLS                   *pDLS;
+    S_DLS                   *pNextDLS;      /* waiting for the voices to mute */
 #endif
 
 #ifdef EXTERNAL_AUDIO
@@ -319,6 +321,7 @@ typedef struct s_synth_tag
 
     S_SYNTH_CHANNEL         channels[NUM_SYNTH_CHANNELS];
     EAS_I32                 totalNoteCount;
+    EAS_I32                 totalStealCount;
     EAS_U16                 maxPolyphony;
     EAS_U16                 numActiveVoices;
     EAS_U16                 masterVolume;
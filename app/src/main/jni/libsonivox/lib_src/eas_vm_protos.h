@@ -855,6 +855,30 @@ EAS_RESULT VMSetEASLib (S_SYNTH *pSynth, EAS_SNDLIB_HANDLE pEAS);
 */
 EAS_RESULT VMSetGlobalDLSLib (EAS_DATA_HANDLE pEASData, EAS_DLSLIB_HANDLE pDLS);
 EAS_RESULT VMSetDLSLib (S_SYNTH *pSynth, EAS_DLSLIB_HANDLE pDLS);
+
+/*----------------------------------------------------------------------------
+ * VMChangeDLSLib()
+ *----------------------------------------------------------------------------
+ * Purpose:
+ * Starts the process of replacing the DLS library of the synthesizer
+ * without interrupting the audio. The voices of the synth are muted and
+ * new notes are ignored; the library is replaced and the current programs
+ * are looked up again once all voices have completed ramping down (from
+ * VMRender), which takes a few render calls.
+ *
+ * Inputs:
+ * pVoiceMgr - pointer to the voice manager
+ * pSynth - pointer to the synthesizer
+ * pDLS - new DLS library, or NULL for the internal sounds only
+ *
+ * Outputs:
+ *
+ * Side Effects:
+ * - the synth holds a reference to pDLS until the change is complete
+ *
+ *----------------------------------------------------------------------------
+*/
+void VMChangeDLSLib (S_VOICE_MGR *pVoiceMgr, S_SYNTH *pSynth, EAS_DLSLIB_HANDLE pDLS);
 #endif
 
 /*----------------------------------------------------------------------------
@@ -906,6 +930,14 @@ void VMGetTranposition (S_SYNTH *pSynth, EAS_I32 *pTransposition);
 */
 EAS_I32 VMGetNoteCount (S_SYNTH *pSynth);
 
+/*----------------------------------------------------------------------------
+ * VMGetStealCount()
+ *----------------------------------------------------------------------------
+* Returns the number of voices stolen to start new notes
+*----------------------------------------------------------------------------
+*/
+EAS_I32 VMGetStealCount (S_SYNTH *pSynth);
+
 /*----------------------------------------------------------------------------
  * VMRender()
  *----------------------------------------------------------------------------
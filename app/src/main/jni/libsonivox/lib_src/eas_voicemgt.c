@@ -41,6 +41,10 @@
 #include "eas_mdls.h"
 #endif
 
+#ifdef DLS_SYNTHESIZER
+static void VMCompleteDLSChange (S_VOICE_MGR *pVoiceMgr, S_SYNTH *pSynth);
+#endif
+
 // #define _DEBUG_VM
 
 /* some defines for workload */
@@ -366,6 +370,7 @@ EAS_RESULT VMInitMIDI (S_EAS_DATA *pEASData, S_SYNTH **ppSynth)
         return EAS_ERROR_MALLOC_FAILED;
     }
     EAS_HWMemSet(pSynth, 0, sizeof(S_SYNTH));
+    pSynth->pEASData = pEASData;
 
     /* set the sound library pointer */
     if ((result = VMSetEASLib(pSynth, pEASData->pVoiceMgr->pGlobalEAS)) != EAS_SUCCESS)
@@ -1710,7 +1715,10 @@ void VMStartVoice (S_VOICE_MGR *pVoiceMgr, S_SYNTH *pSynth, EAS_U8 channel, EAS_
 
     /* no free voices, we have to steal one using appropriate algorithm */
     if (VMStealVoice(pVoiceMgr, pSynth, &voiceNum, channel, note, lowVoice, highVoice) == EAS_SUCCESS)
+    {
+        pSynth->totalStealCount++;
         VMStolenVoice(pVoiceMgr, pSynth, voiceNum, channel, note, velocity, regionIndex);
+    }
 
 #ifdef _DEBUG_VM
     else
@@ -1759,6 +1767,12 @@ void VMStartNote (S_VOICE_MGR *pVoiceMgr, S_SYNTH *pSynth, EAS_U8 channel, EAS_U
     if (pChannel->channelFlags & CHANNEL_FLAG_MUTE)
         return;
 
+#ifdef DLS_SYNTHESIZER
+    /* no new notes until the DLS library has been replaced */
+    if (pSynth->synthFlags & SYNTH_FLAG_DLS_CHANGE_IS_REQUESTED)
+        return;
+#endif
+
 #ifdef EXTERNAL_AUDIO
     /* pass event to external audio when requested */
     if ((pChannel->channelFlags & CHANNEL_FLAG_EXTERNAL_AUDIO) && (pSynth->cbEventFunc != NULL))
@@ -2920,6 +2934,13 @@ EAS_RESULT VMRender (S_VOICE_MGR *pVoiceMgr, EAS_I32 numSamples, EAS_I32 *pMixBu
             pSynth->synthFlags &= ~SYNTH_FLAG_RESET_IS_REQUESTED;
         }
 
+#ifdef DLS_SYNTHESIZER
+        /* complete the change of DLS library now that all voices have muted */
+        if ((pSynth->synthFlags & SYNTH_FLAG_DLS_CHANGE_IS_REQUESTED) &&
+            (pSynth->numActiveVoices == 0))
+            VMCompleteDLSChange(pVoiceMgr, pSynth);
+#endif
+
         /* clear channel update flags */
         for (channel = 0; channel < NUM_SYNTH_CHANNELS; channel++)
             pSynth->channels[channel].channelFlags &= ~CHANNEL_FLAG_UPDATE_CHANNEL_PARAMETERS;
@@ -3239,6 +3260,7 @@ EAS_RESULT VMSetPolyphony (S_VOICE_MGR *pVoiceMgr, S_SYNTH *pSynth, EAS_I32 poly
 {
     EAS_INT i;
     EAS_INT activeVoices;
+    EAS_U8 channel;
 
     /* check limits */
     if (polyphonyCount < 0)
@@ -3272,8 +3294,10 @@ EAS_RESULT VMSetPolyphony (S_VOICE_MGR *pVoiceMgr, S_SYNTH *pSynth, EAS_I32 poly
     activeVoices = 0;
     for (i = 0; i < MAX_SYNTH_VOICES; i++)
     {
-        /* this synth? */
-        if (GET_VSYNTH(pVoiceMgr->voices[i].nextChannel) != pSynth->vSynthNum)
+        /* this synth? a stolen voice belongs to its next note */
+        channel = (pVoiceMgr->voices[i].voiceState == eVoiceStateStolen) ?
+            pVoiceMgr->voices[i].nextChannel : pVoiceMgr->voices[i].channel;
+        if (GET_VSYNTH(channel) != pSynth->vSynthNum)
             continue;
 
         /* is voice active? */
@@ -3294,8 +3318,13 @@ EAS_RESULT VMSetPolyphony (S_VOICE_MGR *pVoiceMgr, S_SYNTH *pSynth, EAS_I32 poly
         {
             pVoice = &pVoiceMgr->voices[i];
 
-            /* this synth? */
-            if (GET_VSYNTH(pVoice->nextChannel) != pSynth->vSynthNum)
+            /* this synth? a stolen voice belongs to its next note */
+            channel = (pVoice->voiceState == eVoiceStateStolen) ? pVoice->nextChannel : pVoice->channel;
+            if (GET_VSYNTH(channel) != pSynth->vSynthNum)
+                continue;
+
+            /* skip the voices already muted */
+            if ((pVoice->voiceState == eVoiceStateFree) || (pVoice->voiceState == eVoiceStateMuting))
                 continue;
 
             /* if voice is stolen or just started, reduce the likelihood it will be stolen */
@@ -3305,7 +3334,7 @@ EAS_RESULT VMSetPolyphony (S_VOICE_MGR *pVoiceMgr, S_SYNTH *pSynth, EAS_I32 poly
                 currentPriority = 128 - pVoice->nextVelocity;
 
                 /* include channel priority */
-                currentPriority += pSynth->channels[GET_CHANNEL(pVoice->nextChannel)].pool << CHANNEL_PRIORITY_STEAL_WEIGHT;
+                currentPriority += pSynth->channels[GET_CHANNEL(channel)].pool << CHANNEL_PRIORITY_STEAL_WEIGHT;
             }
             else
             {
@@ -3318,7 +3347,7 @@ EAS_RESULT VMSetPolyphony (S_VOICE_MGR *pVoiceMgr, S_SYNTH *pSynth, EAS_I32 poly
                     ((EAS_I32) pVoice->gain >> (12 - NOTE_GAIN_STEAL_WEIGHT));
 
                 /* include channel priority */
-                currentPriority += pSynth->channels[GET_CHANNEL(pVoice->nextChannel)].pool << CHANNEL_PRIORITY_STEAL_WEIGHT;
+                currentPriority += pSynth->channels[GET_CHANNEL(channel)].pool << CHANNEL_PRIORITY_STEAL_WEIGHT;
             }
 
             /* is this the best choice so far? */
@@ -3608,6 +3637,78 @@ EAS_RESULT VMSetDLSLib (S_SYNTH *pSynth, EAS_DLSLIB_HANDLE pDLS)
     pSynth->pDLS = pDLS;
     return EAS_SUCCESS;
 }
+
+/*----------------------------------------------------------------------------
+ * VMChangeDLSLib()
+ *----------------------------------------------------------------------------
+ * Purpose:
+ * Starts the process of replacing the DLS library of the synthesizer.
+ * The change is completed by VMRender once all voices have muted.
+ *
+ * Inputs:
+ * pVoiceMgr - pointer to the voice manager
+ * pSynth - pointer to the synthesizer
+ * pDLS - new DLS library, or NULL
+ *
+ * Outputs:
+ *
+ *
+ * Side Effects:
+ * - force all voices to update their envelope states to mute
+ *
+ *----------------------------------------------------------------------------
+*/
+void VMChangeDLSLib (S_VOICE_MGR *pVoiceMgr, S_SYNTH *pSynth, EAS_DLSLIB_HANDLE pDLS)
+{
+    /* a new change replaces one still waiting for the voices */
+    DLSAddRef(pDLS);
+    if (pSynth->synthFlags & SYNTH_FLAG_DLS_CHANGE_IS_REQUESTED)
+        DLSCleanup(pSynth->pEASData->hwInstData, pSynth->pNextDLS);
+    pSynth->pNextDLS = pDLS;
+    pSynth->synthFlags |= SYNTH_FLAG_DLS_CHANGE_IS_REQUESTED;
+
+    VMMuteAllVoices(pVoiceMgr, pSynth);
+
+    /* nothing to wait for if no voices are playing */
+    if (pSynth->numActiveVoices == 0)
+        VMCompleteDLSChange(pVoiceMgr, pSynth);
+}
+
+/*----------------------------------------------------------------------------
+ * VMCompleteDLSChange()
+ *----------------------------------------------------------------------------
+ * Purpose:
+ * Replaces the DLS library once all voices have muted, keeping the state
+ * of the channels.
+ *
+ * Inputs:
+ * pVoiceMgr - pointer to the voice manager
+ * pSynth - pointer to the synthesizer
+ *
+ * Outputs:
+ *
+ *
+ * Side Effects:
+ *
+ *----------------------------------------------------------------------------
+*/
+static void VMCompleteDLSChange (S_VOICE_MGR *pVoiceMgr, S_SYNTH *pSynth)
+{
+    S_DLS *pOldDLS;
+    EAS_INT i;
+
+    /* the reference taken by VMChangeDLSLib passes to the synth */
+    pOldDLS = pSynth->pDLS;
+    pSynth->pDLS = pSynth->pNextDLS;
+    pSynth->pNextDLS = NULL;
+    pSynth->synthFlags &= ~SYNTH_FLAG_DLS_CHANGE_IS_REQUESTED;
+
+    /* look up the current programs in the new library */
+    for (i = 0; i < NUM_SYNTH_CHANNELS; i++)
+        VMProgramChange(pVoiceMgr, pSynth, (EAS_U8) i, pSynth->channels[i].programNum);
+
+    DLSCleanup(pSynth->pEASData->hwInstData, pOldDLS);
+}
 #endif
 
 /*----------------------------------------------------------------------------
@@ -3667,6 +3768,17 @@ EAS_I32 VMGetNoteCount (S_SYNTH *pSynth)
     return pSynth->totalNoteCount;
 }
 
+/*----------------------------------------------------------------------------
+ * VMGetStealCount()
+ *----------------------------------------------------------------------------
+* Returns the number of voices stolen to start new notes
+*----------------------------------------------------------------------------
+*/
+EAS_I32 VMGetStealCount (S_SYNTH *pSynth)
+{
+    return pSynth->totalStealCount;
+}
+
 /*----------------------------------------------------------------------------
  * VMMIDIShutdown()
  *----------------------------------------------------------------------------
@@ -3703,6 +3815,12 @@ void VMMIDIShutdown (S_EAS_DATA *pEASData, S_SYNTH *pSynth)
             { /* dpp: EAS_ReportEx(_EAS_SEVERITY_ERROR, "VMMIDIShutdown: Error %ld cleaning up DLS collection\n", result); */ }
         pSynth->pDLS = NULL;
     }
+    if (pSynth->synthFlags & SYNTH_FLAG_DLS_CHANGE_IS_REQUESTED)
+    {
+        DLSCleanup(pEASData->hwInstData, pSynth->pNextDLS);
+        pSynth->pNextDLS = NULL;
+        pSynth->synthFlags &= ~SYNTH_FLAG_DLS_CHANGE_IS_REQUESTED;
+    }
 #endif
 
     VMReset(pEASData->pVoiceMgr, pSynth, EAS_TRUE);
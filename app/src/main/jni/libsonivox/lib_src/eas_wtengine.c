@@ -57,6 +57,123 @@ extern void WT_Interpolate (S_WT_VOICE *pWTVoice, S_WT_INT_FRAME *pWTIntFrame);
 extern void WT_VoiceFilter (S_FILTER_CONTROL*pFilter, S_WT_INT_FRAME *pWTIntFrame);
 #endif
 
+/*----------------------------------------------------------------------------
+ * vector kernels
+ *----------------------------------------------------------------------------
+ * NEON is present on every arm64-v8a device and in the armeabi-v7a code
+ * generated by the NDK, and SSE2 on both x86 ABIs, so the instruction set
+ * is selected when the library is compiled for each ABI. The vector loops
+ * compute four samples at a time with the same 32-bit integer operations as
+ * the C loops, which still handle the remaining samples and the other
+ * targets, so the output is bit-exact. Define EAS_NO_SIMD to disable them.
+ *----------------------------------------------------------------------------
+*/
+#if !defined(EAS_NO_SIMD) && (defined(__ARM_NEON) || defined(__ARM_NEON__))
+#include <arm_neon.h>
+#define WT_SIMD
+
+typedef int32x4_t WT_VEC;
+
+static inline WT_VEC WT_VecSet (EAS_I32 a, EAS_I32 b, EAS_I32 c, EAS_I32 d)
+{
+    const int32_t lanes[4] = { (int32_t) a, (int32_t) b, (int32_t) c, (int32_t) d };
+    return vld1q_s32(lanes);
+}
+
+#define WT_VecDup(x)        vdupq_n_s32((int32_t) (x))
+#define WT_VecAdd(a, b)     vaddq_s32(a, b)
+#define WT_VecSub(a, b)     vsubq_s32(a, b)
+#define WT_VecMul(a, b)     vmulq_s32(a, b)
+#define WT_VecAnd(a, b)     vandq_s32(a, b)
+#define WT_VecShl(a, n)     vshlq_n_s32(a, n)
+#define WT_VecShr(a, n)     vshrq_n_s32(a, n)
+
+/* load four PCM samples, sign extended */
+#define WT_VecLoadPCM(p)    vmovl_s16(vld1_s16(p))
+
+/* store four PCM samples, truncated as the (EAS_I16) cast does */
+#define WT_VecStorePCM(p, a) vst1_s16(p, vmovn_s32(a))
+
+/* add four samples to the mix buffer */
+static inline void WT_VecMix (EAS_I32 *pMixBuffer, WT_VEC a)
+{
+#if (__SIZEOF_LONG__ == 8)
+    int64_t *p = (int64_t*) pMixBuffer;
+    vst1q_s64(p, vaddw_s32(vld1q_s64(p), vget_low_s32(a)));
+    vst1q_s64(p + 2, vaddw_s32(vld1q_s64(p + 2), vget_high_s32(a)));
+#else
+    int32_t *p = (int32_t*) pMixBuffer;
+    vst1q_s32(p, vaddq_s32(vld1q_s32(p), a));
+#endif
+}
+
+/* add four frames to the stereo mix buffer */
+static inline void WT_VecMixStereo (EAS_I32 *pMixBuffer, WT_VEC left, WT_VEC right)
+{
+    int32x4x2_t frames = vzipq_s32(left, right);
+    WT_VecMix(pMixBuffer, frames.val[0]);
+    WT_VecMix(pMixBuffer + 4, frames.val[1]);
+}
+
+#elif !defined(EAS_NO_SIMD) && defined(__SSE2__)
+#include <emmintrin.h>
+#define WT_SIMD
+
+typedef __m128i WT_VEC;
+
+#define WT_VecSet(a, b, c, d) _mm_setr_epi32((int) (a), (int) (b), (int) (c), (int) (d))
+#define WT_VecDup(x)        _mm_set1_epi32((int) (x))
+#define WT_VecAdd(a, b)     _mm_add_epi32(a, b)
+#define WT_VecSub(a, b)     _mm_sub_epi32(a, b)
+#define WT_VecAnd(a, b)     _mm_and_si128(a, b)
+#define WT_VecShl(a, n)     _mm_slli_epi32(a, n)
+#define WT_VecShr(a, n)     _mm_srai_epi32(a, n)
+
+/* low 32 bits of the products; SSE2 only multiplies the even lanes */
+static inline WT_VEC WT_VecMul (WT_VEC a, WT_VEC b)
+{
+    __m128i even = _mm_mul_epu32(a, b);
+    __m128i odd = _mm_mul_epu32(_mm_srli_epi64(a, 32), _mm_srli_epi64(b, 32));
+    return _mm_unpacklo_epi32(_mm_shuffle_epi32(even, _MM_SHUFFLE(0, 0, 2, 0)),
+                              _mm_shuffle_epi32(odd, _MM_SHUFFLE(0, 0, 2, 0)));
+}
+
+/* load four PCM samples, sign extended */
+static inline WT_VEC WT_VecLoadPCM (const EAS_PCM *p)
+{
+    __m128i a = _mm_loadl_epi64((const __m128i*) p);
+    return _mm_srai_epi32(_mm_unpacklo_epi16(a, a), 16);
+}
+
+/* store four PCM samples, truncated as the (EAS_I16) cast does */
+static inline void WT_VecStorePCM (EAS_PCM *p, WT_VEC a)
+{
+    a = _mm_srai_epi32(_mm_slli_epi32(a, 16), 16);
+    _mm_storel_epi64((__m128i*) p, _mm_packs_epi32(a, a));
+}
+
+/* add four samples to the mix buffer */
+static inline void WT_VecMix (EAS_I32 *pMixBuffer, WT_VEC a)
+{
+#if (__SIZEOF_LONG__ == 8)
+    __m128i *p = (__m128i*) pMixBuffer;
+    __m128i sign = _mm_srai_epi32(a, 31);
+    _mm_storeu_si128(p, _mm_add_epi64(_mm_loadu_si128(p), _mm_unpacklo_epi32(a, sign)));
+    _mm_storeu_si128(p + 1, _mm_add_epi64(_mm_loadu_si128(p + 1), _mm_unpackhi_epi32(a, sign)));
+#else
+    __m128i *p = (__m128i*) pMixBuffer;
+    _mm_storeu_si128(p, _mm_add_epi32(_mm_loadu_si128(p), a));
+#endif
+}
+
+/* add four frames to the stereo mix buffer */
+static inline void WT_VecMixStereo (EAS_I32 *pMixBuffer, WT_VEC left, WT_VEC right)
+{
+    WT_VecMix(pMixBuffer, _mm_unpacklo_epi32(left, right));
+    WT_VecMix(pMixBuffer + 4, _mm_unpackhi_epi32(left, right));
+}
+#endif
+
 #if defined(_OPTIMIZED_MONO) || !defined(NATIVE_EAS_KERNEL)
 /*----------------------------------------------------------------------------
  * WT_VoiceGain
@@ -103,6 +220,43 @@ void WT_VoiceGain (S_WT_VOICE *pWTVoice, S_WT_INT_FRAME *pWTIntFrame)
     gainRight = pWTVoice->gainRight;
 #endif
 
+#if defined(WT_SIMD)
+    if (numSamples >= 4)
+    {
+        WT_VEC vGain, vGainStep, vSamples;
+#if (NUM_OUTPUT_CHANNELS == 2)
+        WT_VEC vGainLeft, vGainRight;
+        vGainLeft = WT_VecDup(gainLeft);
+        vGainRight = WT_VecDup(gainRight);
+#endif
+
+        /* gain ramp of the next four samples */
+        vGain = WT_VecSet(gain + gainIncrement, gain + 2 * gainIncrement,
+            gain + 3 * gainIncrement, gain + 4 * gainIncrement);
+        vGainStep = WT_VecDup(4 * gainIncrement);
+
+        for (; numSamples >= 4; numSamples -= 4)
+        {
+            /* scale samples by gain */
+            vSamples = WT_VecMul(WT_VecShr(vGain, 16), WT_VecLoadPCM(pInputBuffer));
+            vGain = WT_VecAdd(vGain, vGainStep);
+            gain += 4 * gainIncrement;
+            pInputBuffer += 4;
+
+#if (NUM_OUTPUT_CHANNELS == 2)
+            vSamples = WT_VecShr(vSamples, 14);
+            WT_VecMixStereo(pMixBuffer,
+                WT_VecShr(WT_VecMul(vSamples, vGainLeft), NUM_MIXER_GUARD_BITS),
+                WT_VecShr(WT_VecMul(vSamples, vGainRight), NUM_MIXER_GUARD_BITS));
+            pMixBuffer += 8;
+#else
+            WT_VecMix(pMixBuffer, WT_VecShr(vSamples, NUM_MIXER_GUARD_BITS - 1));
+            pMixBuffer += 4;
+#endif
+        }
+    }
+#endif
+
     while (numSamples--) {
 
         /* incremental gain step to prevent zipper noise */
@@ -155,6 +309,146 @@ void WT_VoiceGain (S_WT_VOICE *pWTVoice, S_WT_INT_FRAME *pWTIntFrame)
 }
 #endif
 
+#if defined(WT_SIMD) && !defined(NATIVE_EAS_KERNEL)
+/*----------------------------------------------------------------------------
+ * WT_InterpolateVector
+ *----------------------------------------------------------------------------
+ * Purpose:
+ * Vector version of WT_Interpolate and WT_InterpolateNoLoop
+ *
+ * Inputs:
+ * loopEnd - one past the last sample of the loop, or NULL if not looped
+ *
+ * Outputs:
+ *
+ * Notes:
+ * Requires a non-negative phase increment and a phase fraction already
+ * reduced below PHASE_ONE, as it is after the first sample of a note: the
+ * sample positions of the next four outputs then follow directly from the
+ * phase. Four samples are computed together unless the loop wraps among
+ * them, in which case one sample is computed as the C kernels do.
+ *----------------------------------------------------------------------------
+*/
+static void WT_InterpolateVector (S_WT_VOICE *pWTVoice, S_WT_INT_FRAME *pWTIntFrame, const EAS_SAMPLE *loopEnd)
+{
+    EAS_PCM *pOutputBuffer;
+    EAS_I32 phaseInc;
+    EAS_I32 phaseFrac;
+    EAS_I32 acc0;
+    EAS_I32 acc1;
+    EAS_I32 acc2;
+    EAS_I32 acc3;
+    const EAS_SAMPLE *pSamples;
+    EAS_I32 samp1;
+    EAS_I32 samp2;
+    EAS_I32 numSamples;
+    WT_VEC vPhaseStep;
+    WT_VEC vPhaseMask;
+    WT_VEC vSamp1;
+    WT_VEC vSamp2;
+    WT_VEC vAcc;
+
+    /* initialize some local variables */
+    numSamples = pWTIntFrame->numSamples;
+    pOutputBuffer = pWTIntFrame->pAudioBuffer;
+
+    pSamples = (const EAS_SAMPLE*) pWTVoice->phaseAccum;
+    phaseFrac = (EAS_I32) pWTVoice->phaseFrac;
+    phaseInc = pWTIntFrame->frame.phaseIncrement;
+
+    /* phase of each output relative to the first one */
+    vPhaseStep = WT_VecSet(0, phaseInc, 2 * phaseInc, 3 * phaseInc);
+    vPhaseMask = WT_VecDup(PHASE_FRAC_MASK);
+
+    while (numSamples > 0) {
+
+        /* sample advance over the next four outputs */
+        /*lint -e{704} <avoid divide>*/
+        acc0 = (phaseFrac + 4 * phaseInc) >> NUM_PHASE_FRAC_BITS;
+
+        if ((numSamples >= 4) && ((loopEnd == NULL) || (acc0 < loopEnd - pSamples))) {
+
+            /* offset of the samples of outputs 1 to 3 */
+            /*lint -e{704} <avoid divide>*/
+            acc1 = (phaseFrac + phaseInc) >> NUM_PHASE_FRAC_BITS;
+            /*lint -e{704} <avoid divide>*/
+            acc2 = (phaseFrac + 2 * phaseInc) >> NUM_PHASE_FRAC_BITS;
+            /*lint -e{704} <avoid divide>*/
+            acc3 = (phaseFrac + 3 * phaseInc) >> NUM_PHASE_FRAC_BITS;
+
+            /* fetch adjacent samples */
+            vSamp1 = WT_VecSet(pSamples[0], pSamples[acc1], pSamples[acc2], pSamples[acc3]);
+            vSamp2 = WT_VecSet(pSamples[1], pSamples[acc1 + 1], pSamples[acc2 + 1], pSamples[acc3 + 1]);
+#if defined(_8_BIT_SAMPLES)
+            vSamp1 = WT_VecShl(vSamp1, 8);
+            vSamp2 = WT_VecShl(vSamp2, 8);
+#endif
+
+            /* linear interpolation */
+            vAcc = WT_VecAnd(WT_VecAdd(WT_VecDup(phaseFrac), vPhaseStep), vPhaseMask);
+            vAcc = WT_VecMul(WT_VecSub(vSamp2, vSamp1), vAcc);
+            vAcc = WT_VecAdd(vSamp1, WT_VecShr(vAcc, NUM_PHASE_FRAC_BITS));
+
+            /* save new output samples in buffer */
+            WT_VecStorePCM(pOutputBuffer, WT_VecShr(vAcc, 2));
+            pOutputBuffer += 4;
+            numSamples -= 4;
+
+            /* advance sample pointer */
+            pSamples += acc0;
+            phaseFrac = (EAS_I32)((EAS_U32)(phaseFrac + 4 * phaseInc) & PHASE_FRAC_MASK);
+            continue;
+        }
+
+        /* fetch adjacent samples */
+#if defined(_8_BIT_SAMPLES)
+        /*lint -e{701} <avoid multiply for performance>*/
+        samp1 = pSamples[0] << 8;
+        /*lint -e{701} <avoid multiply for performance>*/
+        samp2 = pSamples[1] << 8;
+#else
+        samp1 = pSamples[0];
+        samp2 = pSamples[1];
+#endif
+
+        /* linear interpolation */
+        acc0 = samp2 - samp1;
+        acc0 = acc0 * phaseFrac;
+        /*lint -e{704} <avoid divide>*/
+        acc0 = samp1 + (acc0 >> NUM_PHASE_FRAC_BITS);
+
+        /* save new output sample in buffer */
+        /*lint -e{704} <avoid divide>*/
+        *pOutputBuffer++ = (EAS_I16)(acc0 >> 2);
+        numSamples--;
+
+        /* increment phase */
+        phaseFrac += phaseInc;
+        /*lint -e{704} <avoid divide>*/
+        acc0 = phaseFrac >> NUM_PHASE_FRAC_BITS;
+
+        /* next sample */
+        if (acc0 > 0) {
+
+            /* advance sample pointer */
+            pSamples += acc0;
+            phaseFrac = (EAS_I32)((EAS_U32)phaseFrac & PHASE_FRAC_MASK);
+
+            /* check for loop end */
+            if (loopEnd != NULL) {
+                acc0 = (EAS_I32) (pSamples - loopEnd);
+                if (acc0 >= 0)
+                    pSamples = (const EAS_SAMPLE*) pWTVoice->loopStart + acc0;
+            }
+        }
+    }
+
+    /* save pointer and phase */
+    pWTVoice->phaseAccum = (EAS_U32) pSamples;
+    pWTVoice->phaseFrac = (EAS_U32) phaseFrac;
+}
+#endif
+
 #ifndef NATIVE_EAS_KERNEL
 /*----------------------------------------------------------------------------
  * WT_Interpolate
@@ -190,6 +484,13 @@ void WT_Interpolate (S_WT_VOICE *pWTVoice, S_WT_INT_FRAME *pWTIntFrame)
     phaseFrac = pWTVoice->phaseFrac;
     phaseInc = pWTIntFrame->frame.phaseIncrement;
 
+#if defined(WT_SIMD)
+    if ((phaseInc >= 0) && (phaseFrac >= 0) && (phaseFrac <= (EAS_I32) PHASE_FRAC_MASK)) {
+        WT_InterpolateVector(pWTVoice, pWTIntFrame, loopEnd);
+        return;
+    }
+#endif
+
     /* fetch adjacent samples */
 #if defined(_8_BIT_SAMPLES)
     /*lint -e{701} <avoid multiply for performance>*/
@@ -281,6 +582,13 @@ void WT_InterpolateNoLoop (S_WT_VOICE *pWTVoice, S_WT_INT_FRAME *pWTIntFrame)
     pSamples = (const EAS_SAMPLE*) pWTVoice->phaseAccum;
     phaseFrac = (EAS_I32)pWTVoice->phaseFrac;
 
+#if defined(WT_SIMD)
+    if ((phaseInc >= 0) && (phaseFrac >= 0) && (phaseFrac <= (EAS_I32) PHASE_FRAC_MASK)) {
+        WT_InterpolateVector(pWTVoice, pWTIntFrame, NULL);
+        return;
+    }
+#endif
+
     /* fetch adjacent samples */
 #if defined(_8_BIT_SAMPLES)
     /*lint -e{701} <avoid multiply for performance>*/
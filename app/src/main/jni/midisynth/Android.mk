@@ -1,8 +1,8 @@
 LOCAL_PATH := $(call my-dir)
 include $(CLEAR_VARS)
 LOCAL_MODULE    := midisynth
-LOCAL_SRC_FILES := midisynth.c
-LOCAL_LDLIBS := -lOpenSLES -llog
-LOCAL_STATIC_LIBRARIES := libsonivox opensl_stream
+LOCAL_SRC_FILES := midisynth.c offline_renderer.c
+LOCAL_LDLIBS := -lOpenSLES -laaudio -llog
+LOCAL_STATIC_LIBRARIES := libsonivox opensl_stream aaudio_stream resampler
 LOCAL_LDFLAGS := -Wl,--build-id=none
 include $(BUILD_SHARED_LIBRARY)
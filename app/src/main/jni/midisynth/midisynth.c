@@ -1,5 +1,5 @@
 /*
- * OpenSL ES audio output for Sonivox EAS synthesizer in real time
+ * OpenSL ES and AAudio output for Sonivox EAS synthesizer in real time
  * Copyright (C) 2013 Pedro López-Cabanillas <plcl@users.sf.net>
  *
  * Based on opensl_stream, by Peter Brinkmann
@@ -19,94 +19,1016 @@
 
 #include <jni.h>
 #include <stdlib.h>
+#include <string.h>
+#include <stdint.h>
+#include <time.h>
+#include <unistd.h>
+#include <sys/mman.h>
+#include <sys/stat.h>
+#include <fcntl.h>
+#include <limits.h>
+#include <stdio.h>
 #include <android/log.h>
 #include <eas.h>
 #include <eas_reverb.h>
 #include <eas_chorus.h>
 #include <opensl_stream.h>
+#include <aaudio_stream.h>
+#include <resampler.h>
 
 #define LOGI(...) \
   __android_log_print(ANDROID_LOG_INFO, "midisynth", __VA_ARGS__)
 #define LOGW(...) \
   __android_log_print(ANDROID_LOG_WARN, "midisynth", __VA_ARGS__)
 
+/*
+ * Events travel from the Java (UI) thread to the audio thread through a
+ * lock-free single producer / single consumer ring, so that the EAS synth
+ * state is only touched by the audio callback.
+ *
+ * Events may carry a CLOCK_MONOTONIC timestamp in nanoseconds (the same clock
+ * as System.nanoTime()); zero means "as soon as possible". Timestamped events
+ * are played with a constant latency of one callback period: an event stamped
+ * during the previous period lands at the matching offset inside the current
+ * output buffer, rounded to the EAS render block (mixBufferSize frames).
+ *
+ * Nothing consumes the queue while the stream is stopped: stop() and start()
+ * dispatch what is left in it, and the synth parameters are applied directly
+ * until the stream runs again. An event that finds the queue full is dropped
+ * and counted, see STAT_DROPPED_EVENTS.
+ */
+#define EVENT_QUEUE_SIZE 1024 /* must be a power of two */
+#define EVENT_QUEUE_MASK (EVENT_QUEUE_SIZE - 1)
+#define MIDI_EVENT_BYTES 3
+
+enum { EVENT_MIDI, EVENT_PARAM, EVENT_BANK, EVENT_SONG };
+/* actions of the EVENT_SONG events, in SynthEvent.param */
+enum { SONG_CLOSE, SONG_PAUSE, SONG_RESUME, SONG_VOLUME };
+
+/*
+ * A MIDI file played by the EAS SMF parser on a second stream, mixed with
+ * the live input by the same EAS_Render call, see playSong(). The file is
+ * copied to memory beforehand, so the parser never waits for the storage on
+ * the audio thread.
+ */
+struct Song {
+  EAS_U8 *data;
+  int size;
+  EAS_FILE locator;
+  struct Song *next; /* Java only, see retireSong() */
+};
+
+struct SynthEvent {
+  int64_t timestamp;
+  int type;
+  int length;
+  EAS_U8 data[MIDI_EVENT_BYTES];
+  EAS_I32 module, param, value;
+  EAS_DLSLIB_HANDLE bank;
+};
+
+struct EventQueue {
+  struct SynthEvent events[EVENT_QUEUE_SIZE];
+  unsigned int head; /* written only by the producer */
+  unsigned int tail; /* written only by the consumer */
+};
+
+/*
+ * Split and layer zones of the keyboard, see ChannelMap.java: writeKey()
+ * plays a key on every zone that contains it, transposed, queueing the
+ * messages of all the zones at once. The map is only used on the producer
+ * side of the queue (the Java thread), so it needs no synchronization.
+ */
+#define MAX_ZONES 4
+/* fields of each zone in the array given by ChannelMap.toArray() */
+enum { ZONE_CHANNEL, ZONE_TRANSPOSE, ZONE_LOW, ZONE_HIGH, ZONE_FIELDS };
+
+struct ChannelZone {
+  int channel, transpose, low, high;
+};
+
+/* a sound bank replaced by a change, see setSoundBank() */
+struct RetiredBank {
+  EAS_DLSLIB_HANDLE bank;
+  unsigned int request; /* the change that replaced it */
+  struct RetiredBank *next;
+};
+
+/*
+ * Glitch counters, written only by the audio thread and read by Java with
+ * relaxed atomics; the indexes match the MIDISynth.STAT_* constants.
+ *
+ * A callback is late when it takes longer than the buffer period. OpenSL ES
+ * does not report underruns, so for it they are estimated: when the time
+ * since the previous callback exceeds the audio queued to the device, the
+ * queue must have run dry. AAudio counts its own underruns.
+ *
+ * The time spent in EAS_Render per callback goes to a histogram with four
+ * buckets per octave of microseconds (about 19% resolution), from which the
+ * percentiles are computed when Java asks for them. The last bucket
+ * collects everything from about 100 ms up.
+ *
+ * The voice counters are sampled after each callback: the voices sounding,
+ * the total of voices stolen to start new notes, and the polyphony allowed
+ * by adaptPolyphony().
+ *
+ * Idle callbacks, see checkIdle(), are counted apart and left out of the
+ * render histogram, which would otherwise fill up with zeros while the
+ * keyboard is not played.
+ *
+ * The events dropped because the queue was full are counted by the Java
+ * thread, in LibraryContext.droppedEvents.
+ */
+enum {
+  STAT_CALLBACKS,
+  STAT_UNDERRUNS,
+  STAT_LATE_CALLBACKS,
+  STAT_MAX_CALLBACK_NANOS,
+  STAT_PERIOD_NANOS,
+  STAT_RENDER_P50_NANOS,
+  STAT_RENDER_P95_NANOS,
+  STAT_RENDER_P99_NANOS,
+  STAT_RENDER_MAX_NANOS,
+  STAT_VOICES,
+  STAT_STOLEN_VOICES,
+  STAT_POLYPHONY,
+  STAT_IDLE_CALLBACKS,
+  STAT_DROPPED_EVENTS,
+  STATS_SIZE
+};
+
+/* song states, matching the MIDISynth.SONG_* constants */
+enum { SONG_STOPPED, SONG_PLAYING, SONG_PAUSED };
+
+/*
+ * Adaptive polyphony: a callback whose synthesis takes more than
+ * LOAD_HIGH_PERCENT of its period cuts the voice limit to three quarters of
+ * the voices sounding, and EAS mutes the lowest priority ones at once
+ * (usually the released notes held by the sustain pedal), so a dense chord
+ * loses its quietest notes instead of the whole callback. After
+ * LOAD_RECOVER_CALLBACKS callbacks in a row below LOAD_LOW_PERCENT the limit
+ * grows back by one voice.
+ */
+#define LOAD_HIGH_PERCENT 70
+#define LOAD_LOW_PERCENT 40
+#define LOAD_RECOVER_CALLBACKS 16
+#define MIN_POLYPHONY 8
+// workload of starting a note in eas_voicemgt.c
+#define WORKLOAD_PER_VOICE 10
+
+#define RENDER_BUCKETS 64
+
+/*
+ * Idle detection: once the voices of both streams have ended and the reverb
+ * and chorus tails have stayed below IDLE_LEVEL (RMS, out of 32767) for
+ * IDLE_QUIET_MILLIS, process() stops calling EAS_Render and writes silence
+ * until the next event arrives, which is rendered by that same callback.
+ * The feedback of the EAS reverb never decays to zero but settles around
+ * 50 dB below full scale, so the tail is also cut after IDLE_TAIL_MILLIS.
+ * The stream keeps running: restarting it would delay the next note.
+ */
+#define IDLE_LEVEL 32
+#define IDLE_QUIET_MILLIS 500
+#define IDLE_TAIL_MILLIS 3000
+
+struct StreamStats {
+  int64_t values[STATS_SIZE];
+  int64_t lastCallback; /* audio thread only, zero after (re)start */
+  uint32_t renderHistogram[RENDER_BUCKETS];
+};
+
 struct LibraryContext {
   int sampleRate, bufferSize, channels;
+  int outputBuffers;
   EAS_DATA_HANDLE easData;
   EAS_HANDLE easHandle;
+  // exactly one of the output streams is open
   OPENSL_STREAM *os;
+  AAUDIO_STREAM *as;
+  // converts to the device rate, NULL when the stream runs at the EAS rate
+  RESAMPLER *resampler;
+  struct EventQueue queue;
+  struct StreamStats stats;
+  int64_t droppedEvents; /* written only by Java */
+  // keyboard channel map, producer side only
+  struct ChannelZone zones[MAX_ZONES];
+  int numZones;
+  // state of the current callback, audio thread only
+  int64_t windowStart;
+  int64_t renderNanos;
+  int renderedFrames;
+  // adaptive polyphony, audio thread only while the stream runs
+  int maxPolyphony, polyphony;
+  int quietCallbacks;
+  // idle detection, audio thread only
+  int idle;
+  int tailFrames, quietFrames;
+  // sound bank changes, see setSoundBank()
+  EAS_DLSLIB_HANDLE bank;
+  struct RetiredBank *oldBanks; /* Java only, oldest first */
+  unsigned int bankRequests; /* written only by Java */
+  unsigned int bankChanges;  /* written only by the audio thread */
+  unsigned int bankPending;  /* audio thread only, zero if none */
+  // MIDI file playback, see playSong()
+  struct Song *song;
+  struct Song *oldSongs;     /* Java only, oldest first */
+  unsigned int songRequests; /* written only by Java */
+  unsigned int songChanges;  /* written only by the audio thread */
+  EAS_HANDLE songHandle;     /* opened and closed by Java while the stream is paused */
+  unsigned int songClosing;  /* fade out requested, zero if none; see updateSong() */
+  int songState;             /* SONG_*, written only by the audio thread */
+  int songPosition;          /* milliseconds, written only by the audio thread */
 };
 
+static unsigned int queueSpace(struct EventQueue *q)
+{
+  unsigned int tail = __atomic_load_n(&q->tail, __ATOMIC_ACQUIRE);
+  return EVENT_QUEUE_SIZE - (q->head - tail);
+}
+
+// Producer side: reserves the next free slot, or NULL if the ring is full
+static struct SynthEvent *queueBack(struct EventQueue *q)
+{
+  if (queueSpace(q) == 0) {
+    return NULL;
+  }
+  return &q->events[q->head & EVENT_QUEUE_MASK];
+}
+
+// Producer side: publishes the slot returned by queueBack()
+static void queuePush(struct EventQueue *q)
+{
+  __atomic_store_n(&q->head, q->head + 1, __ATOMIC_RELEASE);
+}
+
+// Producer side: the n-th free slot from queueBack(); the caller checks
+// queueSpace() first
+static struct SynthEvent *queueBackAt(struct EventQueue *q, unsigned int n)
+{
+  return &q->events[(q->head + n) & EVENT_QUEUE_MASK];
+}
+
+// Producer side: publishes the first n slots from queueBack() together
+static void queuePushAll(struct EventQueue *q, unsigned int n)
+{
+  __atomic_store_n(&q->head, q->head + n, __ATOMIC_RELEASE);
+}
+
+// Consumer side: oldest pending event, or NULL if the ring is empty
+static struct SynthEvent *queueFront(struct EventQueue *q)
+{
+  unsigned int head = __atomic_load_n(&q->head, __ATOMIC_ACQUIRE);
+  if (q->tail == head) {
+    return NULL;
+  }
+  return &q->events[q->tail & EVENT_QUEUE_MASK];
+}
+
+// Consumer side: releases the slot returned by queueFront()
+static void queuePop(struct EventQueue *q)
+{
+  __atomic_store_n(&q->tail, q->tail + 1, __ATOMIC_RELEASE);
+}
+
+/* Output back ends, matching MIDISynth.OUTPUT_* constants */
+#define OUTPUT_OPENSL 0
+#define OUTPUT_AAUDIO 1
+
+static int streamIsRunning(struct LibraryContext *lc)
+{
+  if (lc->as != NULL) {
+    return aaudio_is_running(lc->as);
+  }
+  return lc->os != NULL && opensl_is_running(lc->os);
+}
+
+static int streamStart(struct LibraryContext *lc)
+{
+  if (lc->as != NULL) {
+    return aaudio_start(lc->as);
+  }
+  return opensl_start(lc->os);
+}
+
+static void streamPause(struct LibraryContext *lc)
+{
+  if (lc->as != NULL) {
+    aaudio_pause(lc->as);
+  } else {
+    opensl_pause(lc->os);
+  }
+}
+
+static void streamClose(struct LibraryContext *lc)
+{
+  if (lc->as != NULL) {
+    aaudio_close(lc->as);
+    lc->as = NULL;
+  }
+  if (lc->os != NULL) {
+    opensl_close(lc->os);
+    lc->os = NULL;
+  }
+}
+
+// The Java side keeps the context pointer in a long field
+static inline struct LibraryContext *contextFromHandle(jlong ctx)
+{
+  return (struct LibraryContext *) (intptr_t) ctx;
+}
+
+static int isReady(struct LibraryContext *lc)
+{
+  return lc != NULL &&
+    lc->easData != NULL &&
+    lc->easHandle != NULL &&
+    streamIsRunning(lc) != 0;
+}
+
+// Producer side: counts an event lost to a full queue
+static EAS_RESULT dropEvent(struct LibraryContext *lc)
+{
+  __atomic_store_n(&lc->droppedEvents, lc->droppedEvents + 1, __ATOMIC_RELAXED);
+  return EAS_BUFFER_FULL;
+}
+
+static EAS_RESULT postMidi(struct LibraryContext *lc, const EAS_U8 *buffer, EAS_I32 count, int64_t timestamp)
+{
+  struct SynthEvent *ev;
+  EAS_I32 n;
+  // a message split in several events must be queued completely or not at all
+  if (queueSpace(&lc->queue) * MIDI_EVENT_BYTES < (unsigned int) count) {
+    return dropEvent(lc);
+  }
+  while (count > 0) {
+    ev = queueBack(&lc->queue);
+    n = count > MIDI_EVENT_BYTES ? MIDI_EVENT_BYTES : count;
+    ev->timestamp = timestamp;
+    ev->type = EVENT_MIDI;
+    ev->length = n;
+    memcpy(ev->data, buffer, n);
+    queuePush(&lc->queue);
+    buffer += n;
+    count -= n;
+  }
+  return EAS_SUCCESS;
+}
+
+// The note of every zone containing the key, published to the audio thread
+// by a single store, so the zones always start in the same block
+static EAS_RESULT postKey(struct LibraryContext *lc, int status, int key, int velocity, int64_t timestamp)
+{
+  const struct ChannelZone *zone;
+  struct SynthEvent *ev;
+  unsigned int count = 0;
+  int i, note;
+  if (queueSpace(&lc->queue) < (unsigned int) lc->numZones) {
+    return dropEvent(lc);
+  }
+  for (i = 0; i < lc->numZones; i++) {
+    zone = &lc->zones[i];
+    note = key + zone->transpose;
+    if (key < zone->low || key > zone->high || note < 0 || note > 127) {
+      continue;
+    }
+    ev = queueBackAt(&lc->queue, count++);
+    ev->timestamp = timestamp;
+    ev->type = EVENT_MIDI;
+    ev->length = 3;
+    ev->data[0] = (EAS_U8) ((status & 0xf0) | zone->channel);
+    ev->data[1] = (EAS_U8) note;
+    ev->data[2] = (EAS_U8) velocity;
+  }
+  queuePushAll(&lc->queue, count);
+  return EAS_SUCCESS;
+}
+
+// Applied at once while the stream is stopped, as nothing reads the queue
+static EAS_RESULT postParam(struct LibraryContext *lc, EAS_I32 module, EAS_I32 param, EAS_I32 value)
+{
+  struct SynthEvent *ev;
+  if (!streamIsRunning(lc)) {
+    return EAS_SetParameter(lc->easData, module, param, value);
+  }
+  ev = queueBack(&lc->queue);
+  if (ev == NULL) {
+    return dropEvent(lc);
+  }
+  ev->timestamp = 0;
+  ev->type = EVENT_PARAM;
+  ev->module = module;
+  ev->param = param;
+  ev->value = value;
+  queuePush(&lc->queue);
+  return EAS_SUCCESS;
+}
+
+static int songReadAt(void *handle, void *buf, int offset, int size)
+{
+  struct Song *song = (struct Song *) handle;
+  if (offset < 0 || offset >= song->size || size <= 0) {
+    return 0;
+  }
+  if (size > song->size - offset) {
+    size = song->size - offset;
+  }
+  memcpy(buf, song->data + offset, size);
+  return size;
+}
+
+static int songSize(void *handle)
+{
+  return ((struct Song *) handle)->size;
+}
+
+static void freeSong(struct Song *song)
+{
+  if (song != NULL) {
+    free(song->data);
+    free(song);
+  }
+}
+
+/*
+ * The song stream has its own virtual synth, sharing the voices of the live
+ * one. Opening it allocates the parser and the synth and parses the file,
+ * and closing it frees them, so these run on the Java thread while the
+ * stream is paused, never on the audio thread; see changeSong().
+ */
+static void closeSongStream(struct LibraryContext *lc)
+{
+  if (lc->songHandle != NULL) {
+    if (EAS_CloseFile(lc->easData, lc->songHandle) != EAS_SUCCESS) {
+      //LOGW("EAS_CloseFile error");
+    }
+    lc->songHandle = NULL;
+  }
+  lc->songClosing = 0;
+}
+
+static void openSongStream(struct LibraryContext *lc, struct Song *song, EAS_DLSLIB_HANDLE bank)
+{
+  closeSongStream(lc);
+  if (song == NULL) {
+    return;
+  }
+  if (EAS_OpenFile(lc->easData, &song->locator, &lc->songHandle) != EAS_SUCCESS) {
+    //LOGW("EAS_OpenFile error");
+    lc->songHandle = NULL;
+    return;
+  }
+  // the synth of the file only exists after EAS_Prepare
+  if (EAS_Prepare(lc->easData, lc->songHandle) != EAS_SUCCESS) {
+    //LOGW("EAS_Prepare error");
+    closeSongStream(lc);
+    return;
+  }
+  // the song plays the same instruments as the keyboard
+  if (bank != NULL && EAS_SetDLSCollection(lc->easData, lc->songHandle, bank) != EAS_SUCCESS) {
+    //LOGW("EAS_SetDLSCollection error");
+  }
+}
+
+static void songAction(struct LibraryContext *lc, int action, EAS_I32 value)
+{
+  if (lc->songHandle == NULL || lc->songClosing != 0) {
+    return;
+  }
+  switch (action) {
+  case SONG_PAUSE:
+    EAS_Pause(lc->easData, lc->songHandle);
+    break;
+  case SONG_RESUME:
+    EAS_Resume(lc->easData, lc->songHandle);
+    break;
+  case SONG_VOLUME:
+    EAS_SetVolume(lc->easData, lc->songHandle, value);
+    break;
+  }
+}
+
+// Whether a stopped song is still fading out; on the audio thread, or on the
+// Java thread while the stream is paused
+static int songFading(struct LibraryContext *lc)
+{
+  return lc->songClosing != 0 && __atomic_load_n(&lc->songChanges, __ATOMIC_RELAXED) != lc->songClosing;
+}
+
+// Publishes the state of the song; on the audio thread after each block. A
+// stopped song is done once its notes have faded out, and its silent stream
+// stays open until the Java thread closes it, see finishSongChange()
+static void updateSong(struct LibraryContext *lc)
+{
+  EAS_STATE state = EAS_STATE_EMPTY;
+  EAS_I32 position = 0;
+  int songState = SONG_STOPPED;
+
+  if (lc->songHandle != NULL &&
+      EAS_State(lc->easData, lc->songHandle, &state) != EAS_SUCCESS) {
+    state = EAS_STATE_ERROR;
+  }
+  if (songFading(lc) && state != EAS_STATE_PAUSING && state != EAS_STATE_STOPPING) {
+    __atomic_store_n(&lc->songChanges, lc->songClosing, __ATOMIC_RELEASE);
+  }
+  if (lc->songHandle != NULL && lc->songClosing == 0) {
+    if (state == EAS_STATE_READY || state == EAS_STATE_PLAY) {
+      songState = SONG_PLAYING;
+    } else if (state == EAS_STATE_PAUSING || state == EAS_STATE_PAUSED) {
+      songState = SONG_PAUSED;
+    }
+    EAS_GetLocation(lc->easData, lc->songHandle, &position);
+  }
+  __atomic_store_n(&lc->songState, songState, __ATOMIC_RELAXED);
+  __atomic_store_n(&lc->songPosition, (int) position, __ATOMIC_RELAXED);
+}
+
+// Runs on the audio thread
+static void dispatchEvent(struct LibraryContext *lc, const struct SynthEvent *ev)
+{
+  EAS_RESULT eas_res;
+  switch (ev->type) {
+  case EVENT_MIDI:
+    eas_res = EAS_WriteMIDIStream(lc->easData, lc->easHandle, (EAS_U8 *) ev->data, ev->length);
+    if (eas_res != EAS_SUCCESS) {
+      //LOGW("EAS_WriteMIDIStream error: %ld", eas_res);
+    }
+    break;
+  case EVENT_PARAM:
+    eas_res = EAS_SetParameter(lc->easData, ev->module, ev->param, ev->value);
+    if (eas_res != EAS_SUCCESS) {
+      //LOGW("EAS_SetParameter error: %ld", eas_res);
+    }
+    break;
+  case EVENT_BANK:
+    eas_res = EAS_ChangeDLSCollection(lc->easData, lc->easHandle, ev->bank);
+    if (eas_res != EAS_SUCCESS) {
+      //LOGW("EAS_ChangeDLSCollection error: %ld", eas_res);
+    }
+    if (lc->songHandle != NULL) {
+      EAS_ChangeDLSCollection(lc->easData, lc->songHandle, ev->bank);
+    }
+    lc->bankPending = (unsigned int) ev->value;
+    break;
+  case EVENT_SONG:
+    if (ev->param == SONG_CLOSE) {
+      if (lc->songHandle == NULL) {
+        __atomic_store_n(&lc->songChanges, (unsigned int) ev->value, __ATOMIC_RELEASE);
+      } else {
+        // closing a playing file would cut its notes: they fade out first,
+        // and updateSong() completes the change
+        EAS_Pause(lc->easData, lc->songHandle);
+        lc->songClosing = (unsigned int) ev->value;
+      }
+    } else {
+      songAction(lc, ev->param, ev->value);
+    }
+    break;
+  }
+}
+
+// Runs on the audio thread after each block: EAS completes a bank change
+// once the voices of the previous bank have faded out
+static void checkBankChange(struct LibraryContext *lc)
+{
+  EAS_BOOL pending = EAS_FALSE, songPending = EAS_FALSE;
+  if (lc->bankPending != 0 && lc->songHandle != NULL &&
+      EAS_GetDLSChangePending(lc->easData, lc->songHandle, &songPending) != EAS_SUCCESS) {
+    songPending = EAS_FALSE;
+  }
+  if (lc->bankPending != 0 && !songPending &&
+      (EAS_GetDLSChangePending(lc->easData, lc->easHandle, &pending) != EAS_SUCCESS || !pending)) {
+    __atomic_store_n(&lc->bankChanges, lc->bankPending, __ATOMIC_RELEASE);
+    lc->bankPending = 0;
+  }
+}
+
+/*
+ * The context keeps its own references to the bank given to the synth and
+ * to the ones it replaced, which the synth may still be fading out. EAS
+ * drops its references to those from the audio thread, so this keeps the
+ * memory from being freed there: each replaced bank is freed here once the
+ * change that replaced it is done, on a later change or when the stream
+ * stops. A change requested while the previous one is still fading out
+ * simply replaces it (see VMChangeDLSLib), so the Java thread never waits.
+ */
+static int bankChangeDone(struct LibraryContext *lc)
+{
+  return __atomic_load_n(&lc->bankChanges, __ATOMIC_ACQUIRE) == lc->bankRequests;
+}
+
+// Whether the given change, or a later one, is done; the audio thread
+// completes them in order, skipping the ones replaced while fading out
+static int bankChangeReached(struct LibraryContext *lc, unsigned int request)
+{
+  return (int) (__atomic_load_n(&lc->bankChanges, __ATOMIC_ACQUIRE) - request) >= 0;
+}
+
+// Keeps the reference of the context to a bank until the given change is done
+static int retireBank(struct LibraryContext *lc, EAS_DLSLIB_HANDLE bank, unsigned int request)
+{
+  struct RetiredBank *old, **link = &lc->oldBanks;
+  if (bank == NULL) {
+    return 1;
+  }
+  old = malloc(sizeof(struct RetiredBank));
+  if (old == NULL) {
+    return 0;
+  }
+  old->bank = bank;
+  old->request = request;
+  old->next = NULL;
+  while (*link != NULL) {
+    link = &(*link)->next;
+  }
+  *link = old;
+  return 1;
+}
+
+// Frees the replaced banks that the synth no longer uses, or all of them
+static void releaseOldBanks(struct LibraryContext *lc, int all)
+{
+  struct RetiredBank *old;
+  while ((old = lc->oldBanks) != NULL && (all || bankChangeReached(lc, old->request))) {
+    lc->oldBanks = old->next;
+    EAS_FreeDLSCollection(old->bank);
+    free(old);
+  }
+}
+
+// Completes any bank change at once; only safe while the stream is stopped
+static void finishBankChange(struct LibraryContext *lc)
+{
+  if (!bankChangeDone(lc)) {
+    if (EAS_SetDLSCollection(lc->easData, lc->easHandle, lc->bank) != EAS_SUCCESS) {
+      //LOGW("EAS_SetDLSCollection error");
+    }
+    lc->bankPending = 0;
+    __atomic_store_n(&lc->bankChanges, lc->bankRequests, __ATOMIC_RELEASE);
+  }
+  releaseOldBanks(lc, 0);
+}
+
+/*
+ * A stopped song fades out on the audio thread, so its stream and its file
+ * stay in use after stopSong() returns. The context keeps those songs here
+ * until the Java thread closes the stream, the next time the output is
+ * paused, and frees them right after.
+ */
+// Keeps a song in memory until its stream is closed
+static void retireSong(struct LibraryContext *lc, struct Song *song)
+{
+  struct Song **link = &lc->oldSongs;
+  if (song == NULL) {
+    return;
+  }
+  song->next = NULL;
+  while (*link != NULL) {
+    link = &(*link)->next;
+  }
+  *link = song;
+}
+
+// Frees the stopped songs; their stream must be closed
+static void releaseOldSongs(struct LibraryContext *lc)
+{
+  struct Song *old;
+  while ((old = lc->oldSongs) != NULL) {
+    lc->oldSongs = old->next;
+    freeSong(old);
+  }
+}
+
+// Closes a stopped song, even if it is still fading out, and completes the
+// song changes; only safe while the stream is paused
+static void finishSongChange(struct LibraryContext *lc)
+{
+  if (lc->song == NULL) {
+    closeSongStream(lc);
+  }
+  __atomic_store_n(&lc->songChanges, lc->songRequests, __ATOMIC_RELEASE);
+  releaseOldSongs(lc);
+  updateSong(lc);
+}
+
+static int64_t monotonicNanos(void)
+{
+  struct timespec t;
+  clock_gettime(CLOCK_MONOTONIC, &t);
+  return (int64_t) t.tv_sec * 1000000000LL + t.tv_nsec;
+}
+
+// Runs on the audio thread: dispatches the pending events due before the
+// given frame of the current buffer, whose first frame is windowStart
+static void dispatchEvents(struct LibraryContext *lc, int64_t windowStart,
+					int sample_rate, int frameLimit)
+{
+  struct SynthEvent *ev;
+  while ((ev = queueFront(&lc->queue)) != NULL) {
+    if (ev->timestamp != 0 &&
+        (ev->timestamp - windowStart) * sample_rate / 1000000000LL >= frameLimit) {
+      break;
+    }
+    dispatchEvent(lc, ev);
+    queuePop(&lc->queue);
+  }
+}
+
+// Dispatches every pending event at once, whatever its timestamp; only safe
+// while the audio stream is stopped
+static void queueDrain(struct LibraryContext *lc)
+{
+  struct SynthEvent *ev;
+  while ((ev = queueFront(&lc->queue)) != NULL) {
+    dispatchEvent(lc, ev);
+    queuePop(&lc->queue);
+  }
+}
+
+static void statAdd(struct StreamStats *s, int index, int64_t value)
+{
+  __atomic_store_n(&s->values[index], s->values[index] + value, __ATOMIC_RELAXED);
+}
+
+static void statMax(struct StreamStats *s, int index, int64_t value)
+{
+  if (value > s->values[index]) {
+    __atomic_store_n(&s->values[index], value, __ATOMIC_RELAXED);
+  }
+}
+
+static int renderBucket(int64_t nanos)
+{
+  uint32_t micros = nanos < 0 ? 0 : nanos / 1000 > UINT32_MAX ? UINT32_MAX : (uint32_t) (nanos / 1000);
+  int msb, bucket;
+  if (micros < 4) {
+    return micros;
+  }
+  msb = 31 - __builtin_clz(micros);
+  bucket = 4 * (msb - 1) + ((micros >> (msb - 2)) & 3);
+  return bucket < RENDER_BUCKETS ? bucket : RENDER_BUCKETS - 1;
+}
+
+// Smallest duration of the next bucket, i.e. the upper bound of this one
+static int64_t renderBucketLimit(int bucket)
+{
+  bucket++;
+  if (bucket < 4) {
+    return bucket * 1000LL;
+  }
+  return ((int64_t) (4 + bucket % 4) << (bucket / 4 - 1)) * 1000LL;
+}
+
+// Runs on the audio thread once per callback
+static void updateStats(struct LibraryContext *lc, int64_t start, int64_t end,
+					int64_t period, int64_t render, int idle)
+{
+  struct StreamStats *s = &lc->stats;
+  int64_t duration = end - start;
+  int bucket = renderBucket(render);
+  statAdd(s, STAT_CALLBACKS, 1);
+  if (duration > period) {
+    statAdd(s, STAT_LATE_CALLBACKS, 1);
+  }
+  statMax(s, STAT_MAX_CALLBACK_NANOS, duration);
+  __atomic_store_n(&s->values[STAT_PERIOD_NANOS], period, __ATOMIC_RELAXED);
+  if (idle) {
+    statAdd(s, STAT_IDLE_CALLBACKS, 1);
+  } else {
+    statMax(s, STAT_RENDER_MAX_NANOS, render);
+    __atomic_store_n(&s->renderHistogram[bucket], s->renderHistogram[bucket] + 1, __ATOMIC_RELAXED);
+  }
+  if (lc->os != NULL && s->lastCallback != 0 &&
+      start - s->lastCallback > period * lc->outputBuffers) {
+    statAdd(s, STAT_UNDERRUNS, 1);
+  }
+  s->lastCallback = start;
+}
+
+// Applies a new voice limit; the MIDI file parsers also stop starting notes
+// in a frame once its workload would need more voices than that
+static void setPolyphony(struct LibraryContext *lc, int polyphony)
+{
+  lc->polyphony = polyphony;
+  EAS_SetPolyphony(lc->easData, lc->easHandle, polyphony);
+  EAS_SetMaxLoad(lc->easData, polyphony < lc->maxPolyphony ? polyphony * WORKLOAD_PER_VOICE : 0);
+}
+
+// Runs on the audio thread once per callback, see LOAD_HIGH_PERCENT
+static void adaptPolyphony(struct LibraryContext *lc, int64_t period, int64_t render)
+{
+  struct StreamStats *s = &lc->stats;
+  EAS_I32 voices = 0, steals = 0;
+  int polyphony = lc->polyphony;
+
+  EAS_GetVoiceCount(lc->easData, lc->easHandle, &voices);
+  EAS_GetStealCount(lc->easData, lc->easHandle, &steals);
+  if (render * 100 > period * LOAD_HIGH_PERCENT) {
+    lc->quietCallbacks = 0;
+    // a slow callback with few voices is not their fault
+    if (voices > MIN_POLYPHONY) {
+      if (voices < polyphony) {
+        polyphony = voices;
+      }
+      polyphony -= polyphony / 4;
+      if (polyphony < MIN_POLYPHONY) {
+        polyphony = MIN_POLYPHONY;
+      }
+    }
+  } else if (render * 100 < period * LOAD_LOW_PERCENT) {
+    if (++lc->quietCallbacks >= LOAD_RECOVER_CALLBACKS) {
+      lc->quietCallbacks = 0;
+      if (polyphony < lc->maxPolyphony) {
+        polyphony++;
+      }
+    }
+  } else {
+    lc->quietCallbacks = 0;
+  }
+  if (polyphony != lc->polyphony) {
+    setPolyphony(lc, polyphony);
+  }
+  __atomic_store_n(&s->values[STAT_VOICES], voices, __ATOMIC_RELAXED);
+  __atomic_store_n(&s->values[STAT_STOLEN_VOICES], steals, __ATOMIC_RELAXED);
+  __atomic_store_n(&s->values[STAT_POLYPHONY], polyphony, __ATOMIC_RELAXED);
+}
+
+// Runs on the audio thread after each block, see IDLE_LEVEL
+static void checkIdle(struct LibraryContext *lc, const short *buffer, int frames)
+{
+  EAS_I32 voices = 0, songVoices = 0;
+  int64_t energy = 0;
+  int samples = frames * lc->channels;
+  int tailLimit = (int) ((int64_t) IDLE_TAIL_MILLIS * lc->sampleRate / 1000);
+  int quietLimit = (int) ((int64_t) IDLE_QUIET_MILLIS * lc->sampleRate / 1000);
+  int i;
+
+  EAS_GetVoiceCount(lc->easData, lc->easHandle, &voices);
+  if (lc->songHandle != NULL) {
+    EAS_GetVoiceCount(lc->easData, lc->songHandle, &songVoices);
+  }
+  // a playing file may be between two notes
+  if (voices > 0 || songVoices > 0 || lc->songState == SONG_PLAYING ||
+      songFading(lc) || lc->bankPending != 0) {
+    lc->idle = 0;
+    lc->tailFrames = 0;
+    lc->quietFrames = 0;
+    return;
+  }
+  for (i = 0; i < samples; i++) {
+    energy += buffer[i] * buffer[i];
+  }
+  if (energy < (int64_t) IDLE_LEVEL * IDLE_LEVEL * samples) {
+    lc->quietFrames += frames;
+  } else {
+    lc->quietFrames = 0;
+  }
+  if (lc->tailFrames < tailLimit) {
+    lc->tailFrames += frames;
+  }
+  lc->idle = lc->tailFrames >= tailLimit || lc->quietFrames >= quietLimit;
+}
+
+// Renders one EAS block after dispatching the events due before its end;
+// also the input callback of the resampler
+static void renderBlock(void *context, short *buffer, int frames)
+{
+    EAS_RESULT eas_res;
+    EAS_I32 numGen;
+    int64_t renderStart;
+	struct LibraryContext *lc = (struct LibraryContext *) context;
+	lc->renderedFrames += frames;
+	dispatchEvents(lc, lc->windowStart, lc->sampleRate, lc->renderedFrames);
+	renderStart = monotonicNanos();
+	eas_res = EAS_Render(lc->easData, (EAS_PCM *) buffer, frames, &numGen);
+	lc->renderNanos += monotonicNanos() - renderStart;
+	if (eas_res != EAS_SUCCESS) {
+		//LOGW("EAS_Render error: %ld", eas_res);
+	}
+	checkBankChange(lc);
+	updateSong(lc);
+	checkIdle(lc, buffer, frames);
+}
+
 // Audio processing callback
 static void process(void *context, int sample_rate, int buffer_frames,
 					int input_channels, const short *input_buffer,
 					int output_channels, short *output_buffer)
 {
-    EAS_RESULT eas_res;
-    EAS_I32 numGen;
-    EAS_PCM *buffer;
+    int64_t start, period;
+    int offset, idle;
 	struct LibraryContext *lc = (struct LibraryContext *) context;
     if (lc != NULL && lc->easData != NULL)
     {
-		buffer = (EAS_PCM *) output_buffer;
-		eas_res = EAS_Render(lc->easData, buffer, lc->bufferSize, &numGen);
-		if (eas_res != EAS_SUCCESS) {
-			//LOGW("EAS_Render error: %ld", eas_res);
+		start = monotonicNanos();
+		period = (int64_t) buffer_frames * 1000000000LL / sample_rate;
+		lc->windowStart = start - period;
+		lc->renderNanos = 0;
+		lc->renderedFrames = 0;
+		// any pending event wakes the synth up, see IDLE_LEVEL
+		idle = lc->idle && queueFront(&lc->queue) == NULL;
+		if (idle) {
+			memset(output_buffer, 0, (size_t) buffer_frames * output_channels * sizeof(short));
+		} else if (lc->resampler != NULL) {
+			// the resampler pulls as many EAS blocks as it needs
+			resampler_read(lc->resampler, output_buffer, buffer_frames);
+		} else {
+			// EAS renders fixed size blocks: split the buffer at block boundaries
+			for (offset = 0; offset + lc->bufferSize <= buffer_frames; offset += lc->bufferSize) {
+				renderBlock(lc, output_buffer + offset * output_channels, lc->bufferSize);
+			}
 		}
+		updateStats(lc, start, monotonicNanos(), period, lc->renderNanos, idle);
+		adaptPolyphony(lc, period, lc->renderNanos);
     }
 }
 
-JNIEXPORT jobject JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_open(JNIEnv *env, jclass clazz)
+JNIEXPORT jlong JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_open(JNIEnv *env, jclass clazz, jint output, jint buffers, jint blocks, jint rate)
 {
   EAS_RESULT eas_res;
   EAS_DATA_HANDLE dataHandle;
   EAS_HANDLE handle;
   int bufferFrames = 0;
+  int streamRate;
 
   const S_EAS_LIB_CONFIG *easConfig = EAS_Config();
   if (easConfig == NULL) {
 	  //LOGW("EAS_Config returns null");
-	  return NULL;
+	  return 0;
   }
 
   eas_res = EAS_Init(&dataHandle);
   if (eas_res != EAS_SUCCESS) {
 	//LOGW("EAS_Init error: %ld", eas_res);
-	return NULL;
+	return 0;
   }
 
   eas_res = EAS_OpenMIDIStream(dataHandle, &handle, NULL);
   if (eas_res != EAS_SUCCESS) {
 	//LOGW("EAS_OpenMIDIStream error: %ld", eas_res);
 	EAS_Shutdown(dataHandle);
-	return NULL;
+	return 0;
   }
 
-  struct LibraryContext *lc = malloc(sizeof(struct LibraryContext));
+  // each callback renders a burst of whole EAS blocks
+  bufferFrames = easConfig->mixBufferSize * (blocks > 0 ? blocks : 1);
+
+  struct LibraryContext *lc = calloc(1, sizeof(struct LibraryContext));
   if (lc) {
-    lc->os = opensl_open(easConfig->sampleRate, 0, easConfig->numChannels, easConfig->mixBufferSize, process, lc);
-    if (!lc->os) {
-      //LOGW("opensl_open returns null");
+    streamRate = easConfig->sampleRate;
+    if (rate > 0 && rate != easConfig->sampleRate) {
+      // running at the device rate keeps the stream off the system resampler
+      lc->resampler = resampler_open(easConfig->sampleRate, rate, easConfig->numChannels,
+                                     easConfig->mixBufferSize, renderBlock, lc);
+      if (lc->resampler) {
+        streamRate = rate;
+        bufferFrames = (int) (((int64_t) bufferFrames * rate + easConfig->sampleRate - 1) / easConfig->sampleRate);
+      }
+    }
+    if (output == OUTPUT_AAUDIO) {
+      lc->as = aaudio_open(streamRate, easConfig->numChannels, bufferFrames, buffers, process, lc);
+    }
+    if (!lc->as) {
+      // OpenSL ES is always available as a fallback
+      lc->os = opensl_open(streamRate, 0, easConfig->numChannels, bufferFrames, buffers, process, lc);
+    }
+    if (!lc->as && !lc->os) {
+      //LOGW("unable to open an audio stream");
+      if (lc->resampler) {
+        resampler_close(lc->resampler);
+      }
       free(lc);
       lc = NULL;
       EAS_Shutdown(dataHandle);
-      return NULL;
+      return 0;
     }
     lc->easData = dataHandle;
     lc->easHandle = handle;
     lc->sampleRate = easConfig->sampleRate;
     lc->bufferSize = easConfig->mixBufferSize;
     lc->channels = easConfig->numChannels;
+    lc->outputBuffers = buffers > 2 ? buffers : 2;
+    lc->maxPolyphony = easConfig->maxVoices;
+    lc->polyphony = lc->maxPolyphony;
+    lc->stats.values[STAT_POLYPHONY] = lc->polyphony;
     //LOGI("EAS bufferSize=%d, sampleRate=%d, channels=%d", lc->bufferSize, lc->sampleRate, lc->channels);
   }
-  return (*env)->NewDirectByteBuffer(env, (void *) lc, sizeof(struct LibraryContext));
+  return (jlong) (intptr_t) lc;
 }
 
-JNIEXPORT void JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_close(JNIEnv *env, jclass clazz, jobject ctx)
+JNIEXPORT void JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_close(JNIEnv *env, jclass clazz, jlong ctx)
 {
-  struct LibraryContext *lc = (struct LibraryContext *) (*env)->GetDirectBufferAddress(env, ctx);
+  struct LibraryContext *lc = contextFromHandle(ctx);
   EAS_RESULT eas_res;
 
+  // the audio callback must be gone before the synth is shut down
+  streamClose(lc);
+  if (lc->resampler != NULL) {
+    resampler_close(lc->resampler);
+  }
+  closeSongStream(lc);
+  releaseOldSongs(lc);
+  freeSong(lc->song);
+
   if (lc->easData != NULL && lc->easHandle != NULL) {
 	eas_res = EAS_CloseMIDIStream(lc->easData, lc->easHandle);
 	if (eas_res != EAS_SUCCESS) {
@@ -117,107 +1039,628 @@ JNIEXPORT void JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_close(JNIEnv *env,
 		//LOGW("EAS_Shutdown error: %ld", eas_res);
 	}
   }
+  releaseOldBanks(lc, 1);
+  EAS_FreeDLSCollection(lc->bank);
 
-  opensl_close(lc->os);
   free(lc);
 }
 
-JNIEXPORT jint JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_start(JNIEnv *env, jclass clazz, jobject ctx)
+// Stops the callbacks; the events the last one left behind are not lost
+static void pauseStream(struct LibraryContext *lc)
 {
-  struct LibraryContext *lc = (struct LibraryContext *) (*env)->GetDirectBufferAddress(env, ctx);
-  return opensl_start(lc->os);
+  streamPause(lc);
+  queueDrain(lc);
+}
+
+static int resumeStream(struct LibraryContext *lc)
+{
+  queueDrain(lc);
+  // the pause is not an underrun
+  lc->stats.lastCallback = 0;
+  lc->quietCallbacks = 0;
+  if (lc->resampler != NULL) {
+    resampler_reset(lc->resampler);
+  }
+  return streamStart(lc);
 }
 
-JNIEXPORT void JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_stop(JNIEnv *env, jclass clazz, jobject ctx)
+JNIEXPORT jint JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_start(JNIEnv *env, jclass clazz, jlong ctx)
 {
-  struct LibraryContext *lc = (struct LibraryContext *) (*env)->GetDirectBufferAddress(env, ctx);
-  opensl_pause(lc->os);
+  struct LibraryContext *lc = contextFromHandle(ctx);
+  if (streamIsRunning(lc)) {
+    return streamStart(lc);
+  }
+  return resumeStream(lc);
 }
 
-JNIEXPORT jboolean JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_isRunning(JNIEnv *env, jclass clazz, jobject ctx)
+JNIEXPORT void JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_stop(JNIEnv *env, jclass clazz, jlong ctx)
 {
-  struct LibraryContext *lc = (struct LibraryContext *) (*env)->GetDirectBufferAddress(env, ctx);
-  return opensl_is_running(lc->os);
+  struct LibraryContext *lc = contextFromHandle(ctx);
+  pauseStream(lc);
+  // a change still fading out completes now
+  finishBankChange(lc);
+  finishSongChange(lc);
 }
 
-JNIEXPORT jboolean JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_write(JNIEnv *env, jclass clazz, jobject ctx, jbyteArray ba)
+JNIEXPORT jboolean JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_isRunning(JNIEnv *env, jclass clazz, jlong ctx)
+{
+  struct LibraryContext *lc = contextFromHandle(ctx);
+  return streamIsRunning(lc);
+}
+
+JNIEXPORT jboolean JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_write(JNIEnv *env, jclass clazz, jlong ctx, jbyteArray ba)
 {
     EAS_RESULT eas_res = EAS_ERROR_ALREADY_STOPPED;
     EAS_I32 count;
     EAS_U8 *buffer;
     jboolean bc;
 
-    struct LibraryContext *lc = (struct LibraryContext *) (*env)->GetDirectBufferAddress(env, ctx);
-    if (lc != NULL &&
-    	lc->easData != NULL &&
-    	lc->easHandle != NULL &&
-    	lc->os != NULL &&
-    	opensl_is_running(lc->os) != 0)
+    struct LibraryContext *lc = contextFromHandle(ctx);
+    if (isReady(lc))
     {
 		buffer = (EAS_U8 *)(*env)->GetByteArrayElements(env, ba, &bc);
 		count = (*env)->GetArrayLength(env, ba);
-		eas_res = EAS_WriteMIDIStream(lc->easData, lc->easHandle, buffer, count);
-		(*env)->ReleaseByteArrayElements(env, ba, (jbyte  *)buffer, 0);
+		eas_res = postMidi(lc, buffer, count, 0);
+		(*env)->ReleaseByteArrayElements(env, ba, (jbyte  *)buffer, JNI_ABORT);
     }
 	if (eas_res != EAS_SUCCESS) {
-		//LOGW("EAS_WriteMIDIStream error: %ld", eas_res);
+		//LOGW("postMidi error: %ld", eas_res);
 	}
 	return (eas_res == EAS_SUCCESS) ? JNI_TRUE : JNI_FALSE;
 }
 
-JNIEXPORT void JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_initReverb(JNIEnv *env, jclass clazz, jobject ctx, jint reverb_type)
+JNIEXPORT jboolean JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_writeMessage(JNIEnv *env, jclass clazz, jlong ctx, jint length, jint status, jint data1, jint data2, jlong timestamp)
+{
+    EAS_RESULT eas_res = EAS_ERROR_ALREADY_STOPPED;
+    EAS_U8 buffer[3];
+
+    struct LibraryContext *lc = contextFromHandle(ctx);
+    if (isReady(lc))
+    {
+		buffer[0] = (EAS_U8) status;
+		buffer[1] = (EAS_U8) data1;
+		buffer[2] = (EAS_U8) data2;
+		eas_res = postMidi(lc, buffer, length, timestamp);
+    }
+	if (eas_res != EAS_SUCCESS) {
+		//LOGW("postMidi error: %ld", eas_res);
+	}
+	return (eas_res == EAS_SUCCESS) ? JNI_TRUE : JNI_FALSE;
+}
+
+JNIEXPORT jboolean JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_writeBatch(JNIEnv *env, jclass clazz, jlong ctx, jobject data, jint length)
+{
+    EAS_RESULT eas_res = EAS_ERROR_ALREADY_STOPPED;
+    EAS_U8 *buffer;
+
+    struct LibraryContext *lc = contextFromHandle(ctx);
+    if (isReady(lc))
+    {
+		buffer = (EAS_U8 *)(*env)->GetDirectBufferAddress(env, data);
+		if (buffer != NULL && length > 0 && length <= (*env)->GetDirectBufferCapacity(env, data)) {
+			eas_res = postMidi(lc, buffer, length, 0);
+		} else {
+			eas_res = EAS_ERROR_INVALID_PARAMETER;
+		}
+    }
+	if (eas_res != EAS_SUCCESS) {
+		//LOGW("postMidi error: %ld", eas_res);
+	}
+	return (eas_res == EAS_SUCCESS) ? JNI_TRUE : JNI_FALSE;
+}
+
+JNIEXPORT void JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_setChannelMap(JNIEnv *env, jclass clazz, jlong ctx, jintArray zones)
+{
+  struct LibraryContext *lc = contextFromHandle(ctx);
+  jint values[MAX_ZONES * ZONE_FIELDS];
+  jsize length = zones == NULL ? 0 : (*env)->GetArrayLength(env, zones);
+  int i;
+
+  lc->numZones = 0;
+  if (length > MAX_ZONES * ZONE_FIELDS) {
+    length = MAX_ZONES * ZONE_FIELDS;
+  }
+  if (length > 0) {
+    (*env)->GetIntArrayRegion(env, zones, 0, length, values);
+  }
+  for (i = 0; i + ZONE_FIELDS <= length; i += ZONE_FIELDS) {
+    struct ChannelZone *zone = &lc->zones[lc->numZones++];
+    zone->channel = values[i + ZONE_CHANNEL] & 0x0f;
+    zone->transpose = values[i + ZONE_TRANSPOSE];
+    zone->low = values[i + ZONE_LOW];
+    zone->high = values[i + ZONE_HIGH];
+  }
+}
+
+JNIEXPORT jboolean JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_writeKey(JNIEnv *env, jclass clazz, jlong ctx, jint status, jint key, jint velocity, jlong timestamp)
+{
+    EAS_RESULT eas_res = EAS_ERROR_ALREADY_STOPPED;
+
+    struct LibraryContext *lc = contextFromHandle(ctx);
+    if (isReady(lc))
+    {
+		eas_res = postKey(lc, status, key, velocity, timestamp);
+    }
+	if (eas_res != EAS_SUCCESS) {
+		//LOGW("postKey error: %ld", eas_res);
+	}
+	return (eas_res == EAS_SUCCESS) ? JNI_TRUE : JNI_FALSE;
+}
+
+JNIEXPORT void JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_initReverb(JNIEnv *env, jclass clazz, jlong ctx, jint reverb_type)
 {
   EAS_RESULT eas_res;
   EAS_BOOL sw = EAS_TRUE;
-  struct LibraryContext *lc = (struct LibraryContext *) (*env)->GetDirectBufferAddress(env, ctx);
+  struct LibraryContext *lc = contextFromHandle(ctx);
   if ( reverb_type >= EAS_PARAM_REVERB_LARGE_HALL && reverb_type <= EAS_PARAM_REVERB_ROOM ) {
 	  sw = EAS_FALSE;
-	  eas_res = EAS_SetParameter(lc->easData, EAS_MODULE_REVERB, EAS_PARAM_REVERB_PRESET, (EAS_I32) reverb_type);
+	  eas_res = postParam(lc, EAS_MODULE_REVERB, EAS_PARAM_REVERB_PRESET, (EAS_I32) reverb_type);
 	  if (eas_res != EAS_SUCCESS) {
-		//LOGW("EAS_SetParameter error: %ld", eas_res);
+		//LOGW("postParam error: %ld", eas_res);
 	  }
   }
-  eas_res = EAS_SetParameter(lc->easData, EAS_MODULE_REVERB, EAS_PARAM_REVERB_BYPASS, sw);
+  eas_res = postParam(lc, EAS_MODULE_REVERB, EAS_PARAM_REVERB_BYPASS, sw);
   if (eas_res != EAS_SUCCESS) {
-	//LOGW("EAS_SetParameter error: %ld", eas_res);
+	//LOGW("postParam error: %ld", eas_res);
   }
 }
 
-JNIEXPORT void JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_initChorus(JNIEnv *env, jclass clazz, jobject ctx, jint chorus_type)
+JNIEXPORT void JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_initChorus(JNIEnv *env, jclass clazz, jlong ctx, jint chorus_type)
 {
   EAS_RESULT eas_res;
   EAS_BOOL sw = EAS_TRUE;
-  struct LibraryContext *lc = (struct LibraryContext *) (*env)->GetDirectBufferAddress(env, ctx);
+  struct LibraryContext *lc = contextFromHandle(ctx);
   if (chorus_type >= EAS_PARAM_CHORUS_PRESET1 && chorus_type <= EAS_PARAM_CHORUS_PRESET4 ) {
 	  sw = EAS_FALSE;
-	  eas_res = EAS_SetParameter(lc->easData, EAS_MODULE_CHORUS, EAS_PARAM_CHORUS_PRESET, (EAS_I32) chorus_type);
+	  eas_res = postParam(lc, EAS_MODULE_CHORUS, EAS_PARAM_CHORUS_PRESET, (EAS_I32) chorus_type);
 	  if (eas_res != EAS_SUCCESS) {
-		//LOGW("EAS_SetParameter error: %ld", eas_res);
+		//LOGW("postParam error: %ld", eas_res);
 	  }
   }
-  eas_res = EAS_SetParameter(lc->easData, EAS_MODULE_CHORUS, EAS_PARAM_CHORUS_BYPASS, sw);
+  eas_res = postParam(lc, EAS_MODULE_CHORUS, EAS_PARAM_CHORUS_BYPASS, sw);
   if (eas_res != EAS_SUCCESS) {
-	//LOGW("EAS_SetParameter error: %ld", eas_res);
+	//LOGW("postParam error: %ld", eas_res);
   }
 }
 
-JNIEXPORT void JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_setReverbWet(JNIEnv *env, jclass clazz, jobject ctx, jint amount)
+JNIEXPORT void JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_setReverbWet(JNIEnv *env, jclass clazz, jlong ctx, jint amount)
 {
-  struct LibraryContext *lc = (struct LibraryContext *) (*env)->GetDirectBufferAddress(env, ctx);
+  struct LibraryContext *lc = contextFromHandle(ctx);
 
-  EAS_RESULT eas_res = EAS_SetParameter(lc->easData, EAS_MODULE_REVERB, EAS_PARAM_REVERB_WET, (EAS_I32) amount);
+  EAS_RESULT eas_res = postParam(lc, EAS_MODULE_REVERB, EAS_PARAM_REVERB_WET, (EAS_I32) amount);
   if (eas_res != EAS_SUCCESS) {
-	//LOGW("EAS_SetParameter error: %ld", eas_res);
+	//LOGW("postParam error: %ld", eas_res);
   }
 }
 
-JNIEXPORT void JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_setChorusLevel(JNIEnv *env, jclass clazz, jobject ctx, jint amount)
+JNIEXPORT void JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_setChorusLevel(JNIEnv *env, jclass clazz, jlong ctx, jint amount)
 {
-  struct LibraryContext *lc = (struct LibraryContext *) (*env)->GetDirectBufferAddress(env, ctx);
+  struct LibraryContext *lc = contextFromHandle(ctx);
 
-  EAS_RESULT eas_res = EAS_SetParameter(lc->easData, EAS_MODULE_CHORUS, EAS_PARAM_CHORUS_LEVEL, (EAS_I32) amount);
+  EAS_RESULT eas_res = postParam(lc, EAS_MODULE_CHORUS, EAS_PARAM_CHORUS_LEVEL, (EAS_I32) amount);
   if (eas_res != EAS_SUCCESS) {
-	//LOGW("EAS_SetParameter error: %ld", eas_res);
+	//LOGW("postParam error: %ld", eas_res);
+  }
+}
+
+/*
+ * DLS sound banks are read through an EAS file locator over a read-only
+ * mapping of the file, so the EAS parser copies straight from the page cache
+ * and the kernel pages in each wave only when the parser reaches it. The
+ * mapping is dropped once the bank is parsed: EAS keeps its own converted
+ * copy of the samples (8 bit, see _8_BIT_SAMPLES).
+ *
+ * Parsing is slow, so SoundBank.open() runs on a worker thread and keeps the
+ * parsed tables in a cache directory as an EAS collection image, named after
+ * a checksum of the bank. Later loads of the same bank read the image back
+ * instead of parsing the file again.
+ */
+struct MappedFile {
+  const EAS_U8 *data;
+  int size;
+  void *map;
+  size_t mapLength;
+};
+
+static int mappedReadAt(void *handle, void *buf, int offset, int size)
+{
+  struct MappedFile *f = (struct MappedFile *) handle;
+  if (offset < 0 || offset >= f->size || size <= 0) {
+    return 0;
   }
+  if (size > f->size - offset) {
+    size = f->size - offset;
+  }
+  memcpy(buf, f->data + offset, size);
+  return size;
+}
+
+static int mappedSize(void *handle)
+{
+  return ((struct MappedFile *) handle)->size;
 }
 
+static int mapFile(struct MappedFile *f, int fd, int64_t offset, int64_t length, int advice)
+{
+  struct stat st;
+  long pageSize = sysconf(_SC_PAGESIZE);
+  off_t mapOffset;
+
+  if (length < 0) {
+    if (fstat(fd, &st) != 0 || st.st_size <= offset) {
+      return -1;
+    }
+    length = st.st_size - offset;
+  }
+  if (offset < 0 || length <= 0 || length > INT32_MAX) {
+    return -1;
+  }
+  // mmap() wants a page aligned offset
+  mapOffset = (off_t) offset & ~((off_t) pageSize - 1);
+  f->mapLength = (size_t) (offset - mapOffset + length);
+  f->map = mmap(NULL, f->mapLength, PROT_READ, MAP_PRIVATE, fd, mapOffset);
+  if (f->map == MAP_FAILED) {
+    //LOGW("mmap error: %d", errno);
+    return -1;
+  }
+  madvise(f->map, f->mapLength, advice);
+  f->data = (const EAS_U8 *) f->map + (offset - mapOffset);
+  f->size = (int) length;
+  return 0;
+}
+
+static void unmapFile(struct MappedFile *f)
+{
+  munmap(f->map, f->mapLength);
+}
+
+// 64 bit FNV-1a, one word at a time
+static uint64_t checksum(const EAS_U8 *data, int size)
+{
+  uint64_t hash = 0xcbf29ce484222325ULL;
+  uint64_t word;
+  int i = 0;
+  for (; i + 8 <= size; i += 8) {
+    memcpy(&word, data + i, 8);
+    hash = (hash ^ word) * 0x100000001b3ULL;
+  }
+  for (; i < size; i++) {
+    hash = (hash ^ data[i]) * 0x100000001b3ULL;
+  }
+  return hash ^ (uint64_t) size;
+}
+
+static EAS_DLSLIB_HANDLE readCache(const char *path)
+{
+  struct MappedFile cache;
+  EAS_DLSLIB_HANDLE pDLS = NULL;
+  int fd = open(path, O_RDONLY | O_CLOEXEC);
+  if (fd < 0) {
+    return NULL;
+  }
+  if (mapFile(&cache, fd, 0, -1, MADV_SEQUENTIAL) == 0) {
+    if (EAS_DeserializeDLSCollection(cache.data, cache.size, &pDLS) != EAS_SUCCESS) {
+      pDLS = NULL;
+    }
+    unmapFile(&cache);
+  }
+  // the modification time orders the images by their last use, see
+  // SoundBank.pruneCache()
+  if (pDLS != NULL) {
+    futimens(fd, NULL);
+  }
+  close(fd);
+  return pDLS;
+}
+
+// Writes to a temporary file first, so that a reader never sees half an image
+static void writeCache(const char *path, EAS_DLSLIB_HANDLE pDLS)
+{
+  char tmpPath[PATH_MAX];
+  EAS_I32 size = EAS_SerializeDLSCollection(pDLS, NULL, 0);
+  EAS_U8 *image;
+  ssize_t written = 0, n;
+  int fd;
+
+  if (size <= 0 || snprintf(tmpPath, sizeof(tmpPath), "%s.tmp", path) >= (int) sizeof(tmpPath)) {
+    return;
+  }
+  image = malloc(size);
+  if (image == NULL) {
+    return;
+  }
+  EAS_SerializeDLSCollection(pDLS, image, size);
+  fd = open(tmpPath, O_WRONLY | O_CREAT | O_TRUNC | O_CLOEXEC, 0600);
+  if (fd >= 0) {
+    while (written < size && (n = write(fd, image + written, size - written)) > 0) {
+      written += n;
+    }
+    if (close(fd) == 0 && written == size) {
+      rename(tmpPath, path);
+    } else {
+      unlink(tmpPath);
+    }
+  }
+  free(image);
+}
+
+JNIEXPORT jlong JNICALL Java_io_github_pedrolcl_vmpk_SoundBank_open(JNIEnv *env, jclass clazz, jint fd, jlong offset, jlong length, jstring cacheDir)
+{
+  struct MappedFile file;
+  EAS_FILE locator;
+  EAS_DLSLIB_HANDLE pDLS = NULL;
+  char path[PATH_MAX];
+  const char *dir;
+  int cached = 0;
+
+  if (mapFile(&file, fd, offset, length, MADV_SEQUENTIAL) != 0) {
+    return 0;
+  }
+
+  if (cacheDir != NULL) {
+    dir = (*env)->GetStringUTFChars(env, cacheDir, NULL);
+    if (dir != NULL) {
+      cached = snprintf(path, sizeof(path), "%s/%016llx.dlsc", dir,
+                        (unsigned long long) checksum(file.data, file.size)) < (int) sizeof(path);
+      (*env)->ReleaseStringUTFChars(env, cacheDir, dir);
+    }
+  }
+
+  if (cached) {
+    pDLS = readCache(path);
+  }
+  if (pDLS == NULL) {
+    locator.handle = &file;
+    locator.readAt = mappedReadAt;
+    locator.size = mappedSize;
+    if (EAS_ParseDLSCollection(&locator, &pDLS) != EAS_SUCCESS) {
+      //LOGW("EAS_ParseDLSCollection error");
+      pDLS = NULL;
+    } else if (cached) {
+      writeCache(path, pDLS);
+    }
+  }
+  unmapFile(&file);
+  return (jlong) (intptr_t) pDLS;
+}
+
+JNIEXPORT void JNICALL Java_io_github_pedrolcl_vmpk_SoundBank_close(JNIEnv *env, jclass clazz, jlong bank)
+{
+  EAS_FreeDLSCollection((EAS_DLSLIB_HANDLE) (intptr_t) bank);
+}
+
+JNIEXPORT jboolean JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_setSoundBank(JNIEnv *env, jclass clazz, jlong ctx, jlong bank)
+{
+  struct LibraryContext *lc = contextFromHandle(ctx);
+  EAS_DLSLIB_HANDLE pDLS = (EAS_DLSLIB_HANDLE) (intptr_t) bank;
+  struct SynthEvent *ev;
+  unsigned int request;
+
+  if (lc == NULL || lc->easData == NULL) {
+    return JNI_FALSE;
+  }
+
+  if (!streamIsRunning(lc)) {
+    finishBankChange(lc);
+    if (EAS_SetDLSCollection(lc->easData, lc->easHandle, pDLS) != EAS_SUCCESS) {
+      //LOGW("EAS_SetDLSCollection error");
+      return JNI_FALSE;
+    }
+    // the song plays the same instruments as the keyboard, as in EVENT_BANK
+    if (lc->songHandle != NULL) {
+      EAS_SetDLSCollection(lc->easData, lc->songHandle, pDLS);
+    }
+    EAS_RetainDLSCollection(pDLS);
+    EAS_FreeDLSCollection(lc->bank);
+    lc->bank = pDLS;
+    return JNI_TRUE;
+  }
+
+  releaseOldBanks(lc, 0);
+
+  // the synth switches banks on the audio thread, between two blocks
+  ev = queueBack(&lc->queue);
+  if (ev == NULL) {
+    dropEvent(lc);
+    return JNI_FALSE;
+  }
+  request = lc->bankRequests + 1;
+  if (request == 0) {
+    request++; /* zero means no change pending */
+  }
+  if (!retireBank(lc, lc->bank, request)) {
+    return JNI_FALSE;
+  }
+  EAS_RetainDLSCollection(pDLS);
+  lc->bank = pDLS;
+  lc->bankRequests = request;
+  ev->timestamp = 0;
+  ev->type = EVENT_BANK;
+  ev->value = (EAS_I32) request;
+  ev->bank = pDLS;
+  queuePush(&lc->queue);
+  return JNI_TRUE;
+}
+
+// Reads a whole MIDI file, so that its playback never touches the storage
+static struct Song *loadSong(int fd, int64_t offset, int64_t length)
+{
+  struct MappedFile file;
+  struct Song *song;
+
+  if (mapFile(&file, fd, offset, length, MADV_SEQUENTIAL) != 0) {
+    return NULL;
+  }
+  song = calloc(1, sizeof(struct Song));
+  if (song != NULL) {
+    song->data = malloc(file.size);
+    if (song->data == NULL) {
+      free(song);
+      song = NULL;
+    } else {
+      memcpy(song->data, file.data, file.size);
+      song->size = file.size;
+      // the host file layer takes a NULL handle for a free slot
+      song->locator.handle = song;
+      song->locator.readAt = songReadAt;
+      song->locator.size = songSize;
+    }
+  }
+  unmapFile(&file);
+  return song;
+}
+
+/*
+ * Replaces the current song, or stops it when song is NULL. Stopping only
+ * fades the song out on the audio thread. Opening one allocates and parses,
+ * so the output pauses for it, the way a bank is loaded while the stream is
+ * stopped; the song playing before is cut, and its stream closed, there.
+ */
+static jboolean changeSong(struct LibraryContext *lc, struct Song *song)
+{
+  struct SynthEvent *ev;
+  unsigned int request;
+  int running = streamIsRunning(lc);
+
+  if (song == NULL && running) {
+    ev = queueBack(&lc->queue);
+    if (ev == NULL) {
+      dropEvent(lc);
+      return JNI_FALSE;
+    }
+    request = lc->songRequests + 1;
+    if (request == 0) {
+      request++; /* zero means no song closing */
+    }
+    retireSong(lc, lc->song);
+    lc->song = NULL;
+    lc->songRequests = request;
+    ev->timestamp = 0;
+    ev->type = EVENT_SONG;
+    ev->param = SONG_CLOSE;
+    ev->value = (EAS_I32) request;
+    queuePush(&lc->queue);
+    return JNI_TRUE;
+  }
+
+  if (running) {
+    pauseStream(lc);
+  }
+  finishSongChange(lc);
+  openSongStream(lc, song, lc->bank);
+  freeSong(lc->song);
+  lc->song = song;
+  updateSong(lc);
+  if (running && resumeStream(lc) != 0) {
+    //LOGW("streamStart error");
+  }
+  return (song == NULL || lc->songHandle != NULL) ? JNI_TRUE : JNI_FALSE;
+}
+
+static jboolean postSongAction(struct LibraryContext *lc, int action, EAS_I32 value)
+{
+  struct SynthEvent *ev;
+  if (!streamIsRunning(lc)) {
+    songAction(lc, action, value);
+    updateSong(lc);
+    return JNI_TRUE;
+  }
+  ev = queueBack(&lc->queue);
+  if (ev == NULL) {
+    dropEvent(lc);
+    return JNI_FALSE;
+  }
+  ev->timestamp = 0;
+  ev->type = EVENT_SONG;
+  ev->param = action;
+  ev->value = value;
+  queuePush(&lc->queue);
+  return JNI_TRUE;
+}
+
+JNIEXPORT jboolean JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_playSong(JNIEnv *env, jclass clazz, jlong ctx, jint fd, jlong offset, jlong length)
+{
+  struct LibraryContext *lc = contextFromHandle(ctx);
+  struct Song *song = loadSong(fd, offset, length);
+  if (song == NULL) {
+    return JNI_FALSE;
+  }
+  return changeSong(lc, song);
+}
+
+JNIEXPORT jboolean JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_stopSong(JNIEnv *env, jclass clazz, jlong ctx)
+{
+  struct LibraryContext *lc = contextFromHandle(ctx);
+  return changeSong(lc, NULL);
+}
+
+JNIEXPORT jboolean JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_pauseSong(JNIEnv *env, jclass clazz, jlong ctx)
+{
+  struct LibraryContext *lc = contextFromHandle(ctx);
+  return postSongAction(lc, SONG_PAUSE, 0);
+}
+
+JNIEXPORT jboolean JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_resumeSong(JNIEnv *env, jclass clazz, jlong ctx)
+{
+  struct LibraryContext *lc = contextFromHandle(ctx);
+  return postSongAction(lc, SONG_RESUME, 0);
+}
+
+JNIEXPORT jboolean JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_setSongVolume(JNIEnv *env, jclass clazz, jlong ctx, jint volume)
+{
+  struct LibraryContext *lc = contextFromHandle(ctx);
+  if (volume < 0 || volume > EAS_MAX_VOLUME) {
+    return JNI_FALSE;
+  }
+  return postSongAction(lc, SONG_VOLUME, (EAS_I32) volume);
+}
+
+JNIEXPORT jint JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_getSongState(JNIEnv *env, jclass clazz, jlong ctx)
+{
+  struct LibraryContext *lc = contextFromHandle(ctx);
+  return __atomic_load_n(&lc->songState, __ATOMIC_RELAXED);
+}
+
+JNIEXPORT jint JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_getSongPosition(JNIEnv *env, jclass clazz, jlong ctx)
+{
+  struct LibraryContext *lc = contextFromHandle(ctx);
+  return __atomic_load_n(&lc->songPosition, __ATOMIC_RELAXED);
+}
+
+JNIEXPORT void JNICALL Java_io_github_pedrolcl_vmpk_MIDISynth_getStats(JNIEnv *env, jclass clazz, jlong ctx, jlongArray stats)
+{
+  struct LibraryContext *lc = contextFromHandle(ctx);
+  jlong values[STATS_SIZE];
+  uint32_t histogram[RENDER_BUCKETS];
+  int64_t total = 0, count = 0;
+  jsize length = (*env)->GetArrayLength(env, stats);
+  int i;
+
+  for (i = 0; i < STATS_SIZE; i++) {
+    values[i] = __atomic_load_n(&lc->stats.values[i], __ATOMIC_RELAXED);
+  }
+  for (i = 0; i < RENDER_BUCKETS; i++) {
+    histogram[i] = __atomic_load_n(&lc->stats.renderHistogram[i], __ATOMIC_RELAXED);
+    total += histogram[i];
+  }
+  values[STAT_RENDER_P50_NANOS] = 0;
+  values[STAT_RENDER_P95_NANOS] = 0;
+  values[STAT_RENDER_P99_NANOS] = 0;
+  for (i = 0; i < RENDER_BUCKETS && total > 0; i++) {
+    count += histogram[i];
+    if (values[STAT_RENDER_P50_NANOS] == 0 && count * 100 >= total * 50) {
+      values[STAT_RENDER_P50_NANOS] = renderBucketLimit(i);
+    }
+    if (values[STAT_RENDER_P95_NANOS] == 0 && count * 100 >= total * 95) {
+      values[STAT_RENDER_P95_NANOS] = renderBucketLimit(i);
+    }
+    if (values[STAT_RENDER_P99_NANOS] == 0 && count * 100 >= total * 99) {
+      values[STAT_RENDER_P99_NANOS] = renderBucketLimit(i);
+    }
+  }
+  if (lc->as != NULL) {
+    values[STAT_UNDERRUNS] = aaudio_get_xrun_count(lc->as);
+  }
+  values[STAT_DROPPED_EVENTS] = __atomic_load_n(&lc->droppedEvents, __ATOMIC_RELAXED);
+  (*env)->SetLongArrayRegion(env, stats, 0, length < STATS_SIZE ? length : STATS_SIZE, values);
+}
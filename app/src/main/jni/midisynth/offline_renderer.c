@@ -0,0 +1,155 @@
+/*
+ * Offline rendering for Sonivox EAS synthesizer
+ * Copyright (C) 2013-2025 Pedro López-Cabanillas <plcl@users.sf.net>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include <jni.h>
+#include <stdlib.h>
+#include <stdint.h>
+#include <eas.h>
+#include <eas_reverb.h>
+#include <eas_chorus.h>
+
+/*
+ * A synthesizer without audio output: OfflineRenderer calls EAS_Render
+ * directly from its own thread, as fast as it can, so the MIDI messages go
+ * straight to EAS instead of through the event ring of the real time synth.
+ * The output depends only on the messages and the block where each one was
+ * written, never on the timing of the device.
+ */
+struct OfflineContext {
+  EAS_DATA_HANDLE easData;
+  EAS_HANDLE easHandle;
+};
+
+static inline struct OfflineContext *offlineFromHandle(jlong ctx)
+{
+  return (struct OfflineContext *) (intptr_t) ctx;
+}
+
+JNIEXPORT void JNICALL Java_io_github_pedrolcl_vmpk_OfflineRenderer_getConfig(JNIEnv *env, jclass clazz, jintArray config)
+{
+  const S_EAS_LIB_CONFIG *easConfig = EAS_Config();
+  jint values[3];
+  values[0] = easConfig->sampleRate;
+  values[1] = easConfig->numChannels;
+  values[2] = easConfig->mixBufferSize;
+  (*env)->SetIntArrayRegion(env, config, 0, 3, values);
+}
+
+JNIEXPORT jlong JNICALL Java_io_github_pedrolcl_vmpk_OfflineRenderer_open(JNIEnv *env, jclass clazz)
+{
+  struct OfflineContext *oc = calloc(1, sizeof(struct OfflineContext));
+  if (oc == NULL) {
+    return 0;
+  }
+  if (EAS_Init(&oc->easData) != EAS_SUCCESS) {
+    free(oc);
+    return 0;
+  }
+  if (EAS_OpenMIDIStream(oc->easData, &oc->easHandle, NULL) != EAS_SUCCESS) {
+    EAS_Shutdown(oc->easData);
+    free(oc);
+    return 0;
+  }
+  return (jlong) (intptr_t) oc;
+}
+
+JNIEXPORT void JNICALL Java_io_github_pedrolcl_vmpk_OfflineRenderer_close(JNIEnv *env, jclass clazz, jlong ctx)
+{
+  struct OfflineContext *oc = offlineFromHandle(ctx);
+  EAS_CloseMIDIStream(oc->easData, oc->easHandle);
+  // also releases the synth reference to its sound bank
+  EAS_Shutdown(oc->easData);
+  free(oc);
+}
+
+JNIEXPORT jboolean JNICALL Java_io_github_pedrolcl_vmpk_OfflineRenderer_render(JNIEnv *env, jclass clazz, jlong ctx, jobject buffer, jint blocks)
+{
+  struct OfflineContext *oc = offlineFromHandle(ctx);
+  const S_EAS_LIB_CONFIG *easConfig = EAS_Config();
+  EAS_PCM *pcm = (EAS_PCM *) (*env)->GetDirectBufferAddress(env, buffer);
+  EAS_I32 numGen;
+  jint i;
+
+  if (pcm == NULL || (*env)->GetDirectBufferCapacity(env, buffer) <
+      (jlong) blocks * easConfig->mixBufferSize * easConfig->numChannels * sizeof(EAS_PCM)) {
+    return JNI_FALSE;
+  }
+  for (i = 0; i < blocks; i++) {
+    if (EAS_Render(oc->easData, pcm, easConfig->mixBufferSize, &numGen) != EAS_SUCCESS) {
+      return JNI_FALSE;
+    }
+    pcm += easConfig->mixBufferSize * easConfig->numChannels;
+  }
+  return JNI_TRUE;
+}
+
+JNIEXPORT jboolean JNICALL Java_io_github_pedrolcl_vmpk_OfflineRenderer_write(JNIEnv *env, jclass clazz, jlong ctx, jbyteArray ba)
+{
+  struct OfflineContext *oc = offlineFromHandle(ctx);
+  EAS_RESULT eas_res;
+  EAS_U8 *buffer = (EAS_U8 *) (*env)->GetByteArrayElements(env, ba, NULL);
+  if (buffer == NULL) {
+    return JNI_FALSE;
+  }
+  eas_res = EAS_WriteMIDIStream(oc->easData, oc->easHandle, buffer, (*env)->GetArrayLength(env, ba));
+  (*env)->ReleaseByteArrayElements(env, ba, (jbyte *) buffer, JNI_ABORT);
+  return (eas_res == EAS_SUCCESS) ? JNI_TRUE : JNI_FALSE;
+}
+
+JNIEXPORT jboolean JNICALL Java_io_github_pedrolcl_vmpk_OfflineRenderer_setSoundBank(JNIEnv *env, jclass clazz, jlong ctx, jlong bank)
+{
+  struct OfflineContext *oc = offlineFromHandle(ctx);
+  // the synth takes its own reference to the collection
+  return EAS_SetDLSCollection(oc->easData, oc->easHandle,
+      (EAS_DLSLIB_HANDLE) (intptr_t) bank) == EAS_SUCCESS ? JNI_TRUE : JNI_FALSE;
+}
+
+// Same presets and bypass logic as MIDISynth.initReverb()
+JNIEXPORT void JNICALL Java_io_github_pedrolcl_vmpk_OfflineRenderer_initReverb(JNIEnv *env, jclass clazz, jlong ctx, jint reverb_type)
+{
+  struct OfflineContext *oc = offlineFromHandle(ctx);
+  EAS_BOOL sw = EAS_TRUE;
+  if (reverb_type >= EAS_PARAM_REVERB_LARGE_HALL && reverb_type <= EAS_PARAM_REVERB_ROOM) {
+    sw = EAS_FALSE;
+    EAS_SetParameter(oc->easData, EAS_MODULE_REVERB, EAS_PARAM_REVERB_PRESET, (EAS_I32) reverb_type);
+  }
+  EAS_SetParameter(oc->easData, EAS_MODULE_REVERB, EAS_PARAM_REVERB_BYPASS, sw);
+}
+
+// Same presets and bypass logic as MIDISynth.initChorus()
+JNIEXPORT void JNICALL Java_io_github_pedrolcl_vmpk_OfflineRenderer_initChorus(JNIEnv *env, jclass clazz, jlong ctx, jint chorus_type)
+{
+  struct OfflineContext *oc = offlineFromHandle(ctx);
+  EAS_BOOL sw = EAS_TRUE;
+  if (chorus_type >= EAS_PARAM_CHORUS_PRESET1 && chorus_type <= EAS_PARAM_CHORUS_PRESET4) {
+    sw = EAS_FALSE;
+    EAS_SetParameter(oc->easData, EAS_MODULE_CHORUS, EAS_PARAM_CHORUS_PRESET, (EAS_I32) chorus_type);
+  }
+  EAS_SetParameter(oc->easData, EAS_MODULE_CHORUS, EAS_PARAM_CHORUS_BYPASS, sw);
+}
+
+JNIEXPORT void JNICALL Java_io_github_pedrolcl_vmpk_OfflineRenderer_setReverbWet(JNIEnv *env, jclass clazz, jlong ctx, jint amount)
+{
+  struct OfflineContext *oc = offlineFromHandle(ctx);
+  EAS_SetParameter(oc->easData, EAS_MODULE_REVERB, EAS_PARAM_REVERB_WET, (EAS_I32) amount);
+}
+
+JNIEXPORT void JNICALL Java_io_github_pedrolcl_vmpk_OfflineRenderer_setChorusLevel(JNIEnv *env, jclass clazz, jlong ctx, jint level)
+{
+  struct OfflineContext *oc = offlineFromHandle(ctx);
+  EAS_SetParameter(oc->easData, EAS_MODULE_CHORUS, EAS_PARAM_CHORUS_LEVEL, (EAS_I32) level);
+}
@@ -34,7 +34,7 @@
 #define LOGW(...) \
   __android_log_print(ANDROID_LOG_WARN, "opensl_stream", __VA_ARGS__)
 
-#define OUTPUT_BUFFERS 2
+#define MIN_OUTPUT_BUFFERS 2
 #define STARTUP_INTERVALS 8
 
 struct _opensl_stream {
@@ -61,6 +61,7 @@ struct _opensl_stream {
   int callbackBufferFrames;
   int inputBufferFrames;
   int outputBufferFrames;
+  int outputBuffers;
 
   double thresholdMillis;
 
@@ -152,7 +153,7 @@ static void playerCallback(SLAndroidSimpleBufferQueueItf bq, void *context) {
         p->outputIntervals == STARTUP_INTERVALS &&
         __sync_or_and_fetch(&p->inputIntervals, 0) == STARTUP_INTERVALS) {
       int offset = p->inputOffset + p->outputOffset +
-          OUTPUT_BUFFERS * p->callbackBufferFrames;
+          p->outputBuffers * p->callbackBufferFrames;
       p->readIndex = __sync_or_and_fetch(&p->inputIndex, 0) - offset;
     }
   }
@@ -290,7 +291,7 @@ static SLresult openSLPlayOpen(OPENSL_STREAM *p, SLuint32 sr) {
        SL_PCMSAMPLEFORMAT_FIXED_16, SL_PCMSAMPLEFORMAT_FIXED_16,
        speakers, SL_BYTEORDER_LITTLEENDIAN};
   SLDataLocator_AndroidSimpleBufferQueue loc_bufq =
-      {SL_DATALOCATOR_ANDROIDSIMPLEBUFFERQUEUE, OUTPUT_BUFFERS};
+      {SL_DATALOCATOR_ANDROIDSIMPLEBUFFERQUEUE, p->outputBuffers};
   SLDataSource audioSrc = {&loc_bufq, &format_pcm};  // source: buffer queue
 
   const SLInterfaceID mixIds[] = {SL_IID_VOLUME};
@@ -349,7 +350,7 @@ static void openSLDestroyEngine(OPENSL_STREAM *p) {
 
 OPENSL_STREAM *opensl_open(
     int sampleRate, int inChans, int outChans, int callbackBufferFrames,
-    opensl_process_t proc, void *context) {
+    int outputBuffers, opensl_process_t proc, void *context) {
   if (!proc) {
     return NULL;
   }
@@ -384,7 +385,9 @@ OPENSL_STREAM *opensl_open(
   p->callbackBufferFrames = callbackBufferFrames;
   p->inputBufferFrames =
       (sampleRate / callbackBufferFrames / 4) * callbackBufferFrames;
-  p->outputBufferFrames = OUTPUT_BUFFERS * callbackBufferFrames;
+  p->outputBuffers = outputBuffers < MIN_OUTPUT_BUFFERS ?
+      MIN_OUTPUT_BUFFERS : outputBuffers;
+  p->outputBufferFrames = p->outputBuffers * callbackBufferFrames;
 
   if (openSLCreateEngine(p) != SL_RESULT_SUCCESS) {
     opensl_close(p);
@@ -413,7 +416,7 @@ OPENSL_STREAM *opensl_open(
 
   LOGI("Created OPENSL_STREAM(%d, %d, %d, %d)",
        sampleRate, inChans, outChans, callbackBufferFrames);
-  LOGI("numBuffers: %d", OUTPUT_BUFFERS);
+  LOGI("numBuffers: %d", p->outputBuffers);
   return p;
 }
 
@@ -456,7 +459,7 @@ int opensl_start(OPENSL_STREAM *p) {
   if (p->playerPlay) {
     LOGI("Starting player queue.");
     int i;
-    for (i = 0; i < OUTPUT_BUFFERS; ++i) {
+    for (i = 0; i < p->outputBuffers; ++i) {
       playerCallback(p->playerBufferQueue, p);
     }
     if ((*p->playerPlay)->SetPlayState(p->playerPlay,
@@ -60,6 +60,10 @@ typedef struct _opensl_stream OPENSL_STREAM;
  * cannot operate at the native buffer size, then you should use a smallish
  * buffer size, e.g., 64 frames. Somewhat surprisingly, large buffers will not
  * improve stability.
+ *
+ * The number of output buffers is the depth of the OpenSL buffer queue; the
+ * output latency is roughly this number times the callback buffer size. Two
+ * buffers is the minimum; use more on devices that suffer underruns.
  * 
  * For the time being, the number of input and output channels must be 0, 1,
  * or 2; at least one of the channel numbers must be positive.
@@ -68,7 +72,8 @@ typedef struct _opensl_stream OPENSL_STREAM;
  */
 OPENSL_STREAM *opensl_open(
     int sample_rate, int input_channels, int output_channels,
-    int callback_buffer_size, opensl_process_t proc, void *context);
+    int callback_buffer_size, int output_buffers,
+    opensl_process_t proc, void *context);
 
 /*
  * Stops playback and frees all resources associated with the given stream,
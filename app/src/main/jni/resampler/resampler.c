@@ -0,0 +1,184 @@
+/*
+ * Sample rate converter for Sonivox EAS synthesizer in real time
+ * Copyright (C) 2013-2025 Pedro López-Cabanillas <plcl@users.sf.net>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#include "resampler.h"
+
+#include <math.h>
+#include <stdlib.h>
+#include <string.h>
+
+#define MAX_PHASES 1024
+#define TAPS_PER_PHASE 24
+#define KAISER_BETA 8.0
+#define PASSBAND 0.9
+
+struct _resampler {
+  resampler_fill_t fill;
+  void *context;
+
+  int channels;
+  int blockFrames;
+
+  // the output advances by 'step' phases of 1/phases input frame
+  int phases;
+  int step;
+  int phase;
+
+  // phase-major table: coeffs[phase * TAPS_PER_PHASE + tap]
+  float *coeffs;
+
+  // input history as interleaved floats, oldest frame first
+  float *input;
+  int inputFrames;
+  int inputIndex;
+
+  short *block;
+};
+
+static int gcd(int a, int b) {
+  while (b != 0) {
+    int t = a % b;
+    a = b;
+    b = t;
+  }
+  return a;
+}
+
+// Zeroth order modified Bessel function of the first kind
+static double besselI0(double x) {
+  double sum = 1.0, term = 1.0;
+  int k;
+  for (k = 1; k < 32; ++k) {
+    term *= (x / (2.0 * k)) * (x / (2.0 * k));
+    sum += term;
+  }
+  return sum;
+}
+
+// Designs the prototype low pass filter at phases times the input rate,
+// cutting below the lower of both Nyquist frequencies
+static void designFilter(RESAMPLER *p) {
+  int length = p->phases * TAPS_PER_PHASE;
+  double center = (length - 1) / 2.0;
+  double cutoff = PASSBAND * 0.5 /
+      (p->phases > p->step ? p->phases : p->step);
+  double norm = besselI0(KAISER_BETA);
+  int n;
+  for (n = 0; n < length; ++n) {
+    double t = n - center;
+    double x = 2.0 * t / (length - 1);
+    double window = besselI0(KAISER_BETA * sqrt(1.0 - x * x)) / norm;
+    double sinc = t == 0.0 ? 1.0 :
+        sin(2.0 * M_PI * cutoff * t) / (2.0 * M_PI * cutoff * t);
+    // the gain of 'phases' compensates the implicit zero stuffing
+    p->coeffs[(n % p->phases) * TAPS_PER_PHASE + n / p->phases] =
+        (float) (p->phases * 2.0 * cutoff * sinc * window);
+  }
+}
+
+// Keeps the last TAPS_PER_PHASE - 1 frames and appends a new input block
+static void pullBlock(RESAMPLER *p) {
+  int keep = TAPS_PER_PHASE - 1;
+  int i, n = p->blockFrames * p->channels;
+  memmove(p->input, p->input + (p->inputFrames - keep) * p->channels,
+      keep * p->channels * sizeof(float));
+  p->inputIndex -= p->inputFrames - keep;
+  p->fill(p->context, p->block, p->blockFrames);
+  for (i = 0; i < n; ++i) {
+    p->input[keep * p->channels + i] = p->block[i];
+  }
+  p->inputFrames = keep + p->blockFrames;
+}
+
+RESAMPLER *resampler_open(
+    int inputRate, int outputRate, int channels, int blockFrames,
+    resampler_fill_t fill, void *context) {
+  int divisor;
+  if (!fill || inputRate <= 0 || outputRate <= 0 ||
+      channels <= 0 || blockFrames <= 0) {
+    return NULL;
+  }
+  divisor = gcd(inputRate, outputRate);
+  if (outputRate / divisor > MAX_PHASES) {
+    return NULL;
+  }
+
+  RESAMPLER *p = (RESAMPLER *) calloc(1, sizeof(RESAMPLER));
+  if (!p) {
+    return NULL;
+  }
+
+  p->fill = fill;
+  p->context = context;
+  p->channels = channels;
+  p->blockFrames = blockFrames;
+  p->phases = outputRate / divisor;
+  p->step = inputRate / divisor;
+
+  p->coeffs = (float *) malloc(
+      p->phases * TAPS_PER_PHASE * sizeof(float));
+  p->input = (float *) malloc(
+      (TAPS_PER_PHASE - 1 + blockFrames) * channels * sizeof(float));
+  p->block = (short *) malloc(blockFrames * channels * sizeof(short));
+  if (!p->coeffs || !p->input || !p->block) {
+    resampler_close(p);
+    return NULL;
+  }
+
+  designFilter(p);
+  resampler_reset(p);
+  return p;
+}
+
+void resampler_close(RESAMPLER *p) {
+  free(p->coeffs);
+  free(p->input);
+  free(p->block);
+  free(p);
+}
+
+void resampler_reset(RESAMPLER *p) {
+  p->inputFrames = TAPS_PER_PHASE - 1;
+  p->inputIndex = p->inputFrames;
+  p->phase = 0;
+  memset(p->input, 0, p->inputFrames * p->channels * sizeof(float));
+}
+
+void resampler_read(RESAMPLER *p, short *output, int frames) {
+  int c, k;
+  while (frames-- > 0) {
+    while (p->inputIndex >= p->inputFrames) {
+      pullBlock(p);
+    }
+    const float *h = p->coeffs + p->phase * TAPS_PER_PHASE;
+    for (c = 0; c < p->channels; ++c) {
+      const float *x = p->input + p->inputIndex * p->channels + c;
+      float sum = 0.0f;
+      for (k = 0; k < TAPS_PER_PHASE; ++k) {
+        sum += h[k] * x[-k * p->channels];
+      }
+      sum = floorf(sum + 0.5f);
+      *output++ = sum > 32767.0f ? 32767 :
+          sum < -32768.0f ? -32768 : (short) sum;
+    }
+    p->phase += p->step;
+    while (p->phase >= p->phases) {
+      p->phase -= p->phases;
+      p->inputIndex++;
+    }
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Sample rate converter for Sonivox EAS synthesizer in real time
+ * Copyright (C) 2013-2025 Pedro López-Cabanillas <plcl@users.sf.net>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+#ifndef __RESAMPLER_H__
+#define __RESAMPLER_H__
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/*
+ * Input callback: must fill the buffer with exactly the given number of
+ * interleaved 16 bit frames, the block size given to resampler_open().
+ */
+typedef void (*resampler_fill_t)
+    (void *context, short *buffer, int frames);
+
+/*
+ * Abstract data type for a polyphase windowed sinc sample rate converter.
+ */
+typedef struct _resampler RESAMPLER;
+
+/*
+ * Creates a converter between two fixed sample rates whose ratio, reduced
+ * to lowest terms, has a numerator of at most 1024 (this covers every pair
+ * of the usual rates, e.g. 22050 to 48000 is 320/147). The input is pulled
+ * through the fill callback in blocks of block_frames frames, so that the
+ * source may render fixed size blocks regardless of the output size.
+ *
+ * Returns NULL on failure or if the ratio is not supported.
+ */
+RESAMPLER *resampler_open(
+    int input_rate, int output_rate, int channels, int block_frames,
+    resampler_fill_t fill, void *context);
+
+/*
+ * Frees all resources associated with the given converter, except for the
+ * context pointer, which is owned by the caller.
+ */
+void resampler_close(RESAMPLER *p);
+
+/*
+ * Produces exactly the given number of interleaved output frames, calling
+ * the fill callback as many times as needed. Meant for the audio thread:
+ * it does not allocate memory nor block.
+ */
+void resampler_read(RESAMPLER *p, short *output, int frames);
+
+/*
+ * Forgets any buffered input; the next read starts from silence.
+ */
+void resampler_reset(RESAMPLER *p);
+
+#ifdef __cplusplus
+};
+#endif
+
+#endif // #ifndef __RESAMPLER_H__
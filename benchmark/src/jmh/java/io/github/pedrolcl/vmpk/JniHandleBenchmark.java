@@ -0,0 +1,86 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package io.github.pedrolcl.vmpk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+// Coste de una llamada JNI de MIDISynth según cómo recibe el contexto
+// nativo: un ByteBuffer directo resuelto con GetDirectBufferAddress en cada
+// llamada, como en la versión original, o el handle long actual. Usa la
+// librería jni_handle_bench de la build de CMake en app/src/main/jni/bench,
+// y mide la JVM del host, no ART
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JniHandleBenchmark {
+
+	private static final int STATUS_NOTEON = 0x90;
+
+	private ByteBuffer mBuffer;
+	private long mHandle;
+	private int mNote = 0;
+
+	@Setup
+	public void setup() {
+		File library = new File(System.getProperty("vmpk.benchDir", "build/bench"),
+				System.mapLibraryName("jni_handle_bench"));
+		if (!library.exists()) {
+			throw new IllegalStateException(library + " not found, see app/src/main/jni/bench/CMakeLists.txt");
+		}
+		System.load(library.getAbsolutePath());
+		mBuffer = open();
+		mHandle = handle(mBuffer);
+	}
+
+	@TearDown
+	public void tearDown() {
+		close(mHandle);
+	}
+
+	private int next() {
+		mNote = (mNote + 1) & 0x7f;
+		return mNote;
+	}
+
+	// the original MIDISynth.write(int, int, int, long)
+	@Benchmark
+	public boolean writeByBuffer() {
+		return writeBuffer(mBuffer, 3, STATUS_NOTEON, next(), 100, 0);
+	}
+
+	// the current MIDISynth.write(int, int, int, long)
+	@Benchmark
+	public boolean writeByHandle() {
+		return writeHandle(mHandle, 3, STATUS_NOTEON, next(), 100, 0);
+	}
+
+	private static native ByteBuffer open();
+
+	private static native long handle(ByteBuffer ctx);
+
+	private static native void close(long ctx);
+
+	private static native boolean writeBuffer(ByteBuffer ctx, int length, int status, int data1, int data2,
+			long timestamp);
+
+	private static native boolean writeHandle(long ctx, int length, int status, int data1, int data2,
+			long timestamp);
+}
@@ -0,0 +1,162 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package io.github.pedrolcl.vmpk;
+
+import android.app.Activity;
+import android.net.wifi.WifiManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Field;
+import java.net.MulticastSocket;
+import java.util.concurrent.TimeUnit;
+
+// Codificación de los mensajes MIDI en SynthEngine y NetworkMidi, desde la
+// llamada del interfaz de usuario hasta el MIDISynth simulado o el Handler
+// del thread de envío
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MidiEncodingBenchmark {
+
+	// the usual controllers of the app, including the ones SynthEngine
+	// handles as synthesizer parameters
+	private static final int[] CONTROLLERS = {
+			MidiEngine.CTL_MODULATION, MidiEngine.CTL_VOLUME, MidiEngine.CTL_PAN,
+			MidiEngine.CTL_EXPRESSION, MidiEngine.CTL_SUSTAIN, MidiEngine.CTL_REVERB,
+			MidiEngine.CTL_CHORUS, 74 };
+
+	private SynthEngine mSynthEngine;
+	private MIDISynth mSynth;
+	private NetworkMidi mNetwork;
+	private MulticastSocket mSocket;
+	private int mValue = 0;
+
+	@Setup
+	public void setup() throws Exception {
+		Activity activity = new Activity();
+		mSynthEngine = new SynthEngine(activity);
+		mSynthEngine.start(activity);
+		mSynth = MIDISynth.getLast();
+		// NetworkMidi only sends after start() has joined the multicast
+		// group; the sender thread is replaced by a Handler that recycles the
+		// messages and the batches without sending them
+		mNetwork = new NetworkMidi(activity);
+		mSocket = new MulticastSocket();
+		setField(mNetwork, "mSocket", mSocket);
+		setField(mNetwork, "mLock", new WifiManager().createMulticastLock("benchmark"));
+		setField(mNetwork, "mSender", new Handler(Looper.getMainLooper(), new Handler.Callback() {
+			@Override
+			public boolean handleMessage(Message msg) {
+				if (msg.obj instanceof byte[]) {
+					mNetwork.recycleBatch((byte[]) msg.obj);
+				}
+				return true;
+			}
+		}));
+		// the keys play on two channels, an octave apart
+		ChannelMap layer = ChannelMap.layer(0, 1, -12);
+		mSynthEngine.setChannelMap(layer);
+		mNetwork.setChannelMap(layer);
+	}
+
+	@TearDown
+	public void tearDown() {
+		mSynthEngine.stop();
+		mSocket.close();
+	}
+
+	private static void setField(Object target, String name, Object value) throws Exception {
+		Field field = target.getClass().getDeclaredField(name);
+		field.setAccessible(true);
+		field.set(target, value);
+	}
+
+	// the next value of a slider being dragged
+	private int next(int range) {
+		mValue = (mValue + 1) % range;
+		return mValue;
+	}
+
+	@Benchmark
+	public long synthPitchWheel() {
+		mSynthEngine.pitchWheel(0, next(16384));
+		return mSynth.getChecksum();
+	}
+
+	@Benchmark
+	public long synthController() {
+		int value = next(128);
+		mSynthEngine.controller(0, CONTROLLERS[value % CONTROLLERS.length], value);
+		return mSynth.getChecksum();
+	}
+
+	@Benchmark
+	public long synthNoteOnOff() {
+		int note = next(128);
+		mSynthEngine.noteOn(0, note, 100, System.nanoTime());
+		mSynthEngine.noteOff(0, note, 0, System.nanoTime());
+		return mSynth.getChecksum();
+	}
+
+	@Benchmark
+	public long synthLayerKeyOnOff() {
+		int key = next(128);
+		mSynthEngine.keyOn(0, key, 100, System.nanoTime());
+		mSynthEngine.keyOff(0, key, 0, System.nanoTime());
+		return mSynth.getChecksum();
+	}
+
+	@Benchmark
+	public long synthPanic() {
+		mSynthEngine.panic();
+		return mSynth.getChecksum();
+	}
+
+	@Benchmark
+	public void networkPitchWheel() {
+		mNetwork.pitchWheel(0, next(16384));
+	}
+
+	@Benchmark
+	public void networkController() {
+		int value = next(128);
+		mNetwork.controller(0, CONTROLLERS[value % CONTROLLERS.length], value);
+	}
+
+	@Benchmark
+	public void networkNoteOnOff() {
+		int note = next(128);
+		mNetwork.noteOn(0, note, 100, System.nanoTime());
+		mNetwork.noteOff(0, note, 0, System.nanoTime());
+	}
+
+	@Benchmark
+	public void networkLayerKeyOnOff() {
+		int key = next(128);
+		mNetwork.keyOn(0, key, 100, System.nanoTime());
+		mNetwork.keyOff(0, key, 0, System.nanoTime());
+	}
+
+	@Benchmark
+	public void networkPanic() {
+		mNetwork.panic();
+	}
+}
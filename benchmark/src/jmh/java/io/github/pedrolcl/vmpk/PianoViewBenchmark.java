@@ -0,0 +1,124 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package io.github.pedrolcl.vmpk;
+
+import android.app.Activity;
+import android.view.MotionEvent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Búsqueda de la tecla bajo un punto y conversión de los eventos táctiles en
+// notas, con un teclado del tamaño de una pantalla apaisada
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PianoViewBenchmark {
+
+	private static final int WIDTH = 2400;
+	private static final int HEIGHT = 300;
+	private static final int POINTS = 1024; // power of two
+	private static final float GLIDE_STEP = 7f;
+
+	@Param({ "25", "49", "88" })
+	public int keys;
+
+	private PianoView mView;
+	private KeyScan mScan;
+	private SynthEngine mEngine;
+	private MIDISynth mSynth;
+	private final float[] mX = new float[POINTS];
+	private final float[] mY = new float[POINTS];
+	private int mPoint = 0;
+	private final MotionEvent mEvent = MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, 0, 0, 0);
+	private float mGlideX = 0;
+
+	@Setup
+	public void setup() throws Exception {
+		Activity activity = new Activity();
+		mEngine = new SynthEngine(activity);
+		mEngine.start(activity);
+		mSynth = MIDISynth.getLast();
+		mView = new PianoView(activity);
+		mView.setEngine(mEngine);
+		mView.setNumberOfKeys(keys);
+		mView.layout(0, 0, WIDTH, HEIGHT);
+		// touches all over the view, also between and below the keys
+		Random random = new Random(42);
+		for (int i = 0; i < POINTS; i++) {
+			mX[i] = random.nextFloat() * WIDTH;
+			mY[i] = random.nextFloat() * HEIGHT;
+		}
+		// the lookup is checked against the scan by PianoViewTest
+		mScan = new KeyScan(mView);
+		// the glide runs along the white keys, crossing the black ones' edges
+		mEvent.set(MotionEvent.ACTION_DOWN, 0, HEIGHT * 0.5f);
+		mView.onTouchEvent(mEvent);
+	}
+
+	@TearDown
+	public void tearDown() {
+		mEngine.stop();
+	}
+
+	@Benchmark
+	public Object getKeyForPos() {
+		int i = mPoint;
+		mPoint = (i + 1) & (POINTS - 1);
+		return mView.getKeyForPos(mX[i], mY[i]);
+	}
+
+	// the linear search it replaced, for comparison
+	@Benchmark
+	public Object scanKeyForPos() {
+		int i = mPoint;
+		mPoint = (i + 1) & (POINTS - 1);
+		return mScan.keyForPos(mX[i], mY[i]);
+	}
+
+	// a tap is a down and an up event at the same point
+	@Benchmark
+	public long tap() {
+		int i = mPoint;
+		mPoint = (i + 1) & (POINTS - 1);
+		mEvent.set(MotionEvent.ACTION_DOWN, mX[i], mY[i]);
+		mView.onTouchEvent(mEvent);
+		mEvent.set(MotionEvent.ACTION_UP, mX[i], mY[i]);
+		mView.onTouchEvent(mEvent);
+		return mSynth.getChecksum();
+	}
+
+	// a finger sliding over the keyboard: most move events stay on the same
+	// key, the rest play a note off and a note on
+	@Benchmark
+	public long glide() {
+		mGlideX += GLIDE_STEP;
+		if (mGlideX >= WIDTH) {
+			mEvent.set(MotionEvent.ACTION_UP, mGlideX, HEIGHT * 0.5f);
+			mView.onTouchEvent(mEvent);
+			mGlideX = 0;
+			mEvent.set(MotionEvent.ACTION_DOWN, mGlideX, HEIGHT * 0.5f);
+		} else {
+			mEvent.set(MotionEvent.ACTION_MOVE, mGlideX, HEIGHT * 0.5f);
+		}
+		mView.onTouchEvent(mEvent);
+		return mSynth.getChecksum();
+	}
+}
@@ -0,0 +1,32 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package io.github.pedrolcl.vmpk;
+
+import java.lang.reflect.Field;
+import java.util.List;
+
+// La búsqueda lineal de la tecla bajo un punto que sustituyeron las cubetas
+// de PianoView, como referencia para comprobarlas y medirlas
+final class KeyScan {
+
+	private final List<PianoView.PianoKey> mReversed;
+
+	// the keys of a view after its layout
+	@SuppressWarnings("unchecked")
+	KeyScan(PianoView view) throws ReflectiveOperationException {
+		Field field = PianoView.class.getDeclaredField("mReversed");
+		field.setAccessible(true);
+		mReversed = (List<PianoView.PianoKey>) field.get(view);
+	}
+
+	// the black keys come first in mReversed, being on top
+	PianoView.PianoKey keyForPos(float x, float y) {
+		for (PianoView.PianoKey k : mReversed) {
+			if (k.checkTouched(x, y)) {
+				return k;
+			}
+		}
+		return null;
+	}
+}
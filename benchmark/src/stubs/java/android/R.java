@@ -0,0 +1,11 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package android;
+
+// Stub
+public final class R {
+	public static final class string {
+		public static final int ok = 0x0104000a;
+	}
+}
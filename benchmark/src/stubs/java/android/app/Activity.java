@@ -0,0 +1,10 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package android.app;
+
+import android.content.Context;
+
+// Stub
+public class Activity extends Context {
+}
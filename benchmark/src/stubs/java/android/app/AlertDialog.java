@@ -0,0 +1,34 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package android.app;
+
+import android.content.Context;
+import android.content.DialogInterface;
+
+// Stub: the dialogs are never shown
+public class AlertDialog implements DialogInterface {
+	public static class Builder {
+		public Builder(Context context) {
+		}
+
+		public Builder setMessage(int messageId) {
+			return this;
+		}
+
+		public Builder setTitle(int titleId) {
+			return this;
+		}
+
+		public Builder setPositiveButton(int textId, DialogInterface.OnClickListener listener) {
+			return this;
+		}
+
+		public AlertDialog create() {
+			return new AlertDialog();
+		}
+	}
+
+	public void show() {
+	}
+}
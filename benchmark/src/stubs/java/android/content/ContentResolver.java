@@ -0,0 +1,16 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package android.content;
+
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+
+import java.io.FileNotFoundException;
+
+// Stub
+public class ContentResolver {
+	public ParcelFileDescriptor openFileDescriptor(Uri uri, String mode) throws FileNotFoundException {
+		throw new FileNotFoundException(uri.toString());
+	}
+}
@@ -0,0 +1,33 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package android.content;
+
+import android.content.res.Resources;
+
+import java.io.File;
+
+// Stub mínimo para los benchmarks en la JVM: solo lo que usa el código de la app
+public class Context {
+	public static final String AUDIO_SERVICE = "audio";
+	public static final String CONNECTIVITY_SERVICE = "connectivity";
+	public static final String WIFI_SERVICE = "wifi";
+
+	private final Resources mResources = new Resources();
+
+	public Resources getResources() {
+		return mResources;
+	}
+
+	public Object getSystemService(String name) {
+		return null;
+	}
+
+	public ContentResolver getContentResolver() {
+		return new ContentResolver();
+	}
+
+	public File getCacheDir() {
+		return new File(System.getProperty("java.io.tmpdir"));
+	}
+}
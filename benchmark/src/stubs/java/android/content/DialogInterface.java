@@ -0,0 +1,11 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package android.content;
+
+// Stub
+public interface DialogInterface {
+	interface OnClickListener {
+		void onClick(DialogInterface dialog, int which);
+	}
+}
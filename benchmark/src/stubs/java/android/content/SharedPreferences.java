@@ -0,0 +1,13 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package android.content;
+
+// Stub
+public interface SharedPreferences {
+	String getString(String key, String defValue);
+
+	int getInt(String key, int defValue);
+
+	boolean getBoolean(String key, boolean defValue);
+}
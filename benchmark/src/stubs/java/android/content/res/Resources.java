@@ -0,0 +1,24 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package android.content.res;
+
+// Stub: every resource has a neutral value; the benchmarks configure the
+// objects through their public methods
+public class Resources {
+	public int getInteger(int id) {
+		return 0;
+	}
+
+	public String getString(int id) {
+		return "0";
+	}
+
+	public String[] getStringArray(int id) {
+		return new String[0];
+	}
+
+	public int[] getIntArray(int id) {
+		return new int[0];
+	}
+}
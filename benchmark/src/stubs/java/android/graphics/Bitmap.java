@@ -0,0 +1,8 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package android.graphics;
+
+// Stub
+public class Bitmap {
+}
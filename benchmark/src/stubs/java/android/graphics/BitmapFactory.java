@@ -0,0 +1,13 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package android.graphics;
+
+import android.content.res.Resources;
+
+// Stub
+public class BitmapFactory {
+	public static Bitmap decodeResource(Resources res, int id) {
+		return new Bitmap();
+	}
+}
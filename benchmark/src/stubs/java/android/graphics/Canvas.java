@@ -0,0 +1,26 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package android.graphics;
+
+// Stub: drawing is not measured
+public class Canvas {
+	public void drawRoundRect(RectF rect, float rx, float ry, Paint paint) {
+	}
+
+	public void drawBitmap(Bitmap bitmap, Rect src, RectF dst, Paint paint) {
+	}
+
+	public void drawText(String text, float x, float y, Paint paint) {
+	}
+
+	public int save() {
+		return 1;
+	}
+
+	public void rotate(float degrees, float px, float py) {
+	}
+
+	public void restore() {
+	}
+}
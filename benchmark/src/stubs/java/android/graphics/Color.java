@@ -0,0 +1,10 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package android.graphics;
+
+// Stub
+public class Color {
+	public static final int BLACK = 0xFF000000;
+	public static final int WHITE = 0xFFFFFFFF;
+}
@@ -0,0 +1,44 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package android.graphics;
+
+// Stub
+public class Paint {
+	public static final int ANTI_ALIAS_FLAG = 1;
+
+	public enum Style {
+		FILL, STROKE, FILL_AND_STROKE
+	}
+
+	private Style mStyle = Style.FILL;
+	private int mColor = Color.BLACK;
+	private float mTextSize = 12f;
+
+	public Paint(int flags) {
+	}
+
+	public void setStyle(Style style) {
+		mStyle = style;
+	}
+
+	public Style getStyle() {
+		return mStyle;
+	}
+
+	public void setColor(int color) {
+		mColor = color;
+	}
+
+	public int getColor() {
+		return mColor;
+	}
+
+	public void setTextSize(float textSize) {
+		mTextSize = textSize;
+	}
+
+	public float getTextSize() {
+		return mTextSize;
+	}
+}
@@ -0,0 +1,39 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package android.graphics;
+
+// Stub with the semantics of the real class
+public class RectF {
+	public float left;
+	public float top;
+	public float right;
+	public float bottom;
+
+	public RectF() {
+	}
+
+	public RectF(float left, float top, float right, float bottom) {
+		set(left, top, right, bottom);
+	}
+
+	public void set(float left, float top, float right, float bottom) {
+		this.left = left;
+		this.top = top;
+		this.right = right;
+		this.bottom = bottom;
+	}
+
+	public final float width() {
+		return right - left;
+	}
+
+	public final float height() {
+		return bottom - top;
+	}
+
+	public boolean contains(float x, float y) {
+		return left < right && top < bottom // check for empty first
+				&& x >= left && x < right && y >= top && y < bottom;
+	}
+}
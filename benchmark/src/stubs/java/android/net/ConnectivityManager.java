@@ -0,0 +1,13 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package android.net;
+
+// Stub
+public class ConnectivityManager {
+	public static final int TYPE_WIFI = 1;
+
+	public NetworkInfo getNetworkInfo(int networkType) {
+		return null;
+	}
+}
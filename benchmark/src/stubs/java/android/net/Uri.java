@@ -0,0 +1,22 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package android.net;
+
+// Stub
+public class Uri {
+	private final String mUri;
+
+	private Uri(String uri) {
+		mUri = uri;
+	}
+
+	public static Uri parse(String uriString) {
+		return new Uri(uriString);
+	}
+
+	@Override
+	public String toString() {
+		return mUri;
+	}
+}
@@ -0,0 +1,11 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package android.net.wifi;
+
+// Stub
+public class WifiInfo {
+	public int getIpAddress() {
+		return 0;
+	}
+}
@@ -0,0 +1,23 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package android.net.wifi;
+
+// Stub
+public class WifiManager {
+	public class MulticastLock {
+		public void acquire() {
+		}
+
+		public void release() {
+		}
+	}
+
+	public WifiInfo getConnectionInfo() {
+		return new WifiInfo();
+	}
+
+	public MulticastLock createMulticastLock(String tag) {
+		return new MulticastLock();
+	}
+}
@@ -0,0 +1,50 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package android.os;
+
+// Stub: messages are handled synchronously on the sending thread and then
+// recycled, like the real Looper does after dispatching them
+public class Handler {
+	public interface Callback {
+		boolean handleMessage(Message msg);
+	}
+
+	private final Callback mCallback;
+
+	public Handler(Looper looper) {
+		this(looper, null);
+	}
+
+	public Handler(Looper looper, Callback callback) {
+		mCallback = callback;
+	}
+
+	public boolean post(Runnable r) {
+		r.run();
+		return true;
+	}
+
+	public final Message obtainMessage(int what, int arg1, int arg2) {
+		Message m = Message.obtain();
+		m.target = this;
+		m.what = what;
+		m.arg1 = arg1;
+		m.arg2 = arg2;
+		return m;
+	}
+
+	public final Message obtainMessage(int what, int arg1, int arg2, Object obj) {
+		Message m = obtainMessage(what, arg1, arg2);
+		m.obj = obj;
+		return m;
+	}
+
+	public final boolean sendMessage(Message msg) {
+		if (mCallback != null) {
+			mCallback.handleMessage(msg);
+		}
+		msg.recycle();
+		return true;
+	}
+}
@@ -0,0 +1,23 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package android.os;
+
+// Stub: never started, see Handler
+public class HandlerThread {
+	private final Looper mLooper = new Looper();
+
+	public HandlerThread(String name) {
+	}
+
+	public void start() {
+	}
+
+	public Looper getLooper() {
+		return mLooper;
+	}
+
+	public boolean quitSafely() {
+		return true;
+	}
+}
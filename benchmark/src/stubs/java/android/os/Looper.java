@@ -0,0 +1,13 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package android.os;
+
+// Stub: there is no message loop, see Handler
+public class Looper {
+	private static final Looper sMainLooper = new Looper();
+
+	public static Looper getMainLooper() {
+		return sMainLooper;
+	}
+}
@@ -0,0 +1,52 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package android.os;
+
+// Stub with the same pool as the real Message, so that obtaining a message
+// costs what it costs on Android: no allocation while the pool lasts
+public final class Message {
+	private static final int MAX_POOL_SIZE = 50;
+	private static final Object sPoolSync = new Object();
+	private static Message sPool;
+	private static int sPoolSize = 0;
+
+	public int what;
+	public int arg1;
+	public int arg2;
+	public Object obj;
+	Handler target;
+	private Message next;
+
+	public static Message obtain() {
+		synchronized (sPoolSync) {
+			if (sPool != null) {
+				Message m = sPool;
+				sPool = m.next;
+				m.next = null;
+				sPoolSize--;
+				return m;
+			}
+		}
+		return new Message();
+	}
+
+	public void sendToTarget() {
+		target.sendMessage(this);
+	}
+
+	public void recycle() {
+		what = 0;
+		arg1 = 0;
+		arg2 = 0;
+		obj = null;
+		target = null;
+		synchronized (sPoolSync) {
+			if (sPoolSize < MAX_POOL_SIZE) {
+				next = sPool;
+				sPool = this;
+				sPoolSize++;
+			}
+		}
+	}
+}
@@ -0,0 +1,17 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package android.os;
+
+import java.io.Closeable;
+
+// Stub
+public class ParcelFileDescriptor implements Closeable {
+	public int getFd() {
+		return -1;
+	}
+
+	@Override
+	public void close() {
+	}
+}
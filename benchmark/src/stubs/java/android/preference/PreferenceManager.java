@@ -0,0 +1,31 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package android.preference;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+// Stub: no preference is set, so the app uses its defaults
+public class PreferenceManager {
+	private static final SharedPreferences sEmpty = new SharedPreferences() {
+		@Override
+		public String getString(String key, String defValue) {
+			return defValue;
+		}
+
+		@Override
+		public int getInt(String key, int defValue) {
+			return defValue;
+		}
+
+		@Override
+		public boolean getBoolean(String key, boolean defValue) {
+			return defValue;
+		}
+	};
+
+	public static SharedPreferences getDefaultSharedPreferences(Context context) {
+		return sEmpty;
+	}
+}
@@ -0,0 +1,23 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package android.util;
+
+// Stub
+public final class Log {
+	public static int d(String tag, String msg) {
+		return 0;
+	}
+
+	public static int d(String tag, String msg, Throwable tr) {
+		return 0;
+	}
+
+	public static int e(String tag, String msg) {
+		return 0;
+	}
+
+	public static int e(String tag, String msg, Throwable tr) {
+		return 0;
+	}
+}
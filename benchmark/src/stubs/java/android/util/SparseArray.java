@@ -0,0 +1,56 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package android.util;
+
+import java.util.Arrays;
+
+// Stub with the same storage as the real class: sorted keys, binary search,
+// no allocation unless the arrays grow
+public class SparseArray<E> {
+	private int[] mKeys = new int[10];
+	private Object[] mValues = new Object[10];
+	private int mSize = 0;
+
+	@SuppressWarnings("unchecked")
+	public E get(int key) {
+		int i = Arrays.binarySearch(mKeys, 0, mSize, key);
+		return i < 0 ? null : (E) mValues[i];
+	}
+
+	public void put(int key, E value) {
+		int i = Arrays.binarySearch(mKeys, 0, mSize, key);
+		if (i >= 0) {
+			mValues[i] = value;
+			return;
+		}
+		i = ~i;
+		if (mSize == mKeys.length) {
+			mKeys = Arrays.copyOf(mKeys, mSize * 2);
+			mValues = Arrays.copyOf(mValues, mSize * 2);
+		}
+		System.arraycopy(mKeys, i, mKeys, i + 1, mSize - i);
+		System.arraycopy(mValues, i, mValues, i + 1, mSize - i);
+		mKeys[i] = key;
+		mValues[i] = value;
+		mSize++;
+	}
+
+	public void delete(int key) {
+		int i = Arrays.binarySearch(mKeys, 0, mSize, key);
+		if (i >= 0) {
+			System.arraycopy(mKeys, i + 1, mKeys, i, mSize - i - 1);
+			System.arraycopy(mValues, i + 1, mValues, i, mSize - i - 1);
+			mValues[--mSize] = null;
+		}
+	}
+
+	public int size() {
+		return mSize;
+	}
+
+	public void clear() {
+		Arrays.fill(mValues, 0, mSize, null);
+		mSize = 0;
+	}
+}
@@ -0,0 +1,62 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package android.view;
+
+// Stub holding a single pointer, reusable like the events of the real input
+// pipeline
+public final class MotionEvent {
+	public static final int ACTION_MASK = 0xff;
+	public static final int ACTION_DOWN = 0;
+	public static final int ACTION_UP = 1;
+	public static final int ACTION_MOVE = 2;
+	public static final int ACTION_CANCEL = 3;
+	public static final int ACTION_POINTER_DOWN = 5;
+	public static final int ACTION_POINTER_UP = 6;
+	public static final int ACTION_POINTER_INDEX_MASK = 0xff00;
+	public static final int ACTION_POINTER_INDEX_SHIFT = 8;
+
+	private int mAction;
+	private float mX;
+	private float mY;
+
+	public static MotionEvent obtain(long downTime, long eventTime, int action, float x, float y, int metaState) {
+		MotionEvent ev = new MotionEvent();
+		ev.set(action, x, y);
+		return ev;
+	}
+
+	public void set(int action, float x, float y) {
+		mAction = action;
+		mX = x;
+		mY = y;
+	}
+
+	public int getAction() {
+		return mAction;
+	}
+
+	public float getX() {
+		return mX;
+	}
+
+	public float getY() {
+		return mY;
+	}
+
+	public float getX(int pointerIndex) {
+		return mX;
+	}
+
+	public float getY(int pointerIndex) {
+		return mY;
+	}
+
+	public int getPointerId(int pointerIndex) {
+		return 0;
+	}
+
+	public int getPointerCount() {
+		return 1;
+	}
+}
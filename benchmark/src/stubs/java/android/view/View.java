@@ -0,0 +1,93 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package android.view;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.util.AttributeSet;
+
+// Stub: layout() sets the drawing rectangle, nothing is drawn
+public class View {
+	public static class MeasureSpec {
+		public static final int UNSPECIFIED = 0;
+		public static final int EXACTLY = 1 << 30;
+		public static final int AT_MOST = 2 << 30;
+		private static final int MODE_MASK = 3 << 30;
+
+		public static int makeMeasureSpec(int size, int mode) {
+			return (size & ~MODE_MASK) | (mode & MODE_MASK);
+		}
+
+		public static int getMode(int measureSpec) {
+			return measureSpec & MODE_MASK;
+		}
+
+		public static int getSize(int measureSpec) {
+			return measureSpec & ~MODE_MASK;
+		}
+	}
+
+	private int mLeft, mTop, mRight, mBottom;
+	private int mMeasuredWidth, mMeasuredHeight;
+
+	public View(Context context) {
+	}
+
+	public View(Context context, AttributeSet attrs) {
+	}
+
+	public View(Context context, AttributeSet attrs, int defStyleAttr) {
+	}
+
+	// the real resources are not available: the views use their defaults
+	public boolean isInEditMode() {
+		return true;
+	}
+
+	public void layout(int l, int t, int r, int b) {
+		boolean changed = l != mLeft || t != mTop || r != mRight || b != mBottom;
+		mLeft = l;
+		mTop = t;
+		mRight = r;
+		mBottom = b;
+		onLayout(changed, l, t, r, b);
+	}
+
+	public void getDrawingRect(Rect outRect) {
+		outRect.set(0, 0, mRight - mLeft, mBottom - mTop);
+	}
+
+	public void invalidate() {
+	}
+
+	public void invalidate(Rect dirty) {
+	}
+
+	protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+	}
+
+	protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+	}
+
+	protected void onDraw(Canvas canvas) {
+	}
+
+	public boolean onTouchEvent(MotionEvent event) {
+		return false;
+	}
+
+	protected final void setMeasuredDimension(int measuredWidth, int measuredHeight) {
+		mMeasuredWidth = measuredWidth;
+		mMeasuredHeight = measuredHeight;
+	}
+
+	public final int getMeasuredWidth() {
+		return mMeasuredWidth;
+	}
+
+	public final int getMeasuredHeight() {
+		return mMeasuredHeight;
+	}
+}
@@ -0,0 +1,261 @@
+/* SPDX-License-Identifier: Apache-2.0 */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+/*
+ * JVM stub of the Sonivox EAS synthesizer, for the benchmarks
+ * Copyright (C) 2013-2025 Pedro López-Cabanillas <plcl@users.sf.net>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.pedrolcl.vmpk;
+
+import android.os.ParcelFileDescriptor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Same public API as the real MIDISynth, without the native library. Every
+ * message is folded into a checksum instead of crossing JNI, so the
+ * benchmarks measure the Java side only, and the JIT cannot drop the calls.
+ */
+public class MIDISynth {
+
+  public static final int REVERB_LARGE_HALL = 0;
+  public static final int REVERB_HALL = 1;
+  public static final int REVERB_CHAMBER = 2;
+  public static final int REVERB_ROOM = 3;
+
+  public static final int OUTPUT_OPENSL = 0;
+  public static final int OUTPUT_AAUDIO = 1;
+
+  public static final int DEFAULT_BUFFERS = 2;
+  public static final int DEFAULT_BLOCKS = 1;
+
+  public static final int STAT_CALLBACKS = 0;
+  public static final int STAT_UNDERRUNS = 1;
+  public static final int STAT_LATE_CALLBACKS = 2;
+  public static final int STAT_MAX_CALLBACK_NANOS = 3;
+  public static final int STAT_PERIOD_NANOS = 4;
+  public static final int STAT_RENDER_P50_NANOS = 5;
+  public static final int STAT_RENDER_P95_NANOS = 6;
+  public static final int STAT_RENDER_P99_NANOS = 7;
+  public static final int STAT_RENDER_MAX_NANOS = 8;
+  public static final int STAT_VOICES = 9;
+  public static final int STAT_STOLEN_VOICES = 10;
+  public static final int STAT_POLYPHONY = 11;
+  public static final int STAT_IDLE_CALLBACKS = 12;
+  public static final int STAT_DROPPED_EVENTS = 13;
+  public static final int STATS_SIZE = 14;
+
+  public static final int SONG_STOPPED = 0;
+  public static final int SONG_PLAYING = 1;
+  public static final int SONG_PAUSED = 2;
+
+  public static final int MAX_SONG_VOLUME = 100;
+
+  private static MIDISynth last;
+
+  private boolean closed;
+  private boolean running;
+  private long messages;
+  private long checksum;
+  private int reverbWet;
+  private int chorusLevel;
+  private int[] zones;
+
+  public MIDISynth() throws IOException {
+    this(OUTPUT_AAUDIO);
+  }
+
+  public MIDISynth(int output) throws IOException {
+    this(output, DEFAULT_BUFFERS, DEFAULT_BLOCKS);
+  }
+
+  public MIDISynth(int output, int buffers, int blocks) throws IOException {
+    this(output, buffers, blocks, 0);
+  }
+
+  public MIDISynth(int output, int buffers, int blocks, int rate) throws IOException {
+    last = this;
+  }
+
+  /**
+   * @return the synthesizer created most recently, e.g. by SynthEngine.
+   */
+  public static MIDISynth getLast() {
+    return last;
+  }
+
+  /**
+   * @return number of messages received so far.
+   */
+  public long getMessages() {
+    return messages;
+  }
+
+  /**
+   * @return a value depending on every message and parameter received.
+   */
+  public long getChecksum() {
+    return checksum + reverbWet + chorusLevel;
+  }
+
+  private void checkOpen() {
+    if (closed) {
+      throw new IllegalStateException("Stream closed.");
+    }
+  }
+
+  private void consume(int length, int status, int data1, int data2) {
+    checkOpen();
+    messages++;
+    checksum = checksum * 31 + (status | data1 << 8 | data2 << 16 | length << 24);
+  }
+
+  public void close() {
+    closed = true;
+  }
+
+  public void start() throws IOException {
+    checkOpen();
+    running = true;
+  }
+
+  public void stop() {
+    checkOpen();
+    running = false;
+  }
+
+  public boolean isRunning() {
+    checkOpen();
+    return running;
+  }
+
+  public void loadSoundBank(ParcelFileDescriptor file) throws IOException {
+    throw new IOException("Invalid sound bank");
+  }
+
+  public void setSoundBank(SoundBank bank) throws IOException {
+    checkOpen();
+  }
+
+  public void playSong(ParcelFileDescriptor file) throws IOException {
+    throw new IOException("Unable to play the song");
+  }
+
+  public void stopSong() {
+    checkOpen();
+  }
+
+  public void pauseSong() {
+    checkOpen();
+  }
+
+  public void resumeSong() {
+    checkOpen();
+  }
+
+  public void setSongVolume(int volume) {
+    checkOpen();
+  }
+
+  public int getSongState() {
+    checkOpen();
+    return SONG_STOPPED;
+  }
+
+  public int getSongPosition() {
+    checkOpen();
+    return 0;
+  }
+
+  public void getStats(long[] stats) {
+    checkOpen();
+  }
+
+  public long[] getStats() {
+    long[] stats = new long[STATS_SIZE];
+    getStats(stats);
+    return stats;
+  }
+
+  public void write(byte[] data) {
+    checkOpen();
+    for (byte b : data) {
+      checksum = checksum * 31 + b;
+    }
+    messages++;
+  }
+
+  public void write(int status, int data1, int data2) {
+    write(status, data1, data2, 0);
+  }
+
+  public void write(int status, int data1, int data2, long timestamp) {
+    consume(3, status, data1, data2);
+  }
+
+  public void write(int status, int data1) {
+    consume(2, status, data1, 0);
+  }
+
+  public void writeBatch(ByteBuffer data, int length) {
+    checkOpen();
+    if (!data.isDirect()) {
+      throw new IllegalArgumentException("Direct buffer required.");
+    }
+    for (int i = 0; i < length; i++) {
+      checksum = checksum * 31 + data.get(i);
+    }
+    messages++;
+  }
+
+  public void setChannelMap(int[] zones) {
+    checkOpen();
+    this.zones = zones == null ? null : zones.clone();
+  }
+
+  // the native fan-out of the zones, one message each
+  public void writeKey(int status, int key, int velocity, long timestamp) {
+    checkOpen();
+    if (zones == null) {
+      return;
+    }
+    for (int i = 0; i < zones.length; i += 4) {
+      int note = key + zones[i + 1];
+      if (key >= zones[i + 2] && key <= zones[i + 3] && note >= 0 && note <= 127) {
+        consume(3, status | zones[i], note, velocity);
+      }
+    }
+  }
+
+  public void initReverb(int reverb_type) {
+    checkOpen();
+  }
+
+  public void initChorus(int chorus_type) {
+    checkOpen();
+  }
+
+  public void reverbWet(int amount) {
+    checkOpen();
+    reverbWet = amount;
+  }
+
+  public void chorusLevel(int level) {
+    checkOpen();
+    chorusLevel = level;
+  }
+}
@@ -0,0 +1,34 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package io.github.pedrolcl.vmpk;
+
+// Stub of the generated resource ids used by the benchmarked classes
+public final class R {
+	public static final class array {
+		public static final int gm_percussions = 0x7f010000;
+		public static final int latency_blocks = 0x7f010001;
+		public static final int latency_buffers = 0x7f010002;
+		public static final int note_names = 0x7f010003;
+	}
+
+	public static final class drawable {
+		public static final int blkey = 0x7f020000;
+	}
+
+	public static final class integer {
+		public static final int default_keys = 0x7f030000;
+		public static final int default_port = 0x7f030001;
+		public static final int first_key = 0x7f030002;
+	}
+
+	public static final class string {
+		public static final int default_address = 0x7f040000;
+		public static final int default_chorus = 0x7f040001;
+		public static final int default_latency = 0x7f040002;
+		public static final int default_output = 0x7f040003;
+		public static final int default_reverb = 0x7f040004;
+		public static final int wifi_dialog_message = 0x7f040005;
+		public static final int wifi_dialog_title = 0x7f040006;
+	}
+}
@@ -0,0 +1,25 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package io.github.pedrolcl.vmpk;
+
+import android.os.ParcelFileDescriptor;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+// Stub sin código nativo
+public class SoundBank implements Closeable {
+	public static SoundBank load(ParcelFileDescriptor file, File cacheDir) throws IOException {
+		throw new IOException("Invalid sound bank");
+	}
+
+	@Override
+	public void close() {
+	}
+
+	long handle() {
+		throw new IllegalStateException("Sound bank closed.");
+	}
+}
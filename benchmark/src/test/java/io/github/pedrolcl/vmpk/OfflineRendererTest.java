@@ -0,0 +1,106 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package io.github.pedrolcl.vmpk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+
+// El renderizado sin tiempo real con el sintetizador EAS compilado para el
+// ordenador: la misma interpretación produce siempre el mismo fichero WAV,
+// con la cabecera y la longitud correctas
+public class OfflineRendererTest {
+
+	private static final int HEADER_SIZE = 44;
+
+	@Rule
+	public TemporaryFolder mFolder = new TemporaryFolder();
+
+	@BeforeClass
+	public static void checkLibrary() {
+		boolean found = false;
+		for (String dir : System.getProperty("java.library.path", "").split(File.pathSeparator)) {
+			found |= new File(dir, System.mapLibraryName("midisynth")).isFile();
+		}
+		Assume.assumeTrue("build the host libmidisynth first, see app/src/main/jni/bench", found);
+	}
+
+	// a chord with a program change and a pitch bend, then the release
+	private static File render(File file) throws IOException {
+		try (OfflineRenderer renderer = new OfflineRenderer(new FileOutputStream(file).getChannel())) {
+			renderer.write(new byte[] { (byte) 0xc0, 19 });
+			renderer.write(new byte[] { (byte) 0x90, 60, 100, (byte) 0x90, 64, 90, (byte) 0x90, 67, 80 });
+			renderer.renderSeconds(0.5);
+			renderer.write(new byte[] { (byte) 0xe0, 0, 0x50 });
+			renderer.renderTo(renderer.getPosition() + 1000);
+			renderer.write(new byte[] { (byte) 0x80, 60, 0, (byte) 0x80, 64, 0, (byte) 0x80, 67, 0 });
+			renderer.renderSeconds(0.5);
+		}
+		return file;
+	}
+
+	@Test
+	public void sameInputSameOutput() throws IOException {
+		byte[] first = Files.readAllBytes(render(mFolder.newFile("first.wav")).toPath());
+		byte[] second = Files.readAllBytes(render(mFolder.newFile("second.wav")).toPath());
+		assertArrayEquals(first, second);
+	}
+
+	@Test
+	public void headerAndLength() throws IOException {
+		File file = mFolder.newFile("render.wav");
+		long frames;
+		int sampleRate;
+		int channels;
+		try (OfflineRenderer renderer = new OfflineRenderer(new FileOutputStream(file).getChannel())) {
+			sampleRate = renderer.getSampleRate();
+			channels = renderer.getChannels();
+			renderer.write(new byte[] { (byte) 0x90, 69, 100 });
+			// whole blocks, rounded up
+			renderer.renderTo(1);
+			assertEquals(renderer.getBlockFrames(), renderer.getPosition());
+			renderer.renderSeconds(1);
+			frames = renderer.getPosition();
+			assertEquals(0, frames % renderer.getBlockFrames());
+			assertTrue(frames >= 1 + sampleRate);
+		}
+		byte[] wav = Files.readAllBytes(file.toPath());
+		int frameSize = channels * 2;
+		assertEquals(HEADER_SIZE + frames * frameSize, wav.length);
+
+		ByteBuffer header = ByteBuffer.wrap(wav).order(ByteOrder.LITTLE_ENDIAN);
+		assertEquals("RIFF", new String(wav, 0, 4, "US-ASCII"));
+		assertEquals(wav.length - 8, header.getInt(4));
+		assertEquals("WAVEfmt ", new String(wav, 8, 8, "US-ASCII"));
+		assertEquals(16, header.getInt(16));
+		assertEquals(1, header.getShort(20)); // PCM
+		assertEquals(channels, header.getShort(22));
+		assertEquals(sampleRate, header.getInt(24));
+		assertEquals(sampleRate * frameSize, header.getInt(28));
+		assertEquals(frameSize, header.getShort(32));
+		assertEquals(16, header.getShort(34));
+		assertEquals("data", new String(wav, 36, 4, "US-ASCII"));
+		assertEquals(wav.length - HEADER_SIZE, header.getInt(40));
+
+		// the note sounds
+		boolean sound = false;
+		for (int i = HEADER_SIZE; i < wav.length && !sound; i += 2) {
+			sound = header.getShort(i) != 0;
+		}
+		assertTrue(sound);
+	}
+}
@@ -0,0 +1,52 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package io.github.pedrolcl.vmpk;
+
+import static org.junit.Assert.assertSame;
+
+import android.app.Activity;
+
+import org.junit.Test;
+
+// La búsqueda de la tecla bajo un punto mediante cubetas debe encontrar la
+// misma tecla que la búsqueda lineal en la lista de teclas, también en los
+// bordes de las teclas y fuera de la vista
+public class PianoViewTest {
+
+	private static final int WIDTH = 2400;
+	private static final int HEIGHT = 300;
+
+	private static PianoView layoutView(int keys) {
+		PianoView view = new PianoView(new Activity());
+		view.setNumberOfKeys(keys);
+		view.layout(0, 0, WIDTH, HEIGHT);
+		return view;
+	}
+
+	private static void checkKeyForPos(int keys) throws Exception {
+		PianoView view = layoutView(keys);
+		KeyScan scan = new KeyScan(view);
+		for (float y = -2; y <= HEIGHT + 2; y += 0.5f) {
+			for (float x = -2; x <= WIDTH + 2; x += 0.25f) {
+				assertSame(keys + " keys, getKeyForPos(" + x + ", " + y + ")",
+						scan.keyForPos(x, y), view.getKeyForPos(x, y));
+			}
+		}
+	}
+
+	@Test
+	public void keyForPosMatchesScan25() throws Exception {
+		checkKeyForPos(25);
+	}
+
+	@Test
+	public void keyForPosMatchesScan49() throws Exception {
+		checkKeyForPos(49);
+	}
+
+	@Test
+	public void keyForPosMatchesScan88() throws Exception {
+		checkKeyForPos(88);
+	}
+}
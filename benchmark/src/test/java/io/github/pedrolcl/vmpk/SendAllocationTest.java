@@ -0,0 +1,112 @@
+/* SPDX-License-Identifier: GPL-3.0-or-later */
+/* Copyright © 2013–2025 Pedro López-Cabanillas. */
+
+package io.github.pedrolcl.vmpk;
+
+import static org.junit.Assert.assertEquals;
+
+import android.app.Activity;
+import android.net.wifi.WifiManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.net.MulticastSocket;
+
+// El envío de mensajes MIDI desde el interfaz de usuario no debe crear
+// objetos: se cuentan los bytes asignados por el thread durante miles de
+// mensajes, con el MIDISynth simulado y el Handler del thread de envío
+public class SendAllocationTest {
+
+	private static final int WARMUP = 20000;
+	private static final int MESSAGES = 20000;
+
+	private static final com.sun.management.ThreadMXBean THREADS =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	private SynthEngine mSynthEngine;
+	private NetworkMidi mNetwork;
+	private MulticastSocket mSocket;
+
+	@Before
+	public void setUp() throws Exception {
+		Activity activity = new Activity();
+		mSynthEngine = new SynthEngine(activity);
+		mSynthEngine.start(activity);
+		// as in MidiEncodingBenchmark: a started NetworkMidi whose sender
+		// recycles the messages and the batches without sending them
+		mNetwork = new NetworkMidi(activity);
+		mSocket = new MulticastSocket();
+		setField(mNetwork, "mSocket", mSocket);
+		setField(mNetwork, "mLock", new WifiManager().createMulticastLock("test"));
+		setField(mNetwork, "mSender", new Handler(Looper.getMainLooper(), new Handler.Callback() {
+			@Override
+			public boolean handleMessage(Message msg) {
+				if (msg.obj instanceof byte[]) {
+					mNetwork.recycleBatch((byte[]) msg.obj);
+				}
+				return true;
+			}
+		}));
+	}
+
+	@After
+	public void tearDown() {
+		mSynthEngine.stop();
+		mSocket.close();
+	}
+
+	private static void setField(Object target, String name, Object value) throws Exception {
+		Field field = target.getClass().getDeclaredField(name);
+		field.setAccessible(true);
+		field.set(target, value);
+	}
+
+	private static long allocatedBytes() {
+		return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	// the usual messages of the keyboard and the sliders, and a batch
+	private static void send(MidiEngine engine, int count) {
+		for (int i = 0; i < count; i++) {
+			int value = i & 0x7f;
+			engine.noteOn(0, value, 100, System.nanoTime());
+			engine.noteOff(0, value, 0, System.nanoTime());
+			engine.noteOn(1, value, 100);
+			engine.noteOff(1, value, 0);
+			engine.controller(0, MidiEngine.CTL_MODULATION, value);
+			engine.controller(0, MidiEngine.CTL_VOLUME, value);
+			engine.pitchWheel(0, i & 0x3fff);
+			if ((i & 0xf) == 0) {
+				engine.panic();
+			}
+		}
+	}
+
+	// bytes allocated while sending, once the code paths have been warmed up
+	// and the Message pool filled
+	private static long allocatedWhileSending(MidiEngine engine) {
+		send(engine, WARMUP);
+		long start = allocatedBytes();
+		long overhead = allocatedBytes() - start;
+		start = allocatedBytes();
+		send(engine, MESSAGES);
+		return allocatedBytes() - start - overhead;
+	}
+
+	@Test
+	public void synthEngineSendsWithoutAllocating() {
+		assertEquals(0, allocatedWhileSending(mSynthEngine));
+	}
+
+	@Test
+	public void networkMidiSendsWithoutAllocating() {
+		assertEquals(0, allocatedWhileSending(mNetwork));
+	}
+}